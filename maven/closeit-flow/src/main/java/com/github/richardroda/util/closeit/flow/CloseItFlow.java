@@ -0,0 +1,340 @@
+package com.github.richardroda.util.closeit.flow;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItIterator;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Adapters that tie a resource to a {@link Flow} subscription, so that the
+ * resource is closed exactly once, when the subscription completes, fails,
+ * or is cancelled, such as when a client disconnects in the middle of a
+ * stream.
+ * <pre><code>
+ * Flow.Publisher&lt;Row&gt; rows = CloseItFlow.using(dataSource::getConnection,
+ *     con-&gt;queryPublisher(con, sql),
+ *     resource-&gt;CloseIt0.consumeAllException(resource, exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception)));
+ * </code></pre>
+ * <p>
+ * A resource is closed through a {@code policy}, such as
+ * {@code CloseIt0::wrapAllException} or
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }.
+ * When the policy throws a failure after the subscription completes, the
+ * subscriber receives it with {@code onError} instead of
+ * {@code onComplete}.  After the subscription fails, the failure is added
+ * to the error as a suppressed exception.  A failure after the subscription
+ * is cancelled is passed to the uncaught exception handler of the thread
+ * that closes the resource, because {@link Flow.Subscription#cancel() } must return
+ * normally and the subscriber no longer receives signals, so a policy that
+ * consumes the failures should be used when they must be reported
+ * somewhere else.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItFlow {
+
+    private CloseItFlow() {
+    }
+
+    /**
+     * Read the next record of a resource.
+     * @param <R> Type of the resource.
+     * @param <T> Type of the records.
+     */
+    @FunctionalInterface
+    public interface RecordReader<R, T> {
+        /**
+         * @param resource The resource to read.
+         * @return The next record, or {@code null} at the end of the
+         * resource.
+         * @throws Exception When the record can not be read.
+         */
+        T read(R resource) throws Exception;
+    }
+
+    /**
+     * Create a publisher which opens a resource for each subscriber, and
+     * closes it with {@link CloseIt0#wrapAllException(java.lang.AutoCloseable) }
+     * when the subscription completes, fails, or is cancelled.  A failure
+     * to close after the subscription is cancelled is passed to the uncaught
+     * exception handler of the thread that cancels.
+     * @param <R> Type of the resource.
+     * @param <T> Type of the items.
+     * @param opener Opens the resource of a subscriber.
+     * @param publisherFactory Creates the publisher of the items from the
+     * resource.
+     * @return A publisher that closes the resource of each subscription.
+     */
+    public static <R extends AutoCloseable, T> Flow.Publisher<T> using(Callable<? extends R> opener,
+            Function<? super R, ? extends Flow.Publisher<? extends T>> publisherFactory) {
+        return using(opener, publisherFactory, CloseIt0::wrapAllException);
+    }
+
+    /**
+     * Create a publisher which opens a resource for each subscriber, and
+     * closes it through a {@code policy} when the subscription completes,
+     * fails, or is cancelled.
+     * @param <R> Type of the resource.
+     * @param <T> Type of the items.
+     * @param opener Opens the resource of a subscriber.
+     * @param publisherFactory Creates the publisher of the items from the
+     * resource.
+     * @param policy Function that decorates the resource with the
+     * processing for its exceptions when it is closed.
+     * @return A publisher that closes the resource of each subscription.
+     */
+    public static <R extends AutoCloseable, T> Flow.Publisher<T> using(Callable<? extends R> opener,
+            Function<? super R, ? extends Flow.Publisher<? extends T>> publisherFactory,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        Objects.requireNonNull(opener, "opener required");
+        Objects.requireNonNull(publisherFactory, "publisherFactory required");
+        Objects.requireNonNull(policy, "policy required");
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "subscriber required");
+            final R resource;
+            try {
+                resource = opener.call();
+            } catch (Throwable th) {
+                fail(subscriber, th);
+                return;
+            }
+            final Closer closer;
+            try {
+                closer = new Closer(policy.apply(resource));
+            } catch (Throwable th) {
+                closeUndecorated(resource, th);
+                fail(subscriber, th);
+                return;
+            }
+            final Flow.Publisher<? extends T> publisher;
+            try {
+                publisher = publisherFactory.apply(resource);
+            } catch (Throwable th) {
+                closer.suppressInto(th);
+                fail(subscriber, th);
+                return;
+            }
+            final UsingSubscriber<T> using = new UsingSubscriber<>(subscriber, closer);
+            try {
+                publisher.subscribe(using);
+            } catch (Throwable th) {
+                using.subscribeFailed(th);
+            }
+        };
+    }
+
+    /**
+     * Create a processor which opens a resource for each source it receives,
+     * such as a query or a file path, emits the records it reads from the
+     * resource as they are requested, and closes the resource when it is
+     * read to the end, or when the subscription fails or is cancelled.  The
+     * processor requests one source at a time, and only once the records of
+     * the previous source are emitted, so no more records are read than the
+     * subscriber requested, and only one resource is open at a time.  The
+     * processor accepts one subscriber.
+     * @param <S> Type of the sources.
+     * @param <R> Type of the resources.
+     * @param <T> Type of the records.
+     * @param opener Opens the resource of a source.
+     * @param reader Reads the next record of a resource.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions when it is closed.
+     * @param executor Executor that opens, reads, and closes the resources,
+     * and signals the subscriber.
+     * @return A new processor.
+     */
+    public static <S, R extends AutoCloseable, T> Flow.Processor<S, T> reader(
+            CloseItIterator.Opener<? super S, ? extends R> opener, RecordReader<? super R, ? extends T> reader,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy, Executor executor) {
+        Objects.requireNonNull(opener, "opener required");
+        Objects.requireNonNull(reader, "reader required");
+        Objects.requireNonNull(policy, "policy required");
+        Objects.requireNonNull(executor, "executor required");
+        return new ReadProcessor<>(opener, reader, policy, executor);
+    }
+
+    static void fail(Flow.Subscriber<?> subscriber, Throwable th) {
+        subscriber.onSubscribe(EmptySubscription.INSTANCE);
+        subscriber.onError(th);
+    }
+
+    /**
+     * Close a resource that its policy failed to decorate.
+     * @param resource The resource.
+     * @param failure The failure of the policy, which any failure of the
+     * close is added to as a suppressed exception.
+     */
+    static void closeUndecorated(AutoCloseable resource, Throwable failure) {
+        try {
+            resource.close();
+        } catch (Throwable th) {
+            if (th != failure) {
+                failure.addSuppressed(th);
+            }
+        }
+    }
+
+    /**
+     * Pass a failure that no subscriber can receive, such as a failure to
+     * close after the subscription is cancelled, to the uncaught exception
+     * handler of the current thread.
+     * @param th The failure, or {@code null}.
+     */
+    static void dropped(Throwable th) {
+        if (th != null) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, th);
+        }
+    }
+
+    /**
+     * A subscription with nothing to request or cancel, for a subscriber
+     * that is failed at once.
+     */
+    enum EmptySubscription implements Flow.Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    /**
+     * Closes a resource once, no matter how many terminal signals race to
+     * close it.
+     */
+    static final class Closer {
+        private final CloseIt0 closeIt;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Closer(CloseIt0 closeIt) {
+            this.closeIt = closeIt;
+        }
+
+        /**
+         * @return The failure of the close, or {@code null} when it closed,
+         * or was already closed.
+         */
+        Throwable close() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    closeIt.closeIt();
+                } catch (Throwable th) {
+                    return th;
+                }
+            }
+            return null;
+        }
+
+        void suppressInto(Throwable failure) {
+            Throwable th = close();
+            if (th != null && th != failure) {
+                failure.addSuppressed(th);
+            }
+        }
+    }
+
+    /**
+     * Passes the signals of the publisher of a resource through to the
+     * subscriber, and closes the resource on the terminal signal, or when
+     * the subscriber cancels.
+     */
+    static final class UsingSubscriber<T> implements Flow.Subscriber<T>, Flow.Subscription {
+        private final Flow.Subscriber<? super T> downstream;
+        private final Closer closer;
+        private volatile Flow.Subscription upstream;
+
+        UsingSubscriber(Flow.Subscriber<? super T> downstream, Closer closer) {
+            this.downstream = downstream;
+            this.closer = closer;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T item) {
+            downstream.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closer.suppressInto(throwable);
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            Throwable th = closer.close();
+            if (th == null) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(th);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+            dropped(closer.close());
+        }
+
+        /**
+         * Close the resource, and fail the subscriber, when the publisher
+         * throws instead of subscribing it.
+         */
+        void subscribeFailed(Throwable th) {
+            if (upstream == null) {
+                closer.suppressInto(th);
+                fail(downstream, th);
+            } else {
+                onError(th);
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,291 @@
+package com.github.richardroda.util.closeit.flow;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItIterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * The processor of {@link CloseItFlow#reader(com.github.richardroda.util.closeit.CloseItIterator.Opener, com.github.richardroda.util.closeit.flow.CloseItFlow.RecordReader, java.util.function.Function, java.util.concurrent.Executor) }.
+ * Every signal records its state and schedules a drain on the executor.
+ * The drains are serialized with a work in progress counter, so the
+ * current resource, and the signals to the subscriber, are confined to one
+ * drain at a time.
+ *
+ * @param <S> Type of the sources.
+ * @param <R> Type of the resources.
+ * @param <T> Type of the records.
+ *
+ * @author Richard Roda
+ */
+final class ReadProcessor<S, R extends AutoCloseable, T> implements Flow.Processor<S, T>, Flow.Subscription {
+
+    private final CloseItIterator.Opener<? super S, ? extends R> opener;
+    private final CloseItFlow.RecordReader<? super R, ? extends T> reader;
+    private final Function<? super AutoCloseable, ? extends CloseIt0> policy;
+    private final Executor executor;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicReference<Flow.Subscriber<? super T>> downstream = new AtomicReference<>();
+    private volatile Flow.Subscription upstream;
+    private volatile S pendingSource;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable badRequest;
+    private volatile boolean cancelled;
+
+    // Confined to the drain.
+    private R current;
+    private CloseIt0 currentCloser;
+    private boolean sourceRequested;
+    private boolean done;
+
+    ReadProcessor(CloseItIterator.Opener<? super S, ? extends R> opener,
+            CloseItFlow.RecordReader<? super R, ? extends T> reader,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy, Executor executor) {
+        this.opener = opener;
+        this.reader = reader;
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            CloseItFlow.fail(subscriber, new IllegalStateException("processor accepts one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(this);
+        schedule();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        schedule();
+    }
+
+    @Override
+    public void onNext(S source) {
+        pendingSource = source;
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        schedule();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            badRequest = new IllegalArgumentException("request must be positive, but was " + n);
+        } else {
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        }
+        schedule();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        for (;;) {
+            drainOnce();
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void drainOnce() {
+        final Flow.Subscriber<? super T> subscriber = downstream.get();
+        final Flow.Subscription source = upstream;
+        if (done) {
+            if (cancelled && source != null) {
+                source.cancel();
+            }
+            return;
+        }
+        if (subscriber == null) {
+            return;
+        }
+        for (;;) {
+            if (cancelled) {
+                done = true;
+                if (source != null) {
+                    source.cancel();
+                }
+                CloseItFlow.dropped(closeCurrent(null));
+                return;
+            }
+            if (source == null) {
+                return;
+            }
+            Throwable failure = badRequest;
+            if (failure != null) {
+                source.cancel();
+                fail(subscriber, failure);
+                return;
+            }
+            failure = upstreamError;
+            if (failure != null) {
+                fail(subscriber, failure);
+                return;
+            }
+            if (current == null) {
+                S next = pendingSource;
+                if (next != null) {
+                    pendingSource = null;
+                    sourceRequested = false;
+                    final R opened;
+                    try {
+                        opened = opener.open(next);
+                    } catch (Throwable th) {
+                        source.cancel();
+                        fail(subscriber, th);
+                        return;
+                    }
+                    try {
+                        currentCloser = policy.apply(opened);
+                    } catch (Throwable th) {
+                        CloseItFlow.closeUndecorated(opened, th);
+                        source.cancel();
+                        fail(subscriber, th);
+                        return;
+                    }
+                    current = opened;
+                } else if (upstreamDone) {
+                    if (pendingSource != null) {
+                        // The last source arrived after it was checked.
+                        continue;
+                    }
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                } else {
+                    if (!sourceRequested && demand.get() > 0) {
+                        sourceRequested = true;
+                        source.request(1);
+                    }
+                    return;
+                }
+            }
+            if (demand.get() == 0) {
+                return;
+            }
+            final T record;
+            try {
+                record = reader.read(current);
+            } catch (Throwable th) {
+                source.cancel();
+                fail(subscriber, th);
+                return;
+            }
+            if (record == null) {
+                Throwable th = closeCurrent(null);
+                if (th != null) {
+                    source.cancel();
+                    fail(subscriber, th);
+                    return;
+                }
+                continue;
+            }
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            subscriber.onNext(record);
+        }
+    }
+
+    private void fail(Flow.Subscriber<? super T> subscriber, Throwable failure) {
+        done = true;
+        closeCurrent(failure);
+        subscriber.onError(failure);
+    }
+
+    /**
+     * Close the current resource, if any.
+     * @param failure The failure that ends the subscription, which any
+     * failure of the close is added to as a suppressed exception, or
+     * {@code null}.
+     * @return The failure of the close, or {@code null}.
+     */
+    private Throwable closeCurrent(Throwable failure) {
+        final CloseIt0 closer = currentCloser;
+        if (closer == null) {
+            return null;
+        }
+        current = null;
+        currentCloser = null;
+        try {
+            closer.closeIt();
+        } catch (Throwable th) {
+            if (failure != null && th != failure) {
+                failure.addSuppressed(th);
+            }
+            return th;
+        }
+        return null;
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
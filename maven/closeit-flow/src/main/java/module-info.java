@@ -0,0 +1,11 @@
+/**
+ * This defines the module name and exported package of the
+ * java.util.concurrent.Flow adapters for closeit.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+module com.github.richardroda.util.closeit.flow {
+    requires transitive com.github.richardroda.util.closeit;
+    exports com.github.richardroda.util.closeit.flow;
+}
@@ -0,0 +1,342 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.flow.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.flow.CloseItFlow;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItFlow {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+    final List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger reads = new AtomicInteger();
+
+    @AfterMethod public void clearLists() {
+        closed.clear();
+        exceptions.clear();
+        reads.set(0);
+    }
+
+    @AfterClass public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A cursor over a number of records, named "name:count".
+     */
+    class Cursor implements AutoCloseable {
+        final String name;
+        int remaining;
+        final boolean failClose;
+
+        Cursor(String source) throws IOException {
+            String[] parts = source.split(":");
+            if (parts[0].startsWith("bad")) {
+                throw new IOException("open " + parts[0]);
+            }
+            this.name = parts[0];
+            this.remaining = Integer.parseInt(parts[1]);
+            this.failClose = name.startsWith("fail");
+        }
+
+        String read() {
+            reads.incrementAndGet();
+            return remaining == 0 ? null : name + remaining--;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.add(name);
+            if (failClose) {
+                throw new IOException("close " + name);
+            }
+        }
+    }
+
+    /**
+     * Emits the records of a cursor as they are requested.
+     */
+    static Flow.Publisher<String> publisher(Cursor cursor) {
+        return subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            boolean stopped;
+
+            @Override
+            public void request(long n) {
+                for (long i = 0; i < n && !stopped; i++) {
+                    String record = cursor.read();
+                    if (record == null) {
+                        stopped = true;
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onNext(record);
+                    }
+                }
+            }
+
+            @Override
+            public void cancel() {
+                stopped = true;
+            }
+        });
+    }
+
+    static class Collector<T> implements Flow.Subscriber<T> {
+        final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final long initialRequest;
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS), "terminal signal expected");
+        }
+    }
+
+    static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 1000 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void usingClosesOnComplete() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.using(() -> new Cursor("c:2"), TestCloseItFlow::publisher).subscribe(collector);
+        collector.await();
+        Assert.assertTrue(collector.completed);
+        Assert.assertEquals(collector.items, Arrays.asList("c2", "c1"));
+        Assert.assertEquals(closed, Collections.singletonList("c"));
+    }
+
+    @Test
+    public void usingClosesOnCancel() {
+        Collector<String> collector = new Collector<>(1);
+        CloseItFlow.using(() -> new Cursor("c:5"), TestCloseItFlow::publisher).subscribe(collector);
+        Assert.assertEquals(collector.items, Collections.singletonList("c5"));
+        collector.subscription.cancel();
+        collector.subscription.cancel();
+        Assert.assertEquals(closed, Collections.singletonList("c"));
+    }
+
+    @Test
+    public void usingCloseFailureAfterCancelIsReported() {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        List<Throwable> uncaught = new ArrayList<>();
+        thread.setUncaughtExceptionHandler((t, th) -> uncaught.add(th));
+        try {
+            Collector<String> collector = new Collector<>(1);
+            CloseItFlow.using(() -> new Cursor("fail:5"), TestCloseItFlow::publisher).subscribe(collector);
+            collector.subscription.cancel();
+            collector.subscription.cancel();
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertEquals(closed, Collections.singletonList("fail"));
+        Assert.assertEquals(uncaught.size(), 1);
+        Assert.assertTrue(uncaught.get(0) instanceof NotClosedException);
+        Assert.assertEquals(uncaught.get(0).getCause().getMessage(), "close fail");
+    }
+
+    @Test
+    public void usingClosesWhenSubscribeThrows() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.<Cursor, String>using(() -> new Cursor("c:1"), cursor -> subscriber -> {
+            throw new IllegalStateException("subscribe");
+        }).subscribe(collector);
+        collector.await();
+        Assert.assertEquals(collector.error.getMessage(), "subscribe");
+        Assert.assertEquals(closed, Collections.singletonList("c"));
+    }
+
+    @Test
+    public void usingClosesWhenPolicyThrows() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.using(() -> new Cursor("c:1"), TestCloseItFlow::publisher, resource -> {
+            throw new IllegalStateException("policy");
+        }).subscribe(collector);
+        collector.await();
+        Assert.assertEquals(collector.error.getMessage(), "policy");
+        Assert.assertEquals(closed, Collections.singletonList("c"));
+    }
+
+    @Test
+    public void usingCloseFailureReplacesComplete() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.using(() -> new Cursor("fail:1"), TestCloseItFlow::publisher).subscribe(collector);
+        collector.await();
+        Assert.assertFalse(collector.completed);
+        Assert.assertTrue(collector.error instanceof NotClosedException);
+        Assert.assertEquals(collector.error.getCause().getMessage(), "close fail");
+    }
+
+    @Test
+    public void usingCloseFailureIsSuppressedByError() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.<Cursor, String>using(() -> new Cursor("fail:1"), cursor -> subscriber -> {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("query"));
+        }).subscribe(collector);
+        collector.await();
+        Assert.assertEquals(collector.error.getMessage(), "query");
+        Assert.assertEquals(collector.error.getSuppressed().length, 1);
+    }
+
+    @Test
+    public void usingOpenFailureIsSignalled() throws InterruptedException {
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        CloseItFlow.using(() -> new Cursor("bad:1"), TestCloseItFlow::publisher).subscribe(collector);
+        collector.await();
+        Assert.assertTrue(collector.error instanceof IOException);
+        Assert.assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void readerHonorsDemand() throws InterruptedException {
+        Flow.Processor<String, String> processor = CloseItFlow.reader(Cursor::new, Cursor::read,
+                resource -> CloseIt0.consumeAllException(resource, exceptions::add), executor);
+        Collector<String> collector = new Collector<>(2);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<String> sources = new SubmissionPublisher<>(executor, 4)) {
+            sources.subscribe(processor);
+            sources.submit("a:3");
+            sources.submit("b:2");
+            awaitTrue(() -> collector.items.size() == 2);
+            Thread.sleep(50);
+            Assert.assertEquals(collector.items.size(), 2);
+            Assert.assertEquals(reads.get(), 2);
+            Assert.assertTrue(closed.isEmpty());
+            collector.subscription.request(Long.MAX_VALUE);
+        }
+        collector.await();
+        Assert.assertTrue(collector.completed);
+        Assert.assertEquals(collector.items, Arrays.asList("a3", "a2", "a1", "b2", "b1"));
+        Assert.assertEquals(closed, Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void readerClosesOnCancel() throws InterruptedException {
+        Flow.Processor<String, String> processor = CloseItFlow.reader(Cursor::new, Cursor::read,
+                CloseIt0::wrapAllException, executor);
+        Collector<String> collector = new Collector<>(1);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<String> sources = new SubmissionPublisher<>(executor, 4)) {
+            sources.subscribe(processor);
+            sources.submit("a:100");
+            awaitTrue(() -> collector.items.size() == 1);
+            collector.subscription.cancel();
+            awaitTrue(() -> closed.size() == 1);
+            awaitTrue(() -> sources.getNumberOfSubscribers() == 0);
+        }
+        Assert.assertEquals(closed, Collections.singletonList("a"));
+    }
+
+    @Test
+    public void readerClosesWhenPolicyThrows() throws InterruptedException {
+        Flow.Processor<String, String> processor = CloseItFlow.reader(Cursor::new, Cursor::read, resource -> {
+            throw new IllegalStateException("policy");
+        }, executor);
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<String> sources = new SubmissionPublisher<>(executor, 4)) {
+            sources.subscribe(processor);
+            sources.submit("a:1");
+            collector.await();
+        }
+        Assert.assertEquals(collector.error.getMessage(), "policy");
+        Assert.assertEquals(closed, Collections.singletonList("a"));
+    }
+
+    @Test
+    public void readerOpenFailureIsSignalled() throws InterruptedException {
+        Flow.Processor<String, String> processor = CloseItFlow.reader(Cursor::new, Cursor::read,
+                CloseIt0::wrapAllException, executor);
+        Collector<String> collector = new Collector<>(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<String> sources = new SubmissionPublisher<>(executor, 4)) {
+            sources.subscribe(processor);
+            sources.submit("a:1");
+            sources.submit("bad:1");
+            collector.await();
+        }
+        Assert.assertTrue(collector.error instanceof IOException);
+        Assert.assertEquals(collector.items, Collections.singletonList("a1"));
+        Assert.assertEquals(closed, Collections.singletonList("a"));
+    }
+
+    @Test
+    public void readerAcceptsOneSubscriber() throws InterruptedException {
+        Flow.Processor<String, String> processor = CloseItFlow.reader(Cursor::new, Cursor::read,
+                CloseIt0::wrapAllException, executor);
+        processor.subscribe(new Collector<>(1));
+        Collector<String> second = new Collector<>(1);
+        processor.subscribe(second);
+        second.await();
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+    }
+}
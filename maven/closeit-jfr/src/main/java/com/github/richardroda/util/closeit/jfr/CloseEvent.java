@@ -0,0 +1,63 @@
+package com.github.richardroda.util.closeit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event for the close of a resource, whose duration is the time the
+ * close method took.  Enable it, and set its threshold to record only slow
+ * closes, like any other JFR event, with the name
+ * {@code com.github.richardroda.util.closeit.Close}.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+@Name(CloseEvent.NAME)
+@Label("Close")
+@Category({"Java Application", "CloseIt"})
+@Description("The close of a resource")
+public final class CloseEvent extends jdk.jfr.Event {
+
+    /** The name of the event in a recording. */
+    public static final String NAME = "com.github.richardroda.util.closeit.Close";
+
+    @Label("Resource Class")
+    Class<?> resourceClass;
+
+    @Label("Outcome")
+    @Description("CLOSED or FAILED")
+    String outcome;
+
+    @Label("Exception Class")
+    @Description("The class of the throwable thrown by the close method, if any")
+    Class<?> exceptionClass;
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,169 @@
+package com.github.richardroda.util.closeit.jfr;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItLeakDetector;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Adapters that record the closes of resources, and the leaks found by the
+ * {@link CloseItLeakDetector}, as JDK Flight Recorder events, so that a slow
+ * or failing close can be correlated with the GC, I/O, and lock events of
+ * the same recording.
+ * <pre><code>
+ * try (CloseIt0 it = CloseItJfr.recorded(connection)) {
+ *     ...
+ * }
+ * ...
+ * CloseItLeakDetector.enable(100, CloseItJfr.leakSink(exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception)));
+ * </code></pre>
+ * <p>
+ * A {@link CloseEvent} is created for every close, but when the event is
+ * not enabled in a running recording, the close is all that happens, and the
+ * JIT compiler removes the event, so the cost is close to zero.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItJfr {
+
+    private static final String CLOSEIT_PACKAGE = "com.github.richardroda.util.closeit.";
+
+    private CloseItJfr() {
+    }
+
+    /**
+     * Create an {@link AutoCloseable} which closes a resource and records
+     * the close as a {@link CloseEvent}, for use with any of the
+     * {@code CloseIt0} or {@code CloseIt1} factories.  Any throwable thrown by
+     * the close method is recorded and rethrown unchanged.
+     * @param resource The resource to close.
+     * @return An {@code AutoCloseable} which records the close.
+     */
+    public static AutoCloseable recording(AutoCloseable resource) {
+        Objects.requireNonNull(resource, "resource required");
+        return () -> {
+            final CloseEvent event = new CloseEvent();
+            if (!event.isEnabled()) {
+                resource.close();
+                return;
+            }
+            event.begin();
+            try {
+                resource.close();
+                event.outcome = "CLOSED";
+            } catch (Throwable th) {
+                event.outcome = "FAILED";
+                event.exceptionClass = th.getClass();
+                throw th;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.resourceClass = resource.getClass();
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Record the close of a resource as a {@link CloseEvent}, and wrap any
+     * checked exception in a {@code NotClosedException}, like
+     * {@link CloseIt0#wrapException(java.lang.AutoCloseable) }.
+     * @param resource The resource to close.
+     * @return A {@code CloseIt0} which records the close.
+     */
+    public static CloseIt0 recorded(AutoCloseable resource) {
+        return CloseIt0.wrapException(recording(resource));
+    }
+
+    /**
+     * Record the close of a resource as a {@link CloseEvent}, and process
+     * any exception with a {@code policy}.
+     * @param resource The resource to close.
+     * @param policy Function that decorates the recording closeable with the
+     * processing for its exceptions, such as
+     * {@code CloseIt0::wrapAllException}.
+     * @return A {@code CloseIt0} which records the close.
+     */
+    public static CloseIt0 recorded(AutoCloseable resource, Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        Objects.requireNonNull(policy, "policy required");
+        return Objects.requireNonNull(policy.apply(recording(resource)), "policy must not return null");
+    }
+
+    /**
+     * Create a sink for {@link CloseItLeakDetector#enable(int, java.util.function.Consumer) }
+     * which records each leak as a {@link LeakEvent}.
+     * @return A sink which records leaks.
+     */
+    public static Consumer<Throwable> leakSink() {
+        return CloseItJfr::recordLeak;
+    }
+
+    /**
+     * Create a sink for {@link CloseItLeakDetector#enable(int, java.util.function.Consumer) }
+     * which records each leak as a {@link LeakEvent}, and then passes it to
+     * another sink.
+     * @param delegate The sink that receives each leak after it is
+     * recorded.
+     * @return A sink which records leaks.
+     */
+    public static Consumer<Throwable> leakSink(Consumer<? super Throwable> delegate) {
+        Objects.requireNonNull(delegate, "delegate required");
+        return th -> {
+            recordLeak(th);
+            delegate.accept(th);
+        };
+    }
+
+    private static void recordLeak(Throwable th) {
+        final LeakEvent event = new LeakEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.resourceClass = th instanceof CloseItLeakDetector.LeakException
+                ? ((CloseItLeakDetector.LeakException) th).getResourceClassName()
+                : th.getClass().getName();
+        for (StackTraceElement frame : th.getStackTrace()) {
+            if (!isCloseItFrame(frame.getClassName())) {
+                event.convertedAt = frame.toString();
+                break;
+            }
+        }
+        event.commit();
+    }
+
+    private static boolean isCloseItFrame(String className) {
+        return className.startsWith(CLOSEIT_PACKAGE)
+                && className.indexOf('.', CLOSEIT_PACKAGE.length()) < 0;
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
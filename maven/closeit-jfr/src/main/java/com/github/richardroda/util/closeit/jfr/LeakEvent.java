@@ -0,0 +1,64 @@
+package com.github.richardroda.util.closeit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for a resource that the
+ * {@link com.github.richardroda.util.closeit.CloseItLeakDetector} found
+ * unreachable before it was closed, with the name
+ * {@code com.github.richardroda.util.closeit.Leak}.  The event is committed
+ * by the thread of the leak detector, so the stack trace of the event is
+ * not recorded; the place where the resource was converted is recorded
+ * instead.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+@Name(LeakEvent.NAME)
+@Label("Leak")
+@Category({"Java Application", "CloseIt"})
+@Description("A resource that became unreachable before it was closed")
+@StackTrace(false)
+public final class LeakEvent extends jdk.jfr.Event {
+
+    /** The name of the event in a recording. */
+    public static final String NAME = "com.github.richardroda.util.closeit.Leak";
+
+    @Label("Resource Class")
+    String resourceClass;
+
+    @Label("Converted At")
+    @Description("The first frame outside of closeit where the resource was converted")
+    String convertedAt;
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
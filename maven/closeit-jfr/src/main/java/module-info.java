@@ -0,0 +1,12 @@
+/**
+ * This defines the module name and exported package of the JDK Flight
+ * Recorder events for closeit.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+module com.github.richardroda.util.closeit.jfr {
+    requires transitive com.github.richardroda.util.closeit;
+    requires jdk.jfr;
+    exports com.github.richardroda.util.closeit.jfr;
+}
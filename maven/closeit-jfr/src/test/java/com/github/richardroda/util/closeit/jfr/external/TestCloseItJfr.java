@@ -0,0 +1,175 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.jfr.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItLeakDetector;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.jfr.CloseEvent;
+import com.github.richardroda.util.closeit.jfr.CloseItJfr;
+import com.github.richardroda.util.closeit.jfr.LeakEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItJfr {
+
+    private final List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearExceptions() {
+        exceptions.clear();
+        CloseItLeakDetector.disable();
+    }
+
+    private static List<RecordedEvent> events(Recording recording, String name) throws IOException {
+        Path file = Files.createTempFile("closeit", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> result = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name)) {
+                    result.add(event);
+                }
+            }
+            return result;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCloseRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(CloseEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            try (CloseIt0 it = CloseItJfr.recorded(() -> {})) {
+            }
+            recording.stop();
+            List<RecordedEvent> events = events(recording, CloseEvent.NAME);
+            Assert.assertEquals(events.size(), 1);
+            RecordedEvent event = events.get(0);
+            Assert.assertEquals(event.getString("outcome"), "CLOSED");
+            Assert.assertNull(event.getClass("exceptionClass"));
+            Assert.assertTrue(event.getClass("resourceClass").getName().contains("TestCloseItJfr"));
+        }
+    }
+
+    @Test
+    public void testFailedCloseRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(CloseEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            try (CloseIt0 it = CloseItJfr.recorded(() -> {throw new IOException("io");})) {
+            }
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testFailedCloseEvent() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(CloseEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            try (CloseIt0 it = CloseItJfr.recorded(() -> {throw new IOException("io");},
+                    r -> CloseIt0.consumeAllException(r, exceptions::add))) {
+            }
+            recording.stop();
+            Assert.assertEquals(exceptions.size(), 1);
+            List<RecordedEvent> events = events(recording, CloseEvent.NAME);
+            Assert.assertEquals(events.size(), 1);
+            Assert.assertEquals(events.get(0).getString("outcome"), "FAILED");
+            Assert.assertEquals(events.get(0).getClass("exceptionClass").getName(), IOException.class.getName());
+        }
+    }
+
+    @Test
+    public void testThresholdSkipsFastClose() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(CloseEvent.NAME).withThreshold(Duration.ofSeconds(10));
+            recording.start();
+            try (CloseIt0 it = CloseItJfr.recorded(() -> {})) {
+            }
+            recording.stop();
+            Assert.assertTrue(events(recording, CloseEvent.NAME).isEmpty());
+        }
+    }
+
+    @Test
+    public void testNotRecordingClosesResource() {
+        final int[] closed = new int[1];
+        try (CloseIt0 it = CloseItJfr.recorded(() -> closed[0]++)) {
+        }
+        Assert.assertEquals(closed[0], 1);
+    }
+
+    @Test
+    public void testRecordingRethrowsUnchanged() {
+        final IOException thrown = new IOException("io");
+        try {
+            CloseItJfr.recording(() -> {throw thrown;}).close();
+            Assert.fail("IOException expected");
+        } catch (Exception ex) {
+            Assert.assertSame(ex, thrown);
+        }
+    }
+
+    @Test
+    public void testLeakRecorded() throws Exception {
+        final CountDownLatch reported = new CountDownLatch(1);
+        try (Recording recording = new Recording()) {
+            recording.enable(LeakEvent.NAME);
+            recording.start();
+            CloseItLeakDetector.enable(1, CloseItJfr.leakSink(th -> {
+                exceptions.add(th);
+                reported.countDown();
+            }));
+            leak();
+            for (int i = 0; i < 50 && reported.getCount() > 0; i++) {
+                System.gc();
+                reported.await(100, TimeUnit.MILLISECONDS);
+            }
+            recording.stop();
+            Assert.assertEquals(exceptions.size(), 1);
+            List<RecordedEvent> events = events(recording, LeakEvent.NAME);
+            Assert.assertEquals(events.size(), 1);
+            Assert.assertEquals(events.get(0).getString("resourceClass"), Leaked.class.getName());
+            Assert.assertTrue(events.get(0).getString("convertedAt").contains("TestCloseItJfr.leak"));
+        }
+    }
+
+    private static void leak() {
+        CloseIt0.wrapException(new Leaked());
+    }
+
+    private static final class Leaked implements AutoCloseable {
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullPolicy() {
+        CloseItJfr.recorded(() -> {}, null);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stand in for a connection, statement, or result set.  The close method
+ * either succeeds or throws an exception that is allocated once, so that the
+ * benchmarks measure the cost of the decorators rather than the cost of
+ * creating the exception thrown by the resource.
+ *
+ * @author Richard Roda
+ */
+public final class BenchmarkResource implements Closeable {
+
+    /**
+     * How the close method of the resource completes.
+     */
+    public enum Outcome {
+        /** The close method returns normally. */
+        SUCCESS,
+        /** The close method throws a checked {@link IOException}. */
+        CHECKED_FAILURE,
+        /** The close method throws an unchecked {@link IllegalStateException}. */
+        UNCHECKED_FAILURE
+    }
+
+    private static final IOException CHECKED = new IOException("close failed");
+    private static final IllegalStateException UNCHECKED = new IllegalStateException("close failed");
+
+    private final Outcome outcome;
+    private int closeCount;
+
+    public BenchmarkResource(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * Close the resource.
+     * @throws IOException When the outcome is {@link Outcome#CHECKED_FAILURE}.
+     */
+    @Override
+    public void close() throws IOException {
+        closeCount++;
+        switch (outcome) {
+            case CHECKED_FAILURE:
+                throw CHECKED;
+            case UNCHECKED_FAILURE:
+                throw UNCHECKED;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return The number of times close was called, which is consumed by the
+     * benchmarks so the close calls cannot be eliminated.
+     */
+    public int getCloseCount() {
+        return closeCount;
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
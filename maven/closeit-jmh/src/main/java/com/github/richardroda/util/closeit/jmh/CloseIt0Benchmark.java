@@ -0,0 +1,239 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseMetrics;
+import com.github.richardroda.util.closeit.jmh.BenchmarkResource.Outcome;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of closing a single resource through each of the
+ * {@link CloseIt0} static factories, compared with closing it in a hand
+ * written {@code try-finally} block and in a plain {@code try-with-resources}.
+ * Every benchmark is run once for each {@link Outcome}, so both the success
+ * path and the failure path are reported.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CloseIt0Benchmark {
+
+    @Param
+    public Outcome outcome;
+
+    private BenchmarkResource resource;
+    private Consumer<Throwable> exConsumer;
+    private Predicate<Throwable> when;
+    private CloseMetrics metrics;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        resource = new BenchmarkResource(outcome);
+        exConsumer = bh::consume;
+        when = th -> th instanceof RuntimeException;
+        metrics = new CloseMetrics();
+    }
+
+    @Benchmark
+    public void baselineTryFinally(Blackhole bh) {
+        try {
+            try {
+                bh.consume(resource);
+            } finally {
+                resource.close();
+            }
+        } catch (Exception ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void baselineTryWithResources(Blackhole bh) {
+        try (BenchmarkResource it = resource) {
+            bh.consume(it);
+        } catch (Exception ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void wrapException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.wrapException(resource)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void wrapAllException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.wrapAllException(resource)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void wrapAllThrowable(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.wrapAllThrowable(resource)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void hideException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.hideException(resource)) {
+            bh.consume(resource);
+        } catch (Exception ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void ignoreException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.ignoreException(resource)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void consumeException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.consumeException(resource, exConsumer)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void ignoreAllException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.ignoreAllException(resource)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void consumeAllException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.consumeAllException(resource, exConsumer)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void ignoreAllThrowable(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.ignoreAllThrowable(resource)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void consumeAllThrowable(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.consumeAllThrowable(resource, exConsumer)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void toCloseIt0(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.toCloseIt0(resource, IllegalStateException::new)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void toCloseIt0AllException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.toCloseIt0AllException(resource, IllegalStateException::new)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void toCloseIt0AllThrowable(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.toCloseIt0AllThrowable(resource, IllegalStateException::new)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void rethrowWrapException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.rethrow(CloseIt0.wrapException(resource), exConsumer)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void rethrowWhenWrapException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.rethrowWhen(CloseIt0.wrapException(resource), when)) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void meteredWrapException(Blackhole bh) {
+        try (CloseIt0 it = CloseIt0.wrapException(CloseIt0.metered(resource, metrics))) {
+            bh.consume(resource);
+        } catch (RuntimeException ex) {
+            bh.consume(ex);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
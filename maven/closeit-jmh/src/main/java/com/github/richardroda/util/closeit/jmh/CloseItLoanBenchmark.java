@@ -0,0 +1,115 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseItLoan;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a {@link CloseItLoan} loan compared with opening,
+ * using, and closing a resource in a hand written
+ * {@code try-with-resources}, and shows that a loan allocates nothing in
+ * steady state when its functions capture nothing.  The {@code gc.alloc.rate.norm}
+ * of {@code usingInt} should be about {@code 0} bytes per operation, like
+ * the baseline, while {@code usingBoxed} allocates the {@code Integer} of
+ * each result that does not fit in the {@code Integer} cache.
+ * {@code usingIntMethodReferences} passes a method reference that captures
+ * {@code this}, which allocates nothing only because escape analysis
+ * removes it once the loan is inlined.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CloseItLoanBenchmark {
+
+    private static final CloseItLoan.Closer<Counter, RuntimeException> CLOSER = Counter::close;
+    private static final CloseItLoan.LoanIntFunction<Counter, RuntimeException> NEXT_INT = Counter::next;
+    private static final CloseItLoan.LoanFunction<Counter, Integer, RuntimeException> NEXT_BOXED = Counter::next;
+
+    private final Counter counter = new Counter();
+    private final CloseItLoan.Opener<Counter, RuntimeException> opener = this::open;
+
+    /**
+     * A resource that is reused by every operation, so that opening it
+     * allocates nothing.
+     */
+    static final class Counter implements AutoCloseable {
+        private int value = 1000;
+        private int open;
+
+        int next() {
+            return value++;
+        }
+
+        @Override
+        public void close() {
+            open--;
+        }
+    }
+
+    private Counter open() {
+        counter.open++;
+        return counter;
+    }
+
+    @Benchmark
+    public int baselineTryWithResources() {
+        try (Counter it = open()) {
+            return it.next();
+        }
+    }
+
+    @Benchmark
+    public int usingInt() {
+        return CloseItLoan.usingInt(opener, CLOSER, NEXT_INT);
+    }
+
+    @Benchmark
+    public int usingIntMethodReferences() {
+        return CloseItLoan.usingInt(this::open, Counter::close, Counter::next);
+    }
+
+    @Benchmark
+    public Integer usingBoxed() {
+        return CloseItLoan.using(opener, CLOSER, NEXT_BOXED);
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,220 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseIt2;
+import com.github.richardroda.util.closeit.CloseIt3;
+import com.github.richardroda.util.closeit.CloseIt4;
+import com.github.richardroda.util.closeit.CloseIt5;
+import com.github.richardroda.util.closeit.jmh.BenchmarkResource.Outcome;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of the {@link CloseIt1} exception mapping factories and
+ * the {@code rethrow} and {@code rethrowWhen} decorators of {@link CloseIt1}
+ * through {@link CloseIt5}, compared with closing the resource in a hand
+ * written {@code try-finally} block.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CloseItNBenchmark {
+
+    @Param({"SUCCESS", "CHECKED_FAILURE"})
+    public Outcome outcome;
+
+    private BenchmarkResource resource;
+    private Consumer<Throwable> exConsumer;
+    private Predicate<Throwable> when;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        resource = new BenchmarkResource(outcome);
+        exConsumer = bh::consume;
+        when = th -> th instanceof IOException;
+    }
+
+    @Benchmark
+    public void baselineTryFinally(Blackhole bh) {
+        try {
+            try {
+                bh.consume(resource);
+            } finally {
+                resource.close();
+            }
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt1WrapException(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.wrapException(resource, IOException::new)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt1WrapAllException(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.wrapAllException(resource, IOException::new)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt1WrapAllThrowable(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.wrapAllThrowable(resource, IOException::new)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt1Rethrow(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.rethrow(resource::close, exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt1RethrowWhen(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.rethrowWhen(resource::close, when)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt2Rethrow(Blackhole bh) {
+        try (CloseIt2<IOException, RuntimeException> it
+                = CloseIt2.<IOException, RuntimeException>rethrow(resource::close, exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt2RethrowWhen(Blackhole bh) {
+        try (CloseIt2<IOException, RuntimeException> it
+                = CloseIt2.<IOException, RuntimeException>rethrowWhen(resource::close, when)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt3Rethrow(Blackhole bh) {
+        try (CloseIt3<IOException, RuntimeException, RuntimeException> it
+                = CloseIt3.<IOException, RuntimeException, RuntimeException>rethrow(resource::close, exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt3RethrowWhen(Blackhole bh) {
+        try (CloseIt3<IOException, RuntimeException, RuntimeException> it
+                = CloseIt3.<IOException, RuntimeException, RuntimeException>rethrowWhen(resource::close, when)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt4Rethrow(Blackhole bh) {
+        try (CloseIt4<IOException, RuntimeException, RuntimeException, RuntimeException> it
+                = CloseIt4.<IOException, RuntimeException, RuntimeException, RuntimeException>rethrow(resource::close, exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt4RethrowWhen(Blackhole bh) {
+        try (CloseIt4<IOException, RuntimeException, RuntimeException, RuntimeException> it
+                = CloseIt4.<IOException, RuntimeException, RuntimeException, RuntimeException>rethrowWhen(resource::close, when)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt5Rethrow(Blackhole bh) {
+        try (CloseIt5<IOException, RuntimeException, RuntimeException, RuntimeException, RuntimeException> it
+                = CloseIt5.<IOException, RuntimeException, RuntimeException, RuntimeException, RuntimeException>rethrow(resource::close, exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void closeIt5RethrowWhen(Blackhole bh) {
+        try (CloseIt5<IOException, RuntimeException, RuntimeException, RuntimeException, RuntimeException> it
+                = CloseIt5.<IOException, RuntimeException, RuntimeException, RuntimeException, RuntimeException>rethrowWhen(resource::close, when)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
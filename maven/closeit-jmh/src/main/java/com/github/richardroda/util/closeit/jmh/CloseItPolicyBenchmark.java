@@ -0,0 +1,106 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseItPolicy;
+import com.github.richardroda.util.closeit.jmh.BenchmarkResource.Outcome;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the same failure processing done by three nested CloseIt
+ * decorators, which pass every failure to a consumer, ignore unchecked
+ * failures, and map checked failures to an {@link IOException}, and by one
+ * shared {@link CloseItPolicy}.  Every benchmark is run once for each
+ * {@link Outcome}.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CloseItPolicyBenchmark {
+
+    @Param
+    public Outcome outcome;
+
+    private BenchmarkResource resource;
+    private Consumer<Throwable> exConsumer;
+    private Predicate<Throwable> when;
+    private Function<Exception, IOException> exceptionMapper;
+    private CloseItPolicy<IOException> policy;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        resource = new BenchmarkResource(outcome);
+        exConsumer = bh::consume;
+        when = th -> !(th instanceof IllegalStateException);
+        exceptionMapper = ex -> ex instanceof IOException ? (IOException) ex : new IOException(ex);
+        policy = CloseItPolicy.create(exceptionMapper)
+                .withObserver(exConsumer)
+                .withConsume(IllegalStateException.class, th -> {});
+    }
+
+    @Benchmark
+    public void nested(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.rethrow(CloseIt1.rethrowWhen(
+                CloseIt1.wrapException(resource, exceptionMapper), when), exConsumer)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void policy(Blackhole bh) {
+        try (CloseIt1<IOException> it = CloseIt1.withPolicy(resource, policy)) {
+            bh.consume(resource);
+        } catch (IOException ex) {
+            bh.consume(ex);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,213 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the success path of the {@link CloseIt0} decorators when the
+ * type profile of their call sites is polluted, as it is in an application
+ * that passes many kinds of resource through the same decorator.  Each
+ * invocation closes the next of {@code types} resource classes, and before
+ * the measurement every decorator has closed all eight resource classes, so
+ * the call sites inside the decorators have seen at least three receiver
+ * types and are megamorphic, however many types are measured.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MegamorphicCloseBenchmark {
+
+    @Param({"1", "8"})
+    public int types;
+
+    private AutoCloseable[] resources;
+    private int next;
+    private Consumer<Throwable> exConsumer;
+    private Predicate<Throwable> when;
+
+    @Setup
+    public void setup(Blackhole bh) throws Exception {
+        AutoCloseable[] all = {new R0(), new R1(), new R2(), new R3(), new R4(), new R5(), new R6(), new R7()};
+        exConsumer = bh::consume;
+        when = th -> th instanceof RuntimeException;
+        for (int i = 0; i < 20_000; i++) {
+            for (AutoCloseable resource : all) {
+                closeThroughEveryDecorator(resource);
+            }
+        }
+        resources = new AutoCloseable[types];
+        System.arraycopy(all, 0, resources, 0, types);
+    }
+
+    private void closeThroughEveryDecorator(AutoCloseable resource) throws Exception {
+        CloseIt0.wrapException(resource).close();
+        CloseIt0.consumeAllException(resource, exConsumer).close();
+        CloseIt0.ignoreException(resource).close();
+        CloseIt0.rethrow(CloseIt0.rethrowWhen(CloseIt0.consumeAllException(resource, exConsumer), when),
+                exConsumer).close();
+        try {
+            resource.close();
+        } finally {
+            exConsumer.accept(null);
+        }
+    }
+
+    private AutoCloseable nextResource() {
+        int index = next;
+        next = index + 1 == resources.length ? 0 : index + 1;
+        return resources[index];
+    }
+
+    @Benchmark
+    public void baselineTryFinally(Blackhole bh) throws Exception {
+        AutoCloseable resource = nextResource();
+        try {
+            bh.consume(resource);
+        } finally {
+            resource.close();
+        }
+    }
+
+    @Benchmark
+    public void wrapException(Blackhole bh) {
+        AutoCloseable resource = nextResource();
+        try (CloseIt0 it = CloseIt0.wrapException(resource)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void consumeAllException(Blackhole bh) {
+        AutoCloseable resource = nextResource();
+        try (CloseIt0 it = CloseIt0.consumeAllException(resource, exConsumer)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void ignoreException(Blackhole bh) {
+        AutoCloseable resource = nextResource();
+        try (CloseIt0 it = CloseIt0.ignoreException(resource)) {
+            bh.consume(resource);
+        }
+    }
+
+    @Benchmark
+    public void nestedRethrow(Blackhole bh) {
+        AutoCloseable resource = nextResource();
+        try (CloseIt0 it = CloseIt0.rethrow(CloseIt0.rethrowWhen(
+                CloseIt0.consumeAllException(resource, exConsumer), when), exConsumer)) {
+            bh.consume(resource);
+        }
+    }
+
+    static final class R0 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R1 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R2 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R3 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R4 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R5 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R6 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    static final class R7 implements AutoCloseable {
+        int closed;
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
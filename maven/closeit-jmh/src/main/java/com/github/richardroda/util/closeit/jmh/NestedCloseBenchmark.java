@@ -0,0 +1,173 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItScope;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.jmh.BenchmarkResource.Outcome;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the three deep connection, statement, and result set chain from
+ * the {@code queryDatabase} examples in the README, compared with closing the
+ * same three resources in hand written nested {@code try-finally} blocks.
+ * When the outcome is a failure, every one of the three resources fails to
+ * close.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NestedCloseBenchmark {
+
+    @Param({"SUCCESS", "CHECKED_FAILURE"})
+    public Outcome outcome;
+
+    private BenchmarkResource con;
+    private BenchmarkResource stmt;
+    private BenchmarkResource rs;
+    private Consumer<Throwable> exConsumer;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        con = new BenchmarkResource(outcome);
+        stmt = new BenchmarkResource(outcome);
+        rs = new BenchmarkResource(outcome);
+        exConsumer = bh::consume;
+    }
+
+    @Benchmark
+    public void baselineTryFinally(Blackhole bh) {
+        try {
+            try {
+                try {
+                    bh.consume(rs);
+                } finally {
+                    try {
+                        rs.close();
+                    } catch (Exception ex) {
+                        bh.consume(ex);
+                    }
+                }
+            } finally {
+                try {
+                    stmt.close();
+                } catch (Exception ex) {
+                    bh.consume(ex);
+                }
+            }
+        } finally {
+            try {
+                con.close();
+            } catch (Exception ex) {
+                bh.consume(ex);
+            }
+        }
+    }
+
+    @Benchmark
+    public void baselineTryWithResources(Blackhole bh) {
+        try (BenchmarkResource c1 = con;
+                BenchmarkResource c2 = stmt;
+                BenchmarkResource c3 = rs) {
+            bh.consume(c3);
+        } catch (Exception ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void consumeAllException(Blackhole bh) {
+        try (CloseIt0 c1 = CloseIt0.consumeAllException(con, exConsumer);
+                CloseIt0 c2 = CloseIt0.consumeAllException(stmt, exConsumer);
+                CloseIt0 c3 = CloseIt0.consumeAllException(rs, exConsumer)) {
+            bh.consume(rs);
+        }
+    }
+
+    @Benchmark
+    public void wrapAllException(Blackhole bh) {
+        try (CloseIt0 c1 = CloseIt0.wrapAllException(con);
+                CloseIt0 c2 = CloseIt0.wrapAllException(stmt);
+                CloseIt0 c3 = CloseIt0.wrapAllException(rs)) {
+            bh.consume(rs);
+        } catch (NotClosedException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void scopeConsumeAllException(Blackhole bh) {
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(con, exConsumer);
+            scope.add(stmt, exConsumer);
+            bh.consume(scope.add(rs, exConsumer));
+        }
+    }
+
+    @Benchmark
+    public void scopeWrap(Blackhole bh) {
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(con);
+            scope.add(stmt);
+            bh.consume(scope.add(rs));
+        } catch (NotClosedException ex) {
+            bh.consume(ex);
+        }
+    }
+
+    @Benchmark
+    public void rethrowWhenConsumeAllException(Blackhole bh) {
+        try (CloseIt0 c1 = CloseIt0.rethrow(CloseIt0.rethrowWhen(
+                CloseIt0.consumeAllException(con, exConsumer), th -> false), exConsumer);
+                CloseIt0 c2 = CloseIt0.rethrow(CloseIt0.rethrowWhen(
+                        CloseIt0.consumeAllException(stmt, exConsumer), th -> false), exConsumer);
+                CloseIt0 c3 = CloseIt0.rethrow(CloseIt0.rethrowWhen(
+                        CloseIt0.consumeAllException(rs, exConsumer), th -> false), exConsumer)) {
+            bh.consume(rs);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,96 @@
+package com.github.richardroda.util.closeit.jmh;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.jmh.BenchmarkResource.Outcome;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of the failure path of the wrap decorators, where
+ * each failed close creates a {@link NotClosedException}, with and without
+ * the {@link NotClosedException#STACKLESS_PROPERTY} system property.  The
+ * property is read once, so each mode is measured in its own forks.  The
+ * {@code depth} parameter adds frames below the close, since the cost of
+ * filling in a stack trace grows with the depth of the stack.
+ *
+ * @author Richard Roda
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NotClosedExceptionBenchmark {
+
+    @Param({"0", "50"})
+    public int depth;
+
+    private BenchmarkResource resource;
+
+    @Setup
+    public void setup() {
+        resource = new BenchmarkResource(Outcome.CHECKED_FAILURE);
+    }
+
+    @Benchmark
+    @Fork(2)
+    public void wrapException(Blackhole bh) {
+        bh.consume(closeAt(depth));
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = "-D" + NotClosedException.STACKLESS_PROPERTY + "=true")
+    public void wrapExceptionStackless(Blackhole bh) {
+        bh.consume(closeAt(depth));
+    }
+
+    private Object closeAt(int remaining) {
+        if (remaining > 0) {
+            return closeAt(remaining - 1);
+        }
+        try (CloseIt0 it = CloseIt0.wrapException(resource)) {
+            return resource;
+        } catch (NotClosedException ex) {
+            return ex;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
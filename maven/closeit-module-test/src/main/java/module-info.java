@@ -6,4 +6,5 @@ module com.github.richardroda.unit.test {
      * present and enforced.
      */
     requires com.github.richardroda.util.closeit;
+    requires java.management;
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.github.richardroda.unit.test;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItBuffers;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that direct buffers are released when closeit is used from the
+ * module path, where it needs to read jdk.unsupported to find the cleaner.
+ */
+public class BuffersTest
+{
+    private static final int CAPACITY = 16 * 1024 * 1024;
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new AssertionError("no direct buffer pool");
+    }
+
+    @Test
+    public void testReleaseSupported() {
+        Assert.assertTrue(CloseItBuffers.isReleaseSupported());
+    }
+
+    @Test
+    public void testDirectBufferReleased() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CAPACITY);
+        long allocated = directMemoryUsed();
+        try (CloseIt0 release = CloseItBuffers.release(buffer)) {
+            buffer.put(0, (byte) 1);
+        }
+        Assert.assertTrue(directMemoryUsed() <= allocated - CAPACITY,
+                "direct buffer was not released");
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A consumer of close failures that hands each failure to a background
+ * thread, which passes it to another consumer.  The consumer given to
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }
+ * or {@link CloseIt0#rethrow(com.github.richardroda.util.closeit.CloseIt0, java.util.function.Consumer) }
+ * runs on the closing thread, so a slow log appender or alerting hook
+ * blocks the request thread.  Decorating it with an
+ * {@code AsyncExceptionDispatcher} reduces the cost on the closing thread to
+ * an offer to a bounded lock free queue.
+ * <p>
+ * The queue never grows beyond its capacity.  When it is full, the
+ * {@link Overflow} policy of the dispatcher decides which failure is lost:
+ * the oldest failure in the queue, or the new failure.  Lost failures are
+ * counted by {@link #dropped() }, and after each batch the dispatcher thread
+ * passes the number lost since the last batch to the {@code delegate} as a
+ * {@link SuppressionPolicy.OmittedFailures} exception, so that the log shows
+ * that failures are missing.  The {@link Overflow#CALL_INLINE} policy loses
+ * nothing, and instead passes the failure to the {@code delegate} on the
+ * closing thread.
+ * </p>
+ * <p>
+ * The dispatcher thread is a daemon thread, so a dispatcher that is not
+ * closed does not prevent the JVM from exiting.  Closing the dispatcher
+ * waits for the dispatcher thread to pass every failure in the queue to the
+ * {@code delegate}.  A failure that is accepted after the dispatcher is
+ * closed is passed to the {@code delegate} on the calling thread.
+ * </p>
+ * <p>
+ * The {@code delegate} is called while the lock of the dispatcher is held,
+ * by the dispatcher thread and by the threads that pass on failures after
+ * the dispatcher is closed, so it is called by one thread at a time.  The
+ * exception is {@link Overflow#CALL_INLINE}, which passes the failures that
+ * do not fit in the queue to the {@code delegate} without waiting for the
+ * dispatcher thread, so the {@code delegate} of a dispatcher with that
+ * policy must be thread safe.
+ * </p>
+ * <pre><code>
+ * static final AsyncExceptionDispatcher EX_CONSUMER = AsyncExceptionDispatcher.create(
+ *     exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception),
+ *     1024, AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+ * ...
+ * try (CloseIt0 closeCon = CloseIt0.consumeAllException(con, EX_CONSUMER)) {
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class AsyncExceptionDispatcher implements Consumer<Throwable>, CloseIt0 {
+
+    /**
+     * What to do with a failure that is accepted when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * The oldest failure in the queue is dropped to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * The new failure is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The new failure is passed to the {@code delegate} on the calling
+         * thread, which may be at the same time as the dispatcher thread.
+         */
+        CALL_INLINE
+    }
+
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+    private static final AtomicInteger DISPATCHER_NUMBER = new AtomicInteger();
+
+    private final BoundedQueue<Throwable> queue;
+    private final Overflow overflow;
+    private final Consumer<? super Throwable> delegate;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    /**
+     * The number of dropped failures already passed to the delegate, which
+     * is only used by the dispatcher thread, and by the closing thread after
+     * the dispatcher thread has ended.
+     */
+    private long droppedReported;
+
+    private AsyncExceptionDispatcher(Consumer<? super Throwable> delegate, int capacity, Overflow overflow) {
+        this.queue = new BoundedQueue<>(capacity);
+        this.overflow = overflow;
+        this.delegate = delegate;
+        this.thread = new Thread(this::drain, "closeit-exception-dispatcher-" + DISPATCHER_NUMBER.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Create a dispatcher and start its dispatcher thread.
+     * @param delegate Consumer of the failures, which is called on the
+     * dispatcher thread.  Any throwable it throws is ignored.
+     * @param capacity The minimum number of failures the queue can hold,
+     * which is rounded up to a power of two that is at least two.
+     * @param overflow What to do with a failure that is accepted when the
+     * queue is full.
+     * @return A new dispatcher.
+     */
+    public static AsyncExceptionDispatcher create(Consumer<? super Throwable> delegate, int capacity,
+            Overflow overflow) {
+        Objects.requireNonNull(delegate, "delegate required");
+        Objects.requireNonNull(overflow, "overflow required");
+        AsyncExceptionDispatcher dispatcher = new AsyncExceptionDispatcher(delegate, capacity, overflow);
+        dispatcher.thread.start();
+        return dispatcher;
+    }
+
+    /**
+     * Hand a failure to the dispatcher thread.  If the queue is full, the
+     * {@link Overflow} policy of the dispatcher decides what happens to the
+     * failure.  If the dispatcher is closed, the failure is passed to the
+     * {@code delegate} on the calling thread.
+     * @param th The failure.
+     */
+    @Override
+    public void accept(Throwable th) {
+        Objects.requireNonNull(th, "th required");
+        if (!closed) {
+            if (!queue.offer(th)) {
+                switch (overflow) {
+                    case DROP_OLDEST:
+                        // Another thread may fill the freed slot first, in
+                        // which case the new failure is dropped instead.
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                        if (!queue.offer(th)) {
+                            dropped.incrementAndGet();
+                        }
+                        break;
+                    case DROP_NEWEST:
+                        dropped.incrementAndGet();
+                        break;
+                    default:
+                        deliver(th);
+                        return;
+                }
+            }
+            if (closed) {
+                // The dispatcher thread may have finished before the offer.
+                drainQueued();
+            } else if (idle) {
+                LockSupport.unpark(thread);
+            }
+            return;
+        }
+        synchronized (this) {
+            deliver(th);
+        }
+    }
+
+    /**
+     * @return The number of failures dropped because the queue was full
+     * since the dispatcher was created.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of failures waiting in the queue, which is only an
+     * estimate while failures are being accepted or passed on.
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Stop the dispatcher thread, after it passes every failure in the queue
+     * to the {@code delegate}.  If the calling thread is interrupted, it
+     * still waits, and its interrupt status is set when this method returns.
+     */
+    @Override
+    public void closeIt() {
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive() && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        drainQueued();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void drainQueued() {
+        Throwable th;
+        while ((th = queue.poll()) != null) {
+            deliver(th);
+        }
+        reportDropped();
+    }
+
+    private void drain() {
+        while (true) {
+            int count = 0;
+            synchronized (this) {
+                Throwable th;
+                while (count < BATCH_SIZE && (th = queue.poll()) != null) {
+                    deliver(th);
+                    count++;
+                }
+                reportDropped();
+            }
+            if (count == 0 && queue.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                idle = true;
+                try {
+                    if (queue.isEmpty() && !closed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                } finally {
+                    idle = false;
+                }
+            }
+        }
+    }
+
+    private synchronized void reportDropped() {
+        long total = dropped.get();
+        long count = total - droppedReported;
+        if (count > 0L) {
+            droppedReported = total;
+            deliver(new SuppressionPolicy.OmittedFailures((int) Math.min(count, Integer.MAX_VALUE), Throwable.class));
+        }
+    }
+
+    private void deliver(Throwable th) {
+        try {
+            delegate.accept(th);
+        } catch (Throwable ignored) {
+            // A failing delegate must not stop the dispatcher thread.
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
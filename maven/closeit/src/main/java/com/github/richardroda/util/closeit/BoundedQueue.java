@@ -0,0 +1,147 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock free, multi-producer multi-consumer queue backed by an
+ * array.  Each slot has a sequence number that tells producers and consumers
+ * whether the slot is free for the lap they are on, so that an offer or poll
+ * is a single compare and set on the tail or head when there is no
+ * contention, and neither allocates.  This is Dmitry Vyukov's bounded MPMC
+ * queue.
+ *
+ * @param <E> Type of the elements.
+ * @author Richard Roda
+ */
+final class BoundedQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity The minimum capacity of the queue, which is rounded up
+     * to a power of two that is at least two.
+     */
+    BoundedQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        // The sequence numbers need at least two slots to tell a full slot
+        // from a free slot on the next lap.
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new AtomicReferenceArray<>(size);
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return The number of elements the queue can hold.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Add an element to the tail of the queue if there is room for it.
+     * @param element Element to add.
+     * @return {@code true} if it was added, {@code false} if the queue is full.
+     */
+    boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequence.get(index) - pos;
+            if (dif == 0L) {
+                if (tail.compareAndSet(pos, pos + 1L)) {
+                    buffer.lazySet(index, element);
+                    sequence.set(index, pos + 1L);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0L) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the element at the head of the queue.
+     * @return The element, or {@code null} if the queue is empty.
+     */
+    E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequence.get(index) - (pos + 1L);
+            if (dif == 0L) {
+                if (head.compareAndSet(pos, pos + 1L)) {
+                    E element = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequence.set(index, pos + mask + 1L);
+                    return element;
+                }
+                pos = head.get();
+            } else if (dif < 0L) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return The number of elements in the queue, which is only an estimate
+     * while elements are being added or removed.
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0L, Math.min(size, capacity()));
+    }
+
+    /**
+     * @return {@code true} when the queue has no elements.
+     */
+    boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -1,6 +1,12 @@
 package com.github.richardroda.util.closeit;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -43,7 +49,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * @see com.github.richardroda.util.closeit.CloseIt1#wrapException(java.lang.AutoCloseable, java.util.function.Function) 
      */
     static CloseIt0 wrapException(AutoCloseable autoCloseable) {
-        return toCloseIt0(autoCloseable, NotClosedException::new);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.WrapException0(autoCloseable), autoCloseable);
     }
 
     /**
@@ -57,7 +64,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * @see com.github.richardroda.util.closeit.CloseIt1#wrapAllException(java.lang.AutoCloseable, java.util.function.Function) 
      */
     static CloseIt0 wrapAllException(AutoCloseable autoCloseable) {
-        return toCloseIt0AllException(autoCloseable, NotClosedException::new);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.WrapAllException0(autoCloseable), autoCloseable);
     }
 
     /**
@@ -71,7 +79,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * @see com.github.richardroda.util.closeit.CloseIt1#wrapAllThrowable(java.lang.AutoCloseable, java.util.function.Function) 
      */
     static CloseIt0 wrapAllThrowable(AutoCloseable autoCloseable) {
-        return toCloseIt0AllThrowable(autoCloseable, NotClosedException::new);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.WrapAllThrowable0(autoCloseable), autoCloseable);
     }
 
     /**
@@ -90,7 +99,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * @see #toCloseIt0(java.lang.AutoCloseable, java.util.function.Function) 
      */
     static CloseIt0 hideException(AutoCloseable autoCloseable) {
-        return toCloseIt0(autoCloseable, CloseItHelper::hideException);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.HideException0(autoCloseable), autoCloseable);
     }
     
     /**
@@ -101,7 +111,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * exception.
      */
     static CloseIt0 ignoreException(AutoCloseable autoCloseable) {
-        return consumeException(autoCloseable, CloseItHelper::noOp);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.IgnoreException0(autoCloseable), autoCloseable);
     }
     
     /**
@@ -116,15 +127,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         , Consumer<? super Exception> exConsumer) {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
-          try {
-              autoCloseable.close();
-          } catch (RuntimeException ex) {
-              throw ex;
-          } catch (Exception ex) {
-              exConsumer.accept(ex);
-          }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.ConsumeException0(autoCloseable, exConsumer), autoCloseable);
     }
     
     /**
@@ -135,7 +138,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * exception.
      */
     static CloseIt0 ignoreAllException(AutoCloseable autoCloseable) {
-        return consumeAllException(autoCloseable, CloseItHelper::noOp);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.IgnoreAllException0(autoCloseable), autoCloseable);
     }
     
     /**
@@ -150,13 +154,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         , Consumer<? super Exception> exConsumer) {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
-          try {
-              autoCloseable.close();
-          } catch (Exception ex) {
-              exConsumer.accept(ex);
-          }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.ConsumeAllException0(autoCloseable, exConsumer), autoCloseable);
     }
     
     /**
@@ -166,7 +164,8 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
      * @return A {@code CloseIt0} which ignores (does not rethrow) any throwable.
      */
     static CloseIt0 ignoreAllThrowable(AutoCloseable autoCloseable) {
-        return consumeAllThrowable(autoCloseable, CloseItHelper::noOp);
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.IgnoreAllThrowable0(autoCloseable), autoCloseable);
     }
     
     /**
@@ -181,13 +180,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         , Consumer<? super Throwable> exConsumer) {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
-          try {
-              autoCloseable.close();
-          } catch (Throwable ex) {
-              exConsumer.accept(ex);
-          }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.ConsumeAllThrowable0(autoCloseable, exConsumer), autoCloseable);
     }
 
     /**
@@ -211,18 +204,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (RuntimeException ex) {
-                throw ex;
-            } catch (Exception ex) {
-                RuntimeException rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.MapException0(autoCloseable, exceptionMapper), autoCloseable);
     }    
 
     /**
@@ -246,16 +228,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (Exception ex) {
-                RuntimeException rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.MapAllException0(autoCloseable, exceptionMapper), autoCloseable);
     }    
 
     /**
@@ -278,16 +251,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (Throwable ex) {
-                RuntimeException rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.MapAllThrowable0(autoCloseable, exceptionMapper), autoCloseable);
     }
 
     
@@ -323,15 +287,7 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
     static CloseIt0 rethrowWhen(CloseIt0 closeIt, Predicate<? super Throwable> when) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(when, "when required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                if (when.test(th)) {
-                    throw th;
-                }
-            }
-        };
+        return new CloseItDecorators.RethrowWhen0(closeIt, when);
     }
 
     /**
@@ -349,17 +305,318 @@ public interface CloseIt0 extends CloseIt1<RuntimeException> {
     static CloseIt0 rethrow(CloseIt0 closeIt, Consumer<? super Throwable> exConsumer) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
+        return new CloseItDecorators.Rethrow0(closeIt, exConsumer);
+    }
+
+    /**
+     * Close independent resources concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing.  This is useful when the
+     * {@code close()} methods block, such as closing many clients that each
+     * make a network round trip, because the time to close all of them is
+     * about the time of the slowest close instead of the sum of all of them.
+     * Any throwable that occurs is wrapped in a single
+     * {@link NotClosedException}.  The cause of the {@code NotClosedException}
+     * is the first failure in the iteration order of {@code resources}, and
+     * the failures after it are suppressed exceptions of the
+     * {@code NotClosedException}, added according to the
+     * {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last resource is closed by the calling thread, as is any resource
+     * that the {@code executor} rejects.  If the calling thread is
+     * interrupted, it still waits for every resource to close, and its
+     * interrupt status is set when this method returns.
+     * </p>
+     * @param resources Resources to close. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @throws NotClosedException When any resource fails to close.
+     * @see #closeAllParallel(java.util.Collection, java.util.concurrent.Executor, java.util.function.Function) 
+     * @see com.github.richardroda.util.closeit.CloseIt1#closeAllParallel(java.util.Collection, java.util.concurrent.Executor, java.util.function.Function) 
+     * @since 1.8
+     */
+    static void closeAllParallel(Collection<? extends AutoCloseable> resources, Executor executor) {
+        NotClosedException ex = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(resources, executor), NotClosedException::new);
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Close independent resources concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing, where each resource is
+     * decorated by a {@code policy} that processes its exceptions.  The
+     * {@code policy} is usually one of the static methods of this interface,
+     * such as {@code CloseIt0::wrapException}, {@code CloseIt0::ignoreAllException},
+     * or {@code resource->CloseIt0.consumeAllException(resource, exConsumer)}.
+     * The first exception thrown by a decorated resource, in the iteration
+     * order of {@code resources}, is rethrown, and the exceptions after it
+     * are added to it as suppressed exceptions
+     * according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last resource is closed by the calling thread, as is any resource
+     * that the {@code executor} rejects.  If the calling thread is
+     * interrupted, it still waits for every resource to close, and its
+     * interrupt status is set when this method returns.
+     * </p>
+     * @param resources Resources to close. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions. Must not be {@code null}.
+     * @see #closeAllParallel(java.util.Collection, java.util.concurrent.Executor) 
+     * @since 1.8
+     */
+    static void closeAllParallel(Collection<? extends AutoCloseable> resources, Executor executor,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        Objects.requireNonNull(resources, "resources required");
+        Objects.requireNonNull(policy, "policy required");
+        List<CloseIt0> closeIts = new ArrayList<>(resources.size());
+        for (AutoCloseable resource : resources) {
+            Objects.requireNonNull(resource, "resources must not contain null");
+            closeIts.add(Objects.requireNonNull(policy.apply(resource), "policy must not return null"));
+        }
+        Throwable th = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(closeIts, executor), Function.identity());
+        if (th != null) {
+            throw CloseItHelper.hideException(th);
+        }
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} which closes it
+     * asynchronously on an {@link Executor}.  The close method of the
+     * {@code CloseIt0} returns as soon as the close is handed to the
+     * {@code executor}, so the calling thread does not pay for a close that
+     * flushes buffers or sends a protocol goodbye.  Since exceptions cannot be
+     * thrown to the calling thread, all throwables are consumed by the
+     * {@code exConsumer} on the thread that closes the {@code autoCloseable}.
+     * The {@code autoCloseable} may be decorated by the other static methods
+     * of the CloseIt interfaces to process its exceptions first, for example
+     * {@code CloseIt0.async(CloseIt0.wrapAllException(autoCloseable), executor, exConsumer)}
+     * passes every exception to the consumer wrapped in a
+     * {@link NotClosedException}.  If the {@code executor} rejects the close,
+     * the calling thread closes the {@code autoCloseable} instead.
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param executor Executor that runs the close method.
+     * @param exConsumer Consumer to apply an operation to the processed throwable.
+     * @return A {@code CloseIt0} which closes the {@code autoCloseable}
+     * on the {@code executor}.
+     * @see com.github.richardroda.util.closeit.CloseIt5#closeItAsync(java.util.concurrent.Executor) 
+     * @since 1.8
+     */
+    static CloseIt0 async(AutoCloseable autoCloseable, Executor executor,
+            Consumer<? super Throwable> exConsumer) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(executor, "executor required");
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        return CloseItLeakDetector.trackCloseIt0(() -> CloseItHelper.closeAsync(autoCloseable, executor)
+                .whenComplete((result, th) -> {
+                    if (th != null) {
+                        exConsumer.accept(th);
+                    }
+                }), autoCloseable);
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} which puts a
+     * bound on how long its close method can take.  The close is run on a
+     * closer thread while the calling thread waits up to the {@code timeout}
+     * for it.  If the close has not finished by then, the calling thread gets
+     * control back, the close is left to finish on the closer thread, and the
+     * {@code onTimeout} consumer is called with the {@code autoCloseable}.
+     * Any exception or throwable thrown by the abandoned close is discarded.
+     * If the calling thread is interrupted while it waits, the close is
+     * abandoned in the same way, and the interrupt status of the thread is
+     * restored.
+     * <p>
+     * When the close finishes within the {@code timeout}, exceptions are
+     * processed like {@link #wrapException(java.lang.AutoCloseable) }: checked
+     * exceptions are wrapped in a {@link NotClosedException}, and unchecked
+     * exceptions and errors are rethrown.  The {@code autoCloseable} may be
+     * decorated by the other static methods of the CloseIt interfaces to
+     * process its exceptions first, for example
+     * {@code CloseIt0.withTimeout(CloseIt0.consumeAllException(ldapContext, exConsumer), timeout, onTimeout)}.
+     * </p>
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param timeout The longest time to wait for the close to finish.
+     * @param onTimeout Consumer called with the {@code autoCloseable} when its
+     * close does not finish within the {@code timeout}.
+     * @return A {@code CloseIt0} which waits no longer than the
+     * {@code timeout} for the {@code autoCloseable} to close.
+     * @see #withTimeout(java.lang.AutoCloseable, java.time.Duration) 
+     * @see com.github.richardroda.util.closeit.CloseIt1#withTimeout(java.lang.AutoCloseable, java.time.Duration, java.util.function.Function) 
+     * @since 1.8
+     */
+    static CloseIt0 withTimeout(AutoCloseable autoCloseable, Duration timeout,
+            Consumer<? super AutoCloseable> onTimeout) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(timeout, "timeout required");
+        Objects.requireNonNull(onTimeout, "onTimeout required");
+
+        return CloseItLeakDetector.trackCloseIt0(() -> {
             try {
-                closeIt.close();
-            } catch (Throwable th) {
-                exConsumer.accept(th);
-                throw th;
+                if (!CloseItHelper.closeWithin(autoCloseable, timeout)) {
+                    onTimeout.accept(autoCloseable);
+                }
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new NotClosedException(ex);
             }
-        };
+        }, autoCloseable);
     }
 
-    
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} which puts a
+     * bound on how long its close method can take, and throws a
+     * {@link NotClosedException} when it takes longer.  The cause of the
+     * {@code NotClosedException} is a {@link TimeoutException} when the close
+     * does not finish within the {@code timeout}, otherwise it is the checked
+     * exception thrown by the close method.
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param timeout The longest time to wait for the close to finish.
+     * @return A {@code CloseIt0} which waits no longer than the
+     * {@code timeout} for the {@code autoCloseable} to close.
+     * @see #withTimeout(java.lang.AutoCloseable, java.time.Duration, java.util.function.Consumer) 
+     * @since 1.8
+     */
+    static CloseIt0 withTimeout(AutoCloseable autoCloseable, Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout required");
+        return withTimeout(autoCloseable, timeout, closeable -> {
+            throw new NotClosedException(new TimeoutException("close did not finish within " + timeout));
+        });
+    }
+
+    /**
+     * Decorate an {@link AutoCloseable} with a {@link CloseIt0} which records
+     * its closes in a {@link CloseMetrics} registry under the class name of
+     * the {@code autoCloseable}.  The registry counts the closes, the
+     * failures by exception class, and the time each close takes, and counts
+     * the {@code autoCloseable} as open from the time it is decorated until
+     * it is first closed.  Recording a close takes no locks, but each call
+     * of this method allocates the decorator and the flag that marks its
+     * first close, so decorate a resource once, not once per close.
+     * <p>
+     * Exceptions are not processed: any exception or throwable thrown by the
+     * close method is recorded and rethrown unchanged, like
+     * {@link #hideException(java.lang.AutoCloseable) }.  Decorate the
+     * returned {@code CloseIt0} with one of the other static methods to
+     * process exceptions, for example
+     * {@code CloseIt0.wrapException(CloseIt0.metered(con, metrics))}.
+     * </p>
+     *
+     * @param autoCloseable An autoCloseable object.  Decorate the resource
+     * itself rather than a lambda, so that its class name is the tag.
+     * @param metrics Registry to record the closes in.
+     * @return A {@code CloseIt0} which records each close in the
+     * {@code metrics}.
+     * @see #metered(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseMetrics, java.lang.String) 
+     * @since 1.8
+     */
+    static CloseIt0 metered(AutoCloseable autoCloseable, CloseMetrics metrics) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        return metered(autoCloseable, metrics, autoCloseable.getClass().getName());
+    }
+
+    /**
+     * Decorate an {@link AutoCloseable} with a {@link CloseIt0} which records
+     * its closes in a {@link CloseMetrics} registry under a {@code tag}
+     * supplied by the application.
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param metrics Registry to record the closes in.
+     * @param tag Name to record the closes under.
+     * @return A {@code CloseIt0} which records each close in the
+     * {@code metrics}.
+     * @see #metered(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseMetrics) 
+     * @since 1.8
+     */
+    static CloseIt0 metered(AutoCloseable autoCloseable, CloseMetrics metrics, String tag) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(metrics, "metrics required");
+        return CloseItHelper.metered(autoCloseable, metrics.meter(tag));
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} whose close
+     * method hands the {@code autoCloseable} to a {@link DeferredCloser}
+     * instead of closing it, so that the closer threads close it in the
+     * background.  Since exceptions cannot be thrown to the calling thread,
+     * all throwables are passed to the {@code exConsumer} of the
+     * {@code closer}.  The {@code autoCloseable} may be decorated by the other
+     * static methods of the CloseIt interfaces to process its exceptions
+     * first.
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param closer The closer that closes the {@code autoCloseable}.
+     * @return A {@code CloseIt0} which defers the close of the
+     * {@code autoCloseable} to the {@code closer}.
+     * @see DeferredCloser#defer(java.lang.AutoCloseable) 
+     * @since 1.8
+     */
+    static CloseIt0 deferred(AutoCloseable autoCloseable, DeferredCloser closer) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(closer, "closer required");
+        return CloseItLeakDetector.trackCloseIt0(() -> closer.defer(autoCloseable), autoCloseable);
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} which retries
+     * its close method when it fails transiently, such as a remote session
+     * logout or a lease release.  The {@code retryPolicy} decides which
+     * failures are retried, how long to back off between attempts, and the
+     * most attempts and time to spend.  When the close does not succeed, the
+     * failure of the last attempt is processed like
+     * {@link #wrapException(java.lang.AutoCloseable) }: a checked exception is
+     * wrapped in a {@link NotClosedException}, and unchecked exceptions and
+     * errors are rethrown.  The failures of the earlier attempts are added to
+     * it as suppressed exceptions.
+     *
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param retryPolicy Policy that decides when and how to retry.
+     * @return A {@code CloseIt0} which retries the close of the
+     * {@code autoCloseable} according to the {@code retryPolicy}.
+     * @see com.github.richardroda.util.closeit.CloseIt1#retrying(java.lang.AutoCloseable, com.github.richardroda.util.closeit.RetryPolicy, java.util.function.Function) 
+     * @since 1.8
+     */
+    static CloseIt0 retrying(AutoCloseable autoCloseable, RetryPolicy retryPolicy) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(retryPolicy, "retryPolicy required");
+
+        return CloseItLeakDetector.trackCloseIt0(() -> {
+            try {
+                retryPolicy.close(autoCloseable);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new NotClosedException(ex);
+            }
+        }, autoCloseable);
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt0} that processes
+     * every failure of the close with a {@link CloseItPolicy}, in a single
+     * {@code try-catch}, instead of nesting several of the other static
+     * methods.
+     * @param autoCloseable An autoCloseable object or lambda.
+     * @param policy The policy, whose mapped exceptions are unchecked, such as
+     * one made from {@link CloseItPolicy#create() }.
+     * @return A {@code CloseIt0} which processes the failures of the close
+     * with the {@code policy}.
+     * @since 1.8
+     */
+    static CloseIt0 withPolicy(AutoCloseable autoCloseable, CloseItPolicy<? extends RuntimeException> policy) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(policy, "policy required");
+        return CloseItLeakDetector.trackCloseIt0(new CloseItDecorators.Policy0(autoCloseable, policy), autoCloseable);
+    }
 }
 /*
 BSD 2-Clause License
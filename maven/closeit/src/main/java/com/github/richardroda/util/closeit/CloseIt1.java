@@ -1,6 +1,10 @@
 package com.github.richardroda.util.closeit;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -45,18 +49,7 @@ public interface CloseIt1<E extends Exception> extends CloseIt2<E, RuntimeExcept
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (RuntimeException ex) {
-                throw ex;
-            } catch (Exception ex) {
-                E rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt1(new CloseItDecorators.MapException1<>(autoCloseable, exceptionMapper), autoCloseable);
     }
 
     /**
@@ -79,16 +72,7 @@ public interface CloseIt1<E extends Exception> extends CloseIt2<E, RuntimeExcept
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (Exception ex) {
-                E rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt1(new CloseItDecorators.MapAllException1<>(autoCloseable, exceptionMapper), autoCloseable);
     }
 
     /**
@@ -111,16 +95,7 @@ public interface CloseIt1<E extends Exception> extends CloseIt2<E, RuntimeExcept
         Objects.requireNonNull(autoCloseable, "autoCloseable required");
         Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
 
-        return () -> {
-            try {
-                autoCloseable.close();
-            } catch (Throwable ex) {
-                E rex = exceptionMapper.apply(ex);
-                if (rex != null) {
-                    throw rex;
-                }
-            }
-        };
+        return CloseItLeakDetector.trackCloseIt1(new CloseItDecorators.MapAllThrowable1<>(autoCloseable, exceptionMapper), autoCloseable);
     }
 
     
@@ -158,15 +133,7 @@ public interface CloseIt1<E extends Exception> extends CloseIt2<E, RuntimeExcept
             CloseIt1<E> rethrowWhen(CloseIt1<? extends E> closeIt, Predicate<? super Throwable> when) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(when, "when required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                if (when.test(th)) {
-                    throw th;
-                }
-            }
-        };
+        return new CloseItDecorators.RethrowWhen1<>(closeIt, when);
     }
 
     /**
@@ -186,16 +153,211 @@ public interface CloseIt1<E extends Exception> extends CloseIt2<E, RuntimeExcept
             CloseIt1<E> rethrow(CloseIt1<? extends E> closeIt, Consumer<? super Throwable> exConsumer) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
+        return new CloseItDecorators.Rethrow1<>(closeIt, exConsumer);
+    }
+
+    /**
+     * Close independent lambdas concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing.  This is useful when the close
+     * methods block, such as closing many clients that each make a network
+     * round trip, because the time to close all of them is about the time of
+     * the slowest close instead of the sum of all of them.  The lambdas may be
+     * decorated with any of the CloseIt static methods to process their
+     * exceptions.  The first exception thrown by a lambda, in the iteration
+     * order of {@code closeIts}, is rethrown, and the exceptions after it are
+     * added to it as suppressed exceptions
+     * according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last lambda is closed by the calling thread, as is any lambda that
+     * the {@code executor} rejects.  If the calling thread is interrupted, it
+     * still waits for every lambda to close, and its interrupt status is set
+     * when this method returns.
+     * </p>
+     * @param <E> Checked exception thrown by the close method.
+     * @param closeIts The closeIt lambdas. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @throws E When a lambda fails to close with this exception.
+     * @see com.github.richardroda.util.closeit.CloseIt0#closeAllParallel(java.util.Collection, java.util.concurrent.Executor, java.util.function.Function) 
+     * @since 1.8
+     */
+    static <E extends Exception>
+            void closeAllParallel(Collection<? extends CloseIt1<? extends E>> closeIts, Executor executor) throws E {
+        Throwable th = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(closeIts, executor), Function.identity());
+        if (th != null) {
+            throw CloseItHelper.hideException(th);
+        }
+    }
+
+    /**
+     * Close independent resources concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing.  The first throwable that
+     * occurs, in the iteration order of {@code resources}, is mapped to the
+     * exception specified by the type variable of the {@code CloseIt1}
+     * interface using the supplied {@code exceptionMapper}, and the failures
+     * after it are added to the mapped exception as suppressed exceptions
+     * according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last resource is closed by the calling thread, as is any resource
+     * that the {@code executor} rejects.  If the calling thread is
+     * interrupted, it still waits for every resource to close, and its
+     * interrupt status is set when this method returns.
+     * </p>
+     * @param <E> Checked exception thrown by the close method.
+     * @param resources Resources to close. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @param exceptionMapper Function to map the first throwable to the
+     * exception type specified by the {@code CloseIt1} interface.  A
+     * {@code null} return value means to swallow (ignore) the throwable, in
+     * which case the next failure, if any, is mapped instead.
+     * @throws E When a resource fails to close.
+     * @see com.github.richardroda.util.closeit.CloseIt0#closeAllParallel(java.util.Collection, java.util.concurrent.Executor) 
+     * @since 1.8
+     */
+    static <E extends Exception> void closeAllParallel(Collection<? extends AutoCloseable> resources,
+            Executor executor, Function<? super Throwable, ? extends E> exceptionMapper) throws E {
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+        E ex = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(resources, executor), exceptionMapper);
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Create a {@code CloseIt1} from an {@link AutoCloseable} which puts a
+     * bound on how long its close method can take.  The close is run on a
+     * closer thread while the calling thread waits up to the {@code timeout}
+     * for it.  If the close has not finished by then, or the calling thread is
+     * interrupted while it waits, the close is left to finish on the closer
+     * thread and a {@link TimeoutException} is mapped using the supplied
+     * {@code exceptionMapper}.  Checked exceptions thrown by a close that
+     * finishes within the {@code timeout} are mapped in the same way, and
+     * unchecked exceptions are not processed, like
+     * {@link #wrapException(java.lang.AutoCloseable, java.util.function.Function) }.
+     *
+     * @param <E> Checked exception thrown by the close method.
+     * @param autoCloseable AutoCloseable object or lambda.
+     * @param timeout The longest time to wait for the close to finish.
+     * @param exceptionMapper Function to map an exception, or the
+     * {@code TimeoutException}, to the exception type specified by the
+     * {@code CloseIt1} interface.
+     * @return A {@code CloseIt1} which waits no longer than the
+     * {@code timeout} for the {@code autoCloseable} to close.
+     * @see com.github.richardroda.util.closeit.CloseIt0#withTimeout(java.lang.AutoCloseable, java.time.Duration, java.util.function.Consumer) 
+     * @since 1.8
+     */
+    static <E extends Exception> CloseIt1<E> withTimeout(AutoCloseable autoCloseable, Duration timeout,
+            Function<? super Exception, ? extends E> exceptionMapper) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(timeout, "timeout required");
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+
+        return CloseItLeakDetector.trackCloseIt1(() -> {
+            Exception failure;
             try {
-                closeIt.close();
-            } catch (Throwable th) {
-                exConsumer.accept(th);
-                throw th;
+                if (CloseItHelper.closeWithin(autoCloseable, timeout)) {
+                    return;
+                }
+                failure = new TimeoutException("close did not finish within " + timeout);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                failure = ex;
+            }
+            E rex = exceptionMapper.apply(failure);
+            if (rex != null) {
+                throw rex;
             }
-        };
+        }, autoCloseable);
+    }
+
+    /**
+     * Decorate the lambda with one that records its closes in a
+     * {@link CloseMetrics} registry under a {@code tag}, and rethrows any
+     * exception unchanged.  Each call allocates the decorator, like
+     * {@link CloseIt0#metered(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseMetrics, java.lang.String) },
+     * and an adapter to the exception type of the {@code closeIt}.
+     *
+     * @param <E> Checked exception thrown by the close method.
+     * @param closeIt The closeIt lambda. Must not be {@code null}.
+     * @param metrics Registry to record the closes in.
+     * @param tag Name to record the closes under.
+     * @return A decorated lambda that records each close in the
+     * {@code metrics}.
+     * @see com.github.richardroda.util.closeit.CloseIt0#metered(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseMetrics, java.lang.String) 
+     * @since 1.8
+     */
+    static <E extends Exception>
+            CloseIt1<E> metered(CloseIt1<? extends E> closeIt, CloseMetrics metrics, String tag) {
+        Objects.requireNonNull(closeIt, "closeIt required");
+        Objects.requireNonNull(metrics, "metrics required");
+        return CloseItHelper.metered(closeIt, metrics.meter(tag))::closeIt;
+    }
+
+    /**
+     * Create a {@code CloseIt1} from an {@link AutoCloseable} which retries
+     * its close method according to the {@code retryPolicy} when it fails.
+     * When the close does not succeed, a checked exception thrown by the last
+     * attempt is mapped using the supplied {@code exceptionMapper}, and
+     * unchecked exceptions are not processed, like
+     * {@link #wrapException(java.lang.AutoCloseable, java.util.function.Function) }.
+     * The failures of the earlier attempts are added to the failure of the
+     * last attempt as suppressed exceptions.
+     *
+     * @param <E> Checked exception thrown by the close method.
+     * @param autoCloseable AutoCloseable object or lambda.
+     * @param retryPolicy Policy that decides when and how to retry.
+     * @param exceptionMapper Function to map an exception to the exception
+     * type specified by the {@code CloseIt1} interface.
+     * @return A {@code CloseIt1} which retries the close of the
+     * {@code autoCloseable} according to the {@code retryPolicy}.
+     * @see com.github.richardroda.util.closeit.CloseIt0#retrying(java.lang.AutoCloseable, com.github.richardroda.util.closeit.RetryPolicy) 
+     * @since 1.8
+     */
+    static <E extends Exception> CloseIt1<E> retrying(AutoCloseable autoCloseable, RetryPolicy retryPolicy,
+            Function<? super Exception, ? extends E> exceptionMapper) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(retryPolicy, "retryPolicy required");
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+
+        return CloseItLeakDetector.trackCloseIt1(() -> {
+            try {
+                retryPolicy.close(autoCloseable);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                E rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }, autoCloseable);
+    }
+
+    /**
+     * Convert an {@link AutoCloseable} into a {@link CloseIt1} that processes
+     * every failure of the close with a {@link CloseItPolicy}, in a single
+     * {@code try-catch}, instead of nesting several of the other static
+     * methods.
+     * @param <E> Checked exception thrown by the close method.
+     * @param autoCloseable AutoCloseable object or lambda.
+     * @param policy The policy.
+     * @return A {@code CloseIt1} which processes the failures of the close
+     * with the {@code policy}.
+     * @see com.github.richardroda.util.closeit.CloseIt0#withPolicy(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseItPolicy)
+     * @since 1.8
+     */
+    static <E extends Exception> CloseIt1<E> withPolicy(AutoCloseable autoCloseable,
+            CloseItPolicy<? extends E> policy) {
+        Objects.requireNonNull(autoCloseable, "autoCloseable required");
+        Objects.requireNonNull(policy, "policy required");
+        return CloseItLeakDetector.trackCloseIt1(new CloseItDecorators.Policy1<>(autoCloseable, policy), autoCloseable);
     }
-    
 }
 /*
 BSD 2-Clause License
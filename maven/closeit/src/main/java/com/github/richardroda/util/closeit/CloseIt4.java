@@ -1,7 +1,10 @@
 package com.github.richardroda.util.closeit;
 
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -61,15 +64,7 @@ public interface CloseIt4<E1 extends Exception,
             CloseIt4<E1, E2, E3, E4> rethrowWhen(CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt, Predicate<? super Throwable> when) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(when, "when required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                if (when.test(th)) {
-                    throw th;
-                }
-            }
-        };
+        return new CloseItDecorators.RethrowWhen4<>(closeIt, when);
     }
 
     /**
@@ -92,16 +87,49 @@ public interface CloseIt4<E1 extends Exception,
             CloseIt4<E1, E2, E3, E4> rethrow(CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt, Consumer<? super Throwable> exConsumer) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                exConsumer.accept(th);
-                throw th;
-            }
-        };
+        return new CloseItDecorators.Rethrow4<>(closeIt, exConsumer);
+    }
+
+    /**
+     * Close independent lambdas concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing.  This is useful when the close
+     * methods block, such as closing many clients that each make a network
+     * round trip, because the time to close all of them is about the time of
+     * the slowest close instead of the sum of all of them.  The lambdas may be
+     * decorated with any of the CloseIt static methods to process their
+     * exceptions.  The first exception thrown by a lambda, in the iteration
+     * order of {@code closeIts}, is rethrown, and the exceptions after it are
+     * added to it as suppressed exceptions
+     * according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last lambda is closed by the calling thread, as is any lambda that
+     * the {@code executor} rejects.  If the calling thread is interrupted, it
+     * still waits for every lambda to close, and its interrupt status is set
+     * when this method returns.
+     * </p>
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     * @param closeIts The closeIt lambdas. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @throws E1 When a lambda fails to close with this exception.
+     * @throws E2 When a lambda fails to close with this exception.
+     * @throws E3 When a lambda fails to close with this exception.
+     * @throws E4 When a lambda fails to close with this exception.
+     * @see com.github.richardroda.util.closeit.CloseIt0#closeAllParallel(java.util.Collection, java.util.concurrent.Executor, java.util.function.Function) 
+     * @since 1.8
+     */
+    static <E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception>
+            void closeAllParallel(Collection<? extends CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4>> closeIts, Executor executor) throws E1, E2, E3, E4 {
+        Throwable th = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(closeIts, executor), Function.identity());
+        if (th != null) {
+            throw CloseItHelper.hideException(th);
+        }
     }
-    
 }
 /*
 BSD 2-Clause License
@@ -1,7 +1,11 @@
 package com.github.richardroda.util.closeit;
 
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -26,6 +30,30 @@ public interface CloseIt5<E1 extends Exception, E2 extends Exception, E3 extends
 
     void closeIt() throws E1, E2, E3, E4, E5;
 
+    /**
+     * Close the underlying object on an {@link Executor}, so that the calling
+     * thread does not wait for the close to finish.  The returned future
+     * completes normally when the close method returns, or exceptionally
+     * with the throwable thrown by the close method.  Since the close method
+     * of a decorated lambda processes its exceptions before the future
+     * completes, decorating with a CloseIt static method decides how the
+     * future completes.  For example, the future of
+     * {@code CloseIt0.wrapAllException(autoCloseable).closeItAsync(executor)}
+     * completes exceptionally with a {@link NotClosedException}, and the
+     * future of {@code CloseIt0.consumeAllThrowable(autoCloseable, exConsumer).closeItAsync(executor)}
+     * always completes normally.  If the {@code executor} rejects the close,
+     * the calling thread closes the object instead.
+     *
+     * @param executor Executor that runs the close method. Must not be
+     * {@code null}.
+     * @return A future that completes when the close method finishes.
+     * @see com.github.richardroda.util.closeit.CloseIt0#async(java.lang.AutoCloseable, java.util.concurrent.Executor, java.util.function.Consumer) 
+     * @since 1.8
+     */
+    default CompletableFuture<Void> closeItAsync(Executor executor) {
+        return CloseItHelper.closeAsync(this, executor);
+    }
+
     /**
      * Decorate the lambda with one that processes any {@link Throwable} exception 
      * that is thrown when the {@link #close()} method is called with a
@@ -64,15 +92,7 @@ public interface CloseIt5<E1 extends Exception, E2 extends Exception, E3 extends
             CloseIt5<E1, E2, E3, E4, E5> rethrowWhen(CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt, Predicate<? super Throwable> when) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(when, "when required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                if (when.test(th)) {
-                    throw th;
-                }
-            }
-        };
+        return new CloseItDecorators.RethrowWhen5<>(closeIt, when);
     }
 
     /**
@@ -96,14 +116,50 @@ public interface CloseIt5<E1 extends Exception, E2 extends Exception, E3 extends
             CloseIt5<E1, E2, E3, E4, E5> rethrow(CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt, Consumer<? super Throwable> exConsumer) {
         Objects.requireNonNull(closeIt, "closeIt required");
         Objects.requireNonNull(exConsumer, "exConsumer required");
-        return () -> {
-            try {
-                closeIt.close();
-            } catch (Throwable th) {
-                exConsumer.accept(th);
-                throw th;
-            }
-        };
+        return new CloseItDecorators.Rethrow5<>(closeIt, exConsumer);
+    }
+
+    /**
+     * Close independent lambdas concurrently on an {@link Executor}, and
+     * wait for all of them to finish closing.  This is useful when the close
+     * methods block, such as closing many clients that each make a network
+     * round trip, because the time to close all of them is about the time of
+     * the slowest close instead of the sum of all of them.  The lambdas may be
+     * decorated with any of the CloseIt static methods to process their
+     * exceptions.  The first exception thrown by a lambda, in the iteration
+     * order of {@code closeIts}, is rethrown, and the exceptions after it are
+     * added to it as suppressed exceptions
+     * according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * <p>
+     * The last lambda is closed by the calling thread, as is any lambda that
+     * the {@code executor} rejects.  If the calling thread is interrupted, it
+     * still waits for every lambda to close, and its interrupt status is set
+     * when this method returns.
+     * </p>
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     * @param <E5> Checked exception thrown by the close method.
+     * @param closeIts The closeIt lambdas. Must not be {@code null} or
+     * contain {@code null}.
+     * @param executor Executor that runs the close methods. Must not be
+     * {@code null}.
+     * @throws E1 When a lambda fails to close with this exception.
+     * @throws E2 When a lambda fails to close with this exception.
+     * @throws E3 When a lambda fails to close with this exception.
+     * @throws E4 When a lambda fails to close with this exception.
+     * @throws E5 When a lambda fails to close with this exception.
+     * @see com.github.richardroda.util.closeit.CloseIt0#closeAllParallel(java.util.Collection, java.util.concurrent.Executor, java.util.function.Function) 
+     * @since 1.8
+     */
+    static <E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception>
+            void closeAllParallel(Collection<? extends CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5>> closeIts, Executor executor) throws E1, E2, E3, E4, E5 {
+        Throwable th = CloseItHelper.mergeFailures(
+                CloseItHelper.closeAllParallel(closeIts, executor), Function.identity());
+        if (th != null) {
+            throw CloseItHelper.hideException(th);
+        }
     }
 }
 /*
@@ -0,0 +1,205 @@
+package com.github.richardroda.util.closeit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Adapters that release the memory of a direct {@link ByteBuffer}, such as
+ * a {@link java.nio.MappedByteBuffer} of a memory mapped file, when they are
+ * closed, instead of when the garbage collector finds the buffer
+ * unreachable.  A mapped file is unmapped at once, so a query that maps a
+ * large file does not hold its address space until the next collection.
+ * <pre><code>
+ * try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+ *     MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+ *     try (CloseIt0 unmap = CloseItBuffers.release(mapped)) {
+ *         return search(mapped);
+ *     }
+ * }
+ * </code></pre>
+ * <p>
+ * The buffer is released with {@code sun.misc.Unsafe.invokeCleaner} on JDK
+ * 9 and later, and with the cleaner of the buffer on JDK 8.  When neither
+ * is available, which {@link #isReleaseSupported() } reports, closing the
+ * adapter does nothing, and the memory is released by the garbage
+ * collector as before.  A buffer is released at most once, no matter how
+ * many times its adapter is closed.  The buffer must not be a slice or a
+ * duplicate, which does not own its memory, or releasing it fails with an
+ * {@code IllegalArgumentException}.
+ * </p>
+ * <p>
+ * <b>The buffer, and every slice or duplicate of it, must not be used after
+ * it is released.</b>  Doing so reads or writes memory that is no longer
+ * mapped, which may crash the JVM.  Release a buffer only when it is
+ * confined to the code that closes it.
+ * </p>
+ * <p>
+ * A {@code java.lang.foreign.Arena} of JDK 22 and later is already an
+ * {@link AutoCloseable} that releases its memory when it is closed, so it
+ * may be given to any of the {@link CloseIt0} or {@link CloseIt1} factories
+ * directly.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItBuffers {
+
+    private CloseItBuffers() {
+    }
+
+    /**
+     * Create an {@link AutoCloseable} which releases the memory of a direct
+     * buffer when it is closed, for use with any of the {@link CloseIt0} or
+     * {@link CloseIt1} factories.
+     * @param buffer A direct buffer, such as a mapped byte buffer.
+     * @return An {@code AutoCloseable} which releases the buffer the first
+     * time it is closed.
+     * @throws IllegalArgumentException When the buffer is not direct.
+     */
+    public static AutoCloseable unmapper(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer required");
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        final AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (!released.get() && released.compareAndSet(false, true)) {
+                BufferCleaner.clean(buffer);
+            }
+        };
+    }
+
+    /**
+     * Release the memory of a direct buffer when the returned
+     * {@code CloseIt0} is closed, and wrap any exception in a
+     * {@link NotClosedException}, like
+     * {@link CloseIt0#wrapAllException(java.lang.AutoCloseable) }.
+     * @param buffer A direct buffer, such as a mapped byte buffer.
+     * @return A {@code CloseIt0} which releases the buffer.
+     * @throws IllegalArgumentException When the buffer is not direct.
+     */
+    public static CloseIt0 release(ByteBuffer buffer) {
+        return CloseIt0.wrapAllException(unmapper(buffer));
+    }
+
+    /**
+     * Release the memory of a direct buffer when the returned
+     * {@code CloseIt1} is closed, and map any exception with the
+     * {@code exceptionMapper}, like
+     * {@link CloseIt1#wrapAllException(java.lang.AutoCloseable, java.util.function.Function) }.
+     * @param <E> Checked exception thrown by the close method.
+     * @param buffer A direct buffer, such as a mapped byte buffer.
+     * @param exceptionMapper Function to map an exception to the exception
+     * type {@code E}.
+     * @return A {@code CloseIt1} which releases the buffer.
+     * @throws IllegalArgumentException When the buffer is not direct.
+     */
+    public static <E extends Exception> CloseIt1<E> release(ByteBuffer buffer,
+            Function<? super Exception, ? extends E> exceptionMapper) {
+        return CloseIt1.wrapAllException(unmapper(buffer), exceptionMapper);
+    }
+
+    /**
+     * @return {@code true} if this JDK allows a direct buffer to be released
+     * before it is garbage collected.
+     */
+    public static boolean isReleaseSupported() {
+        return BufferCleaner.INVOKE_CLEANER != null || BufferCleaner.CLEANER != null;
+    }
+
+    /**
+     * Holder for the method handles that release a direct buffer, which are
+     * looked up the first time a buffer is released.
+     */
+    private static final class BufferCleaner {
+        /** {@code Unsafe.invokeCleaner(ByteBuffer)} bound to the unsafe, on JDK 9 and later. */
+        static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+        /** {@code DirectBuffer.cleaner()} on JDK 8. */
+        static final MethodHandle CLEANER = INVOKE_CLEANER == null ? findCleaner() : null;
+        /** {@code Cleaner.clean()} on JDK 8. */
+        static final MethodHandle CLEAN = CLEANER == null ? null : findClean();
+
+        static void clean(ByteBuffer buffer) {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invokeExact(buffer);
+                } else if (CLEANER != null && CLEAN != null) {
+                    Object cleaner = (Object) CLEANER.invokeExact(buffer);
+                    if (cleaner == null) {
+                        throw new IllegalArgumentException("duplicate or slice");
+                    }
+                    CLEAN.invokeExact(cleaner);
+                }
+            } catch (Throwable th) {
+                throw CloseItHelper.hideException(th);
+            }
+        }
+
+        private static MethodHandle findInvokeCleaner() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+                        MethodType.methodType(void.class, ByteBuffer.class));
+                return invokeCleaner.bindTo(theUnsafe.get(null));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+
+        private static MethodHandle findCleaner() {
+            try {
+                Class<?> directBuffer = Class.forName("sun.nio.ch.DirectBuffer");
+                return MethodHandles.lookup().unreflect(directBuffer.getMethod("cleaner"))
+                        .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+
+        private static MethodHandle findClean() {
+            try {
+                Class<?> cleaner = Class.forName("sun.misc.Cleaner");
+                return MethodHandles.lookup().unreflect(cleaner.getMethod("clean"))
+                        .asType(MethodType.methodType(void.class, Object.class));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,477 @@
+package com.github.richardroda.util.closeit;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A cache of resources that are expensive to open, such as file channels,
+ * JNDI contexts, or prepared statements, which closes each resource when it
+ * is evicted.  A lookup returns a lease, which is a
+ * {@link SharedCloseIt.Handle}, so an entry that is evicted while it is
+ * leased stays open until the last lease is closed.
+ * <pre><code>
+ * static final CloseItCache&lt;Path, FileChannel&gt; CHANNELS = CloseItCache.create(64,
+ *     Duration.ofMinutes(30), Duration.ofMinutes(5),
+ *     resource-&gt;CloseIt0.consumeAllException(resource, exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception)));
+ * ...
+ * try (SharedCloseIt.Handle&lt;FileChannel&gt; channel = CHANNELS.lease(path, p-&gt;FileChannel.open(p, READ))) {
+ *     return channel.get().read(buffer, position);
+ * }
+ * </code></pre>
+ * <p>
+ * Concurrent lookups of a key that is not in the cache share a single open:
+ * the first lookup opens the resource, and the others wait for it.  If the
+ * open fails, the first lookup throws the failure, and each waiting lookup
+ * tries to open the resource itself.
+ * </p>
+ * <p>
+ * When the cache holds more than {@code maxSize} entries, it evicts entries
+ * with the second chance (clock) algorithm: the entries are kept in a queue
+ * in the order they were added, an entry that was leased since it last
+ * reached the head of the queue is moved to the tail, and the first entry
+ * that was not is evicted, so each eviction takes amortized constant time.
+ * An entry that is evicted by other means stays in the queue until it
+ * reaches the head, or until more than {@code maxSize} such entries have
+ * accumulated, when they are all removed from the queue at once.
+ * An entry also expires once it has been in the cache for the
+ * {@code timeToLive}, or has not been leased for the {@code maxIdle}.  An
+ * expired entry is evicted when it is looked up, when it reaches the head of
+ * the queue, or by {@link #cleanUp() }.
+ * </p>
+ * <p>
+ * An evicted resource is closed through the {@code policy} of the cache,
+ * such as {@code CloseIt0::wrapAllException} or
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) },
+ * by the thread that closes its last lease, or by the thread that evicts it
+ * when it is not leased.  Closing the cache evicts every entry.  When the
+ * {@code policy} throws, as {@code CloseIt0::wrapAllException} does, the
+ * exception is thrown to the thread that closed the resource: by the close
+ * method of the last lease, or by {@link #invalidate(java.lang.Object) },
+ * {@link #invalidateAll() }, {@link #cleanUp() }, or {@link #close() }.
+ * When several evicted resources fail to close at once, the failures after
+ * the first are added to it as suppressed exceptions.
+ * {@link #lease(java.lang.Object, com.github.richardroda.util.closeit.CloseItCache.Loader) }
+ * only throws the failure to open its own resource, so when a lookup evicts
+ * an expired or excess entry whose resource fails to close, the exception is
+ * passed to the uncaught exception handler of the thread instead.  Use a
+ * {@code policy} that consumes the exceptions to handle them elsewhere.
+ * </p>
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the resources.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItCache<K, V extends AutoCloseable> implements CloseIt0 {
+
+    /**
+     * Open the resource of a key.
+     * @param <K> Type of the key.
+     * @param <V> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        V open(K key) throws E;
+    }
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final long maxIdleNanos;
+    private final Function<? super AutoCloseable, ? extends CloseIt0> policy;
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * An upper bound on the number of removed entries that are still in the
+     * clock queue.
+     */
+    private final AtomicInteger removedInClock = new AtomicInteger();
+    private volatile boolean closed;
+
+    private CloseItCache(int maxSize, long timeToLiveNanos, long maxIdleNanos,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.maxIdleNanos = maxIdleNanos;
+        this.policy = policy;
+    }
+
+    /**
+     * Create a cache whose entries do not expire.
+     * @param <K> Type of the keys.
+     * @param <V> Type of the resources.
+     * @param maxSize The most entries the cache holds.  Must be at least
+     * {@code 1}.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions when it is closed.
+     * @return A new, empty cache.
+     */
+    public static <K, V extends AutoCloseable> CloseItCache<K, V> create(int maxSize,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        return create(maxSize, Duration.ofNanos(Long.MAX_VALUE), Duration.ofNanos(Long.MAX_VALUE), policy);
+    }
+
+    /**
+     * Create a cache whose entries expire.
+     * @param <K> Type of the keys.
+     * @param <V> Type of the resources.
+     * @param maxSize The most entries the cache holds.  Must be at least
+     * {@code 1}.
+     * @param timeToLive The longest time an entry stays in the cache.
+     * @param maxIdle The longest time an entry stays in the cache without
+     * being leased.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions when it is closed.
+     * @return A new, empty cache.
+     */
+    public static <K, V extends AutoCloseable> CloseItCache<K, V> create(int maxSize, Duration timeToLive,
+            Duration maxIdle, Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        Objects.requireNonNull(timeToLive, "timeToLive required");
+        Objects.requireNonNull(maxIdle, "maxIdle required");
+        Objects.requireNonNull(policy, "policy required");
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero() || maxIdle.isNegative() || maxIdle.isZero()) {
+            throw new IllegalArgumentException("timeToLive and maxIdle must be positive");
+        }
+        return new CloseItCache<>(maxSize, toNanos(timeToLive), toNanos(maxIdle), policy);
+    }
+
+    /**
+     * Lease the resource of a key, and open it with the {@code loader} if it
+     * is not in the cache.
+     * @param <E> Exception thrown when the resource fails to open.
+     * @param key Key of the resource.
+     * @param loader Opens the resource when it is not in the cache.
+     * @return A lease of the resource, which must be closed when the
+     * resource is no longer used.
+     * @throws E When the {@code loader} fails to open the resource.  A
+     * failure to close an entry that the lookup evicts is not thrown, but
+     * passed to the uncaught exception handler of the current thread.
+     * @throws IllegalStateException When the cache is closed.
+     */
+    public <E extends Exception> SharedCloseIt.Handle<V> lease(K key,
+            Loader<? super K, ? extends V, ? extends E> loader) throws E {
+        Objects.requireNonNull(key, "key required");
+        Objects.requireNonNull(loader, "loader required");
+        for (;;) {
+            if (closed) {
+                throw new IllegalStateException("cache is closed");
+            }
+            Entry<K, V> entry = entries.get(key);
+            if (entry == null) {
+                Entry<K, V> added = new Entry<>(key);
+                entry = entries.putIfAbsent(key, added);
+                if (entry == null) {
+                    return open(added, loader);
+                }
+            }
+            final SharedCloseIt<V> shared;
+            try {
+                shared = entry.opened.join();
+            } catch (CompletionException ex) {
+                // The open failed, and its entry is removed.
+                continue;
+            }
+            final long now = System.nanoTime();
+            if (isExpired(entry, now)) {
+                reportEvictionFailure(evict(entry));
+                continue;
+            }
+            SharedCloseIt.Handle<V> handle = shared.tryRetain();
+            if (handle != null) {
+                entry.referenced = true;
+                entry.accessNanos = now;
+                return handle;
+            }
+        }
+    }
+
+    private <E extends Exception> SharedCloseIt.Handle<V> open(Entry<K, V> entry,
+            Loader<? super K, ? extends V, ? extends E> loader) throws E {
+        size.incrementAndGet();
+        final V resource;
+        try {
+            resource = Objects.requireNonNull(loader.open(entry.key), "loader must not return null");
+        } catch (Throwable th) {
+            if (entries.remove(entry.key, entry)) {
+                size.decrementAndGet();
+            }
+            entry.opened.completeExceptionally(th);
+            throw th;
+        }
+        final SharedCloseIt<V> shared = SharedCloseIt.create(resource, policy);
+        final SharedCloseIt.Handle<V> handle = shared.retain();
+        entry.createdNanos = entry.accessNanos = System.nanoTime();
+        clock.add(entry);
+        entry.opened.complete(shared);
+        Throwable failure;
+        if (entry.removed) {
+            // Evicted while it was being opened, which left the close to this
+            // thread.
+            failure = closeEvicted(entry);
+        } else if (closed) {
+            failure = evict(entry);
+        } else {
+            failure = sweep();
+        }
+        reportEvictionFailure(failure);
+        return handle;
+    }
+
+    /**
+     * Evict the entry of a key.  The resource is closed once it is no longer
+     * leased.
+     * @param key Key of the entry.
+     */
+    public void invalidate(K key) {
+        Entry<K, V> entry = entries.get(Objects.requireNonNull(key, "key required"));
+        if (entry != null) {
+            throwIfFailed(evict(entry));
+        }
+    }
+
+    /**
+     * Evict every entry.  The resources are closed once they are no longer
+     * leased.
+     */
+    public void invalidateAll() {
+        Failures failures = new Failures();
+        for (Entry<K, V> entry : entries.values()) {
+            failures.add(evict(entry));
+        }
+        failures.throwIfFailed();
+    }
+
+    /**
+     * Evict every expired entry.  This takes time proportional to the
+     * number of entries, so it is meant to be called periodically, such as
+     * from a scheduled executor, when entries must not outlive their
+     * expiration by much.
+     */
+    public void cleanUp() {
+        final long now = System.nanoTime();
+        Failures failures = new Failures();
+        for (Entry<K, V> entry : entries.values()) {
+            if (entry.opened.isDone() && isExpired(entry, now)) {
+                failures.add(evict(entry));
+            }
+        }
+        failures.throwIfFailed();
+    }
+
+    /**
+     * @return The number of entries in the cache, including the entries that
+     * are being opened.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Close the cache, and evict every entry.  The resources are closed once
+     * they are no longer leased.
+     */
+    @Override
+    public void closeIt() {
+        closed = true;
+        invalidateAll();
+    }
+
+    /**
+     * Evict entries from the head of the clock queue while the cache is too
+     * big, or the head is expired.  Each entry is given a second chance if
+     * it was leased since it last reached the head.  The scan is bounded so
+     * that a queue of entries that are being opened does not spin.
+     * @return The failure to close the evicted resources, or {@code null}.
+     */
+    private Throwable sweep() {
+        if (removedInClock.get() > maxSize) {
+            // Removed entries behind a live head would otherwise keep their
+            // closed resources reachable, and the queue would grow without
+            // bound.
+            removedInClock.set(0);
+            clock.removeIf(removed -> removed.removed);
+        }
+        final long now = System.nanoTime();
+        Failures failures = new Failures();
+        int budget = 2 * maxSize + 2;
+        Entry<K, V> entry;
+        while (budget-- > 0 && (entry = clock.peek()) != null) {
+            if (entry.removed) {
+                clock.remove(entry);
+                continue;
+            }
+            boolean tooBig = size.get() > maxSize;
+            boolean expired = entry.opened.isDone() && isExpired(entry, now);
+            if (!tooBig && !expired) {
+                break;
+            }
+            entry = clock.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entry.removed) {
+                // Already evicted.
+                continue;
+            }
+            expired = entry.opened.isDone() && isExpired(entry, now);
+            if (!expired && (entry.referenced || !entry.opened.isDone())) {
+                entry.referenced = false;
+                clock.add(entry);
+                continue;
+            }
+            failures.add(evict(entry));
+        }
+        return failures.merged();
+    }
+
+    /**
+     * Remove the entry, and close its resource unless it is still being
+     * opened, in which case the opening thread closes it.
+     * @return The failure to close the resource, or {@code null}.
+     */
+    private Throwable evict(Entry<K, V> entry) {
+        if (entries.remove(entry.key, entry)) {
+            size.decrementAndGet();
+            entry.removed = true;
+            removedInClock.incrementAndGet();
+            if (entry.opened.isDone()) {
+                return closeEvicted(entry);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Release the reference of the cache to the resource of an evicted
+     * entry, which closes it when it is not leased.  The release happens at
+     * most once, so the evicting and opening threads may both call this.
+     * @return The failure to close the resource, or {@code null}.
+     */
+    private Throwable closeEvicted(Entry<K, V> entry) {
+        if (entry.opened.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            entry.opened.join().close();
+            return null;
+        } catch (Throwable th) {
+            return th;
+        }
+    }
+
+    /**
+     * Pass a failure to close an evicted resource, which a lookup must not
+     * throw, to the uncaught exception handler of the current thread.
+     * @param failure The failure, or {@code null}.
+     */
+    private static void reportEvictionFailure(Throwable failure) {
+        if (failure != null) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+        }
+    }
+
+    private static void throwIfFailed(Throwable failure) {
+        if (failure != null) {
+            throw CloseItHelper.hideException(failure);
+        }
+    }
+
+    private boolean isExpired(Entry<K, V> entry, long now) {
+        return now - entry.createdNanos >= timeToLiveNanos || now - entry.accessNanos >= maxIdleNanos;
+    }
+
+    private static long toNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * The failures of closing several evicted resources, merged into the
+     * first.
+     */
+    private static final class Failures {
+        private Throwable[] failures;
+        private int count;
+
+        void add(Throwable failure) {
+            if (failure == null) {
+                return;
+            }
+            if (failures == null) {
+                failures = new Throwable[4];
+            } else if (count == failures.length) {
+                failures = Arrays.copyOf(failures, count * 2);
+            }
+            failures[count++] = failure;
+        }
+
+        Throwable merged() {
+            return failures == null ? null : CloseItHelper.mergeFailures(failures, th -> th);
+        }
+
+        void throwIfFailed() {
+            CloseItCache.throwIfFailed(merged());
+        }
+    }
+
+    /**
+     * An entry of the cache, which is added before its resource is opened so
+     * that concurrent lookups of its key wait for the same open.
+     */
+    private static final class Entry<K, V extends AutoCloseable> {
+        final K key;
+        final CompletableFuture<SharedCloseIt<V>> opened = new CompletableFuture<>();
+        volatile long createdNanos;
+        volatile long accessNanos;
+        volatile boolean referenced;
+        volatile boolean removed;
+
+        Entry(K key) {
+            this.key = key;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,935 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The decorators returned by the static methods of the CloseIt interfaces.
+ * Each is a small final class with the exception processing of one policy
+ * in its own {@code close} method, instead of a lambda whose
+ * {@code closeIt} method is reached through the default {@code close}
+ * method of {@link CloseIt5}.  That default method is shared by every
+ * lambda, so once many kinds of resource pass through the decorators, its
+ * call to {@code closeIt} is megamorphic, and a chain of decorators such as
+ * {@code rethrow(rethrowWhen(consumeAllException(...)))} pays for two
+ * megamorphic calls at each level.  With these classes it is one call at
+ * each level, and a policy with a fixed behavior, such as
+ * {@link CloseIt0#wrapException(java.lang.AutoCloseable) }, does not call
+ * through a shared function to process its exception.
+ *
+ * @author Richard Roda
+ */
+final class CloseItDecorators {
+
+    private CloseItDecorators() {
+    }
+
+    /**
+     * Wraps checked exceptions in a {@link NotClosedException}.
+     */
+    static final class WrapException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        WrapException0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new NotClosedException(ex);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Wraps all exceptions in a {@link NotClosedException}.
+     */
+    static final class WrapAllException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        WrapAllException0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                throw new NotClosedException(ex);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Wraps all throwables in a {@link NotClosedException}.
+     */
+    static final class WrapAllThrowable0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        WrapAllThrowable0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Throwable th) {
+                throw new NotClosedException(th);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Hides checked exceptions from the compiler.
+     */
+    static final class HideException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        HideException0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                throw CloseItHelper.hideException(ex);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Ignores checked exceptions and rethrows unchecked exceptions.
+     */
+    static final class IgnoreException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        IgnoreException0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                // Ignored.
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Ignores all exceptions.
+     */
+    static final class IgnoreAllException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        IgnoreAllException0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                // Ignored.
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Ignores all throwables.
+     */
+    static final class IgnoreAllThrowable0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+
+        IgnoreAllThrowable0(AutoCloseable autoCloseable) {
+            this.autoCloseable = autoCloseable;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Throwable th) {
+                // Ignored.
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Consumes checked exceptions and rethrows unchecked exceptions.
+     */
+    static final class ConsumeException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Consumer<? super Exception> exConsumer;
+
+        ConsumeException0(AutoCloseable autoCloseable, Consumer<? super Exception> exConsumer) {
+            this.autoCloseable = autoCloseable;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                exConsumer.accept(ex);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Consumes all exceptions.
+     */
+    static final class ConsumeAllException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Consumer<? super Exception> exConsumer;
+
+        ConsumeAllException0(AutoCloseable autoCloseable, Consumer<? super Exception> exConsumer) {
+            this.autoCloseable = autoCloseable;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                exConsumer.accept(ex);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Consumes all throwables.
+     */
+    static final class ConsumeAllThrowable0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Consumer<? super Throwable> exConsumer;
+
+        ConsumeAllThrowable0(AutoCloseable autoCloseable, Consumer<? super Throwable> exConsumer) {
+            this.autoCloseable = autoCloseable;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Maps checked exceptions to unchecked exceptions and rethrows unchecked exceptions.
+     */
+    static final class MapException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Exception, ? extends RuntimeException> exceptionMapper;
+
+        MapException0(AutoCloseable autoCloseable, Function<? super Exception, ? extends RuntimeException> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                RuntimeException rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Maps all exceptions to unchecked exceptions.
+     */
+    static final class MapAllException0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Exception, ? extends RuntimeException> exceptionMapper;
+
+        MapAllException0(AutoCloseable autoCloseable, Function<? super Exception, ? extends RuntimeException> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                RuntimeException rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Maps all throwables to unchecked exceptions.
+     */
+    static final class MapAllThrowable0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Throwable, ? extends RuntimeException> exceptionMapper;
+
+        MapAllThrowable0(AutoCloseable autoCloseable, Function<? super Throwable, ? extends RuntimeException> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() {
+            try {
+                autoCloseable.close();
+            } catch (Throwable ex) {
+                RuntimeException rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Maps checked exceptions to the exception type of the {@code CloseIt1} and rethrows unchecked exceptions.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class MapException1<E extends Exception> implements CloseIt1<E> {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Exception, ? extends E> exceptionMapper;
+
+        MapException1(AutoCloseable autoCloseable, Function<? super Exception, ? extends E> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() throws E {
+            try {
+                autoCloseable.close();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                E rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+
+    /**
+     * Maps all exceptions to the exception type of the {@code CloseIt1}.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class MapAllException1<E extends Exception> implements CloseIt1<E> {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Exception, ? extends E> exceptionMapper;
+
+        MapAllException1(AutoCloseable autoCloseable, Function<? super Exception, ? extends E> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() throws E {
+            try {
+                autoCloseable.close();
+            } catch (Exception ex) {
+                E rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+
+    /**
+     * Maps all throwables to the exception type of the {@code CloseIt1}.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class MapAllThrowable1<E extends Exception> implements CloseIt1<E> {
+        private final AutoCloseable autoCloseable;
+        private final Function<? super Throwable, ? extends E> exceptionMapper;
+
+        MapAllThrowable1(AutoCloseable autoCloseable, Function<? super Throwable, ? extends E> exceptionMapper) {
+            this.autoCloseable = autoCloseable;
+            this.exceptionMapper = exceptionMapper;
+        }
+
+        @Override
+        public void close() throws E {
+            try {
+                autoCloseable.close();
+            } catch (Throwable ex) {
+                E rex = exceptionMapper.apply(ex);
+                if (rex != null) {
+                    throw rex;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     */
+    static final class RethrowWhen0 implements CloseIt0 {
+        private final CloseIt0 closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen0(CloseIt0 closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     */
+    static final class Rethrow0 implements CloseIt0 {
+        private final CloseIt0 closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow0(CloseIt0 closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class RethrowWhen1<E extends Exception> implements CloseIt1<E> {
+        private final CloseIt1<? extends E> closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen1(CloseIt1<? extends E> closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() throws E {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class Rethrow1<E extends Exception> implements CloseIt1<E> {
+        private final CloseIt1<? extends E> closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow1(CloseIt1<? extends E> closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() throws E {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     */
+    static final class RethrowWhen2<E1 extends Exception, E2 extends Exception> implements CloseIt2<E1, E2> {
+        private final CloseIt2<? extends E1, ? extends E2> closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen2(CloseIt2<? extends E1, ? extends E2> closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() throws E1, E2 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2 {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     */
+    static final class Rethrow2<E1 extends Exception, E2 extends Exception> implements CloseIt2<E1, E2> {
+        private final CloseIt2<? extends E1, ? extends E2> closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow2(CloseIt2<? extends E1, ? extends E2> closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() throws E1, E2 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2 {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     */
+    static final class RethrowWhen3<E1 extends Exception, E2 extends Exception, E3 extends Exception> implements CloseIt3<E1, E2, E3> {
+        private final CloseIt3<? extends E1, ? extends E2, ? extends E3> closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen3(CloseIt3<? extends E1, ? extends E2, ? extends E3> closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3 {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     */
+    static final class Rethrow3<E1 extends Exception, E2 extends Exception, E3 extends Exception> implements CloseIt3<E1, E2, E3> {
+        private final CloseIt3<? extends E1, ? extends E2, ? extends E3> closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow3(CloseIt3<? extends E1, ? extends E2, ? extends E3> closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3 {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     */
+    static final class RethrowWhen4<E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception> implements CloseIt4<E1, E2, E3, E4> {
+        private final CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen4(CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3, E4 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3, E4 {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     */
+    static final class Rethrow4<E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception> implements CloseIt4<E1, E2, E3, E4> {
+        private final CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow4(CloseIt4<? extends E1, ? extends E2, ? extends E3, ? extends E4> closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3, E4 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3, E4 {
+            close();
+        }
+    }
+
+    /**
+     * Rethrows the throwables of the decorated {@code CloseIt} for which a
+     * predicate is {@code true}, and ignores the others.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     * @param <E5> Checked exception thrown by the close method.
+     */
+    static final class RethrowWhen5<E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception> implements CloseIt5<E1, E2, E3, E4, E5> {
+        private final CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt;
+        private final Predicate<? super Throwable> when;
+
+        RethrowWhen5(CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt, Predicate<? super Throwable> when) {
+            this.closeIt = closeIt;
+            this.when = when;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3, E4, E5 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                if (when.test(th)) {
+                    throw th;
+                }
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3, E4, E5 {
+            close();
+        }
+    }
+
+    /**
+     * Passes the throwables of the decorated {@code CloseIt} to a consumer and
+     * rethrows them.
+     * @param <E1> Checked exception thrown by the close method.
+     * @param <E2> Checked exception thrown by the close method.
+     * @param <E3> Checked exception thrown by the close method.
+     * @param <E4> Checked exception thrown by the close method.
+     * @param <E5> Checked exception thrown by the close method.
+     */
+    static final class Rethrow5<E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception> implements CloseIt5<E1, E2, E3, E4, E5> {
+        private final CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt;
+        private final Consumer<? super Throwable> exConsumer;
+
+        Rethrow5(CloseIt5<? extends E1, ? extends E2, ? extends E3, ? extends E4, ? extends E5> closeIt, Consumer<? super Throwable> exConsumer) {
+            this.closeIt = closeIt;
+            this.exConsumer = exConsumer;
+        }
+
+        @Override
+        public void close() throws E1, E2, E3, E4, E5 {
+            try {
+                closeIt.close();
+            } catch (Throwable th) {
+                exConsumer.accept(th);
+                throw th;
+            }
+        }
+
+        @Override
+        public void closeIt() throws E1, E2, E3, E4, E5 {
+            close();
+        }
+    }
+
+    /**
+     * Processes the failures of the close with a {@link CloseItPolicy} whose
+     * mapped exceptions are unchecked.
+     */
+    static final class Policy0 implements CloseIt0 {
+        private final AutoCloseable autoCloseable;
+        private final CloseItPolicy<? extends RuntimeException> policy;
+
+        Policy0(AutoCloseable autoCloseable, CloseItPolicy<? extends RuntimeException> policy) {
+            this.autoCloseable = autoCloseable;
+            this.policy = policy;
+        }
+
+        @Override
+        public void close() {
+            policy.close(autoCloseable);
+        }
+
+        @Override
+        public void closeIt() {
+            close();
+        }
+    }
+
+    /**
+     * Processes the failures of the close with a {@link CloseItPolicy}.
+     * @param <E> Checked exception thrown by the close method.
+     */
+    static final class Policy1<E extends Exception> implements CloseIt1<E> {
+        private final AutoCloseable autoCloseable;
+        private final CloseItPolicy<? extends E> policy;
+
+        Policy1(AutoCloseable autoCloseable, CloseItPolicy<? extends E> policy) {
+            this.autoCloseable = autoCloseable;
+            this.policy = policy;
+        }
+
+        @Override
+        public void close() throws E {
+            policy.close(autoCloseable);
+        }
+
+        @Override
+        public void closeIt() throws E {
+            close();
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -1,5 +1,22 @@
 package com.github.richardroda.util.closeit;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
 /**
  * Helper class for various methods to support the static interface methods.
  * @author Richard
@@ -23,10 +40,217 @@ class CloseItHelper {
     }
     
     /**
-     * A no-op consumer for a throwable.
-     * @param th Throwable to consume.
+     * Close each of the closeables concurrently on the executor, and wait for
+     * all of them to finish closing.  The last closeable is closed on the
+     * calling thread, as are any closeables the executor rejects.  If the
+     * calling thread is interrupted while waiting, it continues to wait, and
+     * its interrupt status is restored before returning.
+     * @param closeables The closeables to close.
+     * @param executor Executor that runs the close methods.
+     * @return The throwable thrown by each closeable, in the same order as
+     * the {@code closeables}, with {@code null} for those that closed
+     * successfully.
+     */
+    static Throwable[] closeAllParallel(Collection<? extends AutoCloseable> closeables, Executor executor) {
+        Objects.requireNonNull(closeables, "closeables required");
+        Objects.requireNonNull(executor, "executor required");
+        final AutoCloseable[] closing = closeables.toArray(new AutoCloseable[0]);
+        for (AutoCloseable closeable : closing) {
+            Objects.requireNonNull(closeable, "closeables must not contain null");
+        }
+        final Throwable[] failures = new Throwable[closing.length];
+        final CountDownLatch done = new CountDownLatch(closing.length);
+        for (int i = 0; i < closing.length; i++) {
+            final int index = i;
+            Runnable closeTask = () -> {
+                try {
+                    closing[index].close();
+                } catch (Throwable th) {
+                    failures[index] = th;
+                } finally {
+                    done.countDown();
+                }
+            };
+            if (index == closing.length - 1) {
+                closeTask.run();
+            } else {
+                try {
+                    executor.execute(closeTask);
+                } catch (RejectedExecutionException ex) {
+                    closeTask.run();
+                }
+            }
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failures;
+    }
+
+    /**
+     * Close the closeable on the executor, or on the calling thread when the
+     * executor rejects it.
+     * @param closeable The closeable to close.
+     * @param executor Executor that runs the close method.
+     * @return A future which completes when the close method finishes, and
+     * completes exceptionally with any throwable thrown by the close method.
+     */
+    static CompletableFuture<Void> closeAsync(AutoCloseable closeable, Executor executor) {
+        Objects.requireNonNull(executor, "executor required");
+        final CompletableFuture<Void> closed = new CompletableFuture<>();
+        Runnable closeTask = () -> {
+            try {
+                closeable.close();
+                closed.complete(null);
+            } catch (Throwable th) {
+                closed.completeExceptionally(th);
+            }
+        };
+        try {
+            executor.execute(closeTask);
+        } catch (RejectedExecutionException ex) {
+            closeTask.run();
+        }
+        return closed;
+    }
+
+    /**
+     * Close the closeable on a closer thread, and wait up to the timeout for
+     * the close to finish.  If the timeout passes, or the calling thread is
+     * interrupted while waiting, the close is abandoned to the closer thread
+     * and this method returns {@code false}.  An interrupt is treated like a
+     * timeout, and the interrupt status is restored before returning.
+     * @param closeable The closeable to close.
+     * @param timeout The longest time to wait for the close to finish.
+     * @return {@code true} when the close finished within the timeout,
+     * {@code false} when it was abandoned.
+     * @throws Exception Any exception or throwable thrown by the close
+     * method when it finishes within the timeout.
      */
-    static void noOp(Throwable th){}
+    static boolean closeWithin(AutoCloseable closeable, Duration timeout) throws Exception {
+        long timeoutNanos;
+        try {
+            timeoutNanos = timeout.toNanos();
+        } catch (ArithmeticException ex) {
+            timeoutNanos = Long.MAX_VALUE;
+        }
+        final CompletableFuture<Void> closed = closeAsync(closeable, CloserThreads.EXECUTOR);
+        try {
+            closed.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException ex) {
+            Throwable th = ex.getCause();
+            if (th instanceof Exception) {
+                throw (Exception) th;
+            }
+            throw hideException(th);
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return The executor of the closer threads, which runs each close on
+     * its own daemon thread.
+     */
+    static Executor closerExecutor() {
+        return CloserThreads.EXECUTOR;
+    }
+
+    /**
+     * Holder for the closer threads, which are created the first time a
+     * close with a timeout is requested.  A close that does not finish
+     * within its timeout keeps its thread until the close returns, so the
+     * pool grows as needed instead of letting a hung close hold up the
+     * closes behind it.  The threads are daemon threads so that a hung close
+     * does not prevent the JVM from exiting, and an idle thread is removed
+     * after a minute.
+     */
+    private static final class CloserThreads {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        static final ExecutorService EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+                    Thread thread = new Thread(task, "closeit-closer-" + THREAD_NUMBER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Decorate the closeable with one that records its closes with the
+     * meter.  The closeable is counted as open until the first time it is
+     * closed.  Any throwable thrown by the close method is recorded and
+     * rethrown unchanged.
+     * @param closeable The closeable to record.
+     * @param meter The meter to record the closes with.
+     * @return A {@code CloseIt0} that records each close with the meter.
+     */
+    static CloseIt0 metered(AutoCloseable closeable, CloseMetrics.Meter meter) {
+        final AtomicBoolean closed = new AtomicBoolean();
+        meter.opened.increment();
+        return CloseItLeakDetector.trackCloseIt0(() -> {
+            if (!closed.get() && closed.compareAndSet(false, true)) {
+                meter.closed.increment();
+            }
+            final long startNanos = System.nanoTime();
+            try {
+                closeable.close();
+            } catch (Throwable th) {
+                meter.record(startNanos, th);
+                throw hideException(th);
+            }
+            meter.record(startNanos, null);
+        }, closeable);
+    }
+
+    /**
+     * Merge the failures of a multi-resource close into one exception.  The
+     * first failure is mapped with the {@code exceptionMapper}, and the
+     * failures after it are added to the mapped exception as suppressed
+     * exceptions according to the {@link SuppressionPolicy#defaultPolicy() }.
+     * @param <X> Type of the merged exception.
+     * @param failures The failures, where {@code null} elements are skipped.
+     * @param exceptionMapper Function to map the first failure.  A
+     * {@code null} return value means to swallow (ignore) the failure, in
+     * which case the next failure is mapped instead.
+     * @return The merged exception, or {@code null} when there were no
+     * failures or all of them were swallowed.
+     */
+    static <X extends Throwable> X mergeFailures(Throwable[] failures,
+            Function<? super Throwable, ? extends X> exceptionMapper) {
+        X merged = null;
+        SuppressionPolicy.Suppressor suppressor = null;
+        for (Throwable failure : failures) {
+            if (failure == null) {
+                continue;
+            }
+            if (merged == null) {
+                merged = exceptionMapper.apply(failure);
+                if (merged != null) {
+                    suppressor = SuppressionPolicy.defaultPolicy().start(merged);
+                }
+            } else {
+                suppressor.add(failure);
+            }
+        }
+        if (suppressor != null) {
+            suppressor.finish();
+        }
+        return merged;
+    }
 }
 /*
 BSD 2-Clause License
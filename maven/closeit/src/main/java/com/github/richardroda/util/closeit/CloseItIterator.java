@@ -0,0 +1,277 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An iterator that opens a sequence of resources lazily, one at a time, and
+ * closes each resource as soon as the next one is requested, so that only a
+ * bounded number of resources are open at once, no matter how many sources
+ * there are.
+ * <pre><code>
+ * try (Stream&lt;BufferedReader&gt; readers = CloseItIterator.create(paths.iterator(), Files::newBufferedReader,
+ *         resource-&gt;CloseIt0.consumeAllException(resource, exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception)),
+ *         4, ioExecutor).stream()) {
+ *     readers.forEach(reader-&gt;index(reader));
+ * }
+ * </code></pre>
+ * <p>
+ * With a {@code prefetch} depth of {@code n}, the next {@code n} resources
+ * are opened on the {@code executor} while the current one is used, so the
+ * latency of opening them overlaps the work, and at most {@code n + 1}
+ * resources are open at once.  With a depth of {@code 0}, each resource is
+ * opened by the thread that requests it.  If a resource fails to open,
+ * {@link #next() } throws the exception of the opener unchanged, even when
+ * it is a checked exception, like
+ * {@link CloseIt0#hideException(java.lang.AutoCloseable) }, and the
+ * iteration may continue with the next source.
+ * </p>
+ * <p>
+ * Each resource is closed through the {@code policy} of the iterator, such
+ * as {@code CloseIt0::wrapAllException} or
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) },
+ * when the next resource is requested, when the iteration ends, or when the
+ * iterator is closed.  Closing the iterator, or the stream returned by
+ * {@link #stream() }, also waits for the resources that are being opened
+ * ahead and closes them, so it should be closed whenever an iteration may
+ * end early.  An iterator is meant to be used by one thread.
+ * </p>
+ *
+ * @param <T> Type of the resources.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItIterator<T extends AutoCloseable> implements Iterator<T>, CloseIt0 {
+
+    /**
+     * Open the resource of a source.
+     * @param <S> Type of the source, such as a file path.
+     * @param <T> Type of the resource.
+     */
+    @FunctionalInterface
+    public interface Opener<S, T> {
+        T open(S source) throws Exception;
+    }
+
+    private final Iterator<? extends CompletableFuture<T>> sources;
+    private final Function<? super AutoCloseable, ? extends CloseIt0> policy;
+    private final int prefetch;
+    private final ArrayDeque<CompletableFuture<T>> ahead = new ArrayDeque<>();
+    private T current;
+    private boolean closed;
+
+    private CloseItIterator(Iterator<? extends CompletableFuture<T>> sources,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy, int prefetch) {
+        this.sources = sources;
+        this.policy = policy;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Create an iterator which opens each resource when it is requested.
+     * @param <S> Type of the sources.
+     * @param <T> Type of the resources.
+     * @param sources The sources of the resources, such as file paths.
+     * @param opener Opens the resource of a source.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions when it is closed.
+     * @return An iterator of the resources.
+     */
+    public static <S, T extends AutoCloseable> CloseItIterator<T> create(Iterator<? extends S> sources,
+            Opener<? super S, ? extends T> opener, Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        return create(sources, opener, policy, 0, Runnable::run);
+    }
+
+    /**
+     * Create an iterator which opens up to {@code prefetch} resources ahead
+     * on an executor.
+     * @param <S> Type of the sources.
+     * @param <T> Type of the resources.
+     * @param sources The sources of the resources, such as file paths.
+     * @param opener Opens the resource of a source.
+     * @param policy Function that decorates each resource with the
+     * processing for its exceptions when it is closed.
+     * @param prefetch The number of resources to open ahead of the current
+     * one.  Must not be negative.
+     * @param executor Executor that opens the resources ahead.  A resource
+     * the executor rejects is opened by the thread that requests it.
+     * @return An iterator of the resources.
+     */
+    public static <S, T extends AutoCloseable> CloseItIterator<T> create(Iterator<? extends S> sources,
+            Opener<? super S, ? extends T> opener, Function<? super AutoCloseable, ? extends CloseIt0> policy,
+            int prefetch, Executor executor) {
+        Objects.requireNonNull(sources, "sources required");
+        Objects.requireNonNull(opener, "opener required");
+        Objects.requireNonNull(policy, "policy required");
+        Objects.requireNonNull(executor, "executor required");
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative");
+        }
+        Iterator<CompletableFuture<T>> opening = new Iterator<CompletableFuture<T>>() {
+            @Override
+            public boolean hasNext() {
+                return sources.hasNext();
+            }
+
+            @Override
+            public CompletableFuture<T> next() {
+                final S source = sources.next();
+                final CompletableFuture<T> opened = new CompletableFuture<>();
+                final Runnable open = () -> {
+                    try {
+                        opened.complete(opener.open(source));
+                    } catch (Throwable th) {
+                        opened.completeExceptionally(th);
+                    }
+                };
+                try {
+                    executor.execute(open);
+                } catch (RuntimeException ex) {
+                    open.run();
+                }
+                return opened;
+            }
+        };
+        return new CloseItIterator<>(opening, policy, prefetch);
+    }
+
+    /**
+     * @return A sequential stream of the resources, which closes this
+     * iterator when it is closed.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * @return {@code true} if there is another resource.  When there is not,
+     * the current resource is closed.
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!ahead.isEmpty() || sources.hasNext()) {
+            return true;
+        }
+        closeCurrent();
+        return false;
+    }
+
+    /**
+     * Close the current resource, and return the next one.
+     * @return The next resource.
+     * @throws NoSuchElementException When there are no more resources.
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        closeCurrent();
+        CompletableFuture<T> opened = ahead.isEmpty() ? sources.next() : ahead.poll();
+        fill();
+        final T next;
+        try {
+            next = opened.join();
+        } catch (CompletionException ex) {
+            throw CloseItHelper.hideException(ex.getCause());
+        }
+        current = Objects.requireNonNull(next, "opener must not return null");
+        return next;
+    }
+
+    /**
+     * Close the current resource, and the resources that were opened ahead,
+     * after waiting for them to open.  The failure of the first close is
+     * thrown, with the failures after it as suppressed exceptions.
+     */
+    @Override
+    public void closeIt() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<Throwable> failures = new ArrayList<>();
+        try {
+            closeCurrent();
+        } catch (Throwable th) {
+            failures.add(th);
+        }
+        for (CompletableFuture<T> opened; (opened = ahead.poll()) != null;) {
+            final T resource;
+            try {
+                resource = opened.join();
+            } catch (CompletionException ex) {
+                // Nothing was opened, so there is nothing to close.
+                continue;
+            }
+            try {
+                policy.apply(resource).closeIt();
+            } catch (Throwable th) {
+                failures.add(th);
+            }
+        }
+        Throwable th = CloseItHelper.mergeFailures(failures.toArray(new Throwable[failures.size()]),
+                Function.identity());
+        if (th != null) {
+            throw CloseItHelper.hideException(th);
+        }
+    }
+
+    private void fill() {
+        while (ahead.size() < prefetch && sources.hasNext()) {
+            ahead.add(sources.next());
+        }
+    }
+
+    private void closeCurrent() {
+        final T resource = current;
+        if (resource != null) {
+            current = null;
+            policy.apply(resource).closeIt();
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
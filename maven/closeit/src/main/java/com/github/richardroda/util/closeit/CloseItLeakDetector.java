@@ -0,0 +1,267 @@
+package com.github.richardroda.util.closeit;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * An opt-in detector for resources that are converted by the CloseIt static
+ * methods, such as {@link CloseIt0#wrapException(java.lang.AutoCloseable) }
+ * or {@link CloseIt1#wrapException(java.lang.AutoCloseable, java.util.function.Function) },
+ * and then become unreachable without ever being closed.  This is how file
+ * descriptor and connection leaks usually start: a code path opens a
+ * resource and never reaches the try-with-resources construct that would
+ * close it.
+ * <p>
+ * Leak detection is disabled until {@link #enable(int, java.util.function.Consumer) }
+ * is called, and while it is disabled the cost to the CloseIt static methods
+ * is a single volatile read.  When it is enabled, one in every
+ * {@code samplingInterval} conversions is tracked: the stack trace where the
+ * resource was converted is captured, and the returned {@code CloseIt} is
+ * registered with a {@link PhantomReference}.  If the garbage collector finds
+ * that a tracked {@code CloseIt} is unreachable and its close method was
+ * never called, a {@link LeakException} whose stack trace is the conversion
+ * stack trace is passed to the {@code sink} on a daemon thread named
+ * {@code closeit-leak-detector}.  A {@code samplingInterval} of {@code 1}
+ * tracks every resource, which is useful in tests, while a large interval
+ * keeps the cost in production close to zero.
+ * </p>
+ * <pre><code>
+ * CloseItLeakDetector.enable(1000, leak-&gt;logger.log(Level.SEVERE, leak.getMessage(), leak));
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItLeakDetector {
+
+    private static volatile Config config;
+
+    private static final Set<Tracker> TRACKERS = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    private static Thread reaper;
+
+    private CloseItLeakDetector() {
+    }
+
+    /**
+     * Enable leak detection, or change the settings of leak detection that
+     * is already enabled.  Resources that are already tracked are reported to
+     * the sink that was in effect when they were tracked.
+     * @param samplingInterval Track one in every {@code samplingInterval}
+     * resources.  Must be at least {@code 1}.
+     * @param sink Consumer of the leak reports.  It is called on the leak
+     * detector thread, and any exception it throws is ignored.
+     */
+    public static synchronized void enable(int samplingInterval, Consumer<? super Throwable> sink) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("samplingInterval must be at least 1");
+        }
+        Objects.requireNonNull(sink, "sink required");
+        if (reaper == null) {
+            reaper = new Thread(CloseItLeakDetector::reap, "closeit-leak-detector");
+            reaper.setDaemon(true);
+            reaper.start();
+        }
+        config = new Config(samplingInterval, sink);
+    }
+
+    /**
+     * Disable leak detection, so that no more resources are tracked.
+     * Resources that are already tracked are still reported if they leak.
+     */
+    public static void disable() {
+        config = null;
+    }
+
+    /**
+     * @return {@code true} when leak detection is enabled.
+     */
+    public static boolean isEnabled() {
+        return config != null;
+    }
+
+    /**
+     * Track the {@code closeIt} if leak detection is enabled and it is
+     * sampled.
+     * @param closeIt The converted resource.
+     * @param resource The resource, which names the leak in the report.
+     * @return The {@code closeIt}, or a tracked {@code CloseIt0} that closes it.
+     */
+    static CloseIt0 trackCloseIt0(CloseIt0 closeIt, AutoCloseable resource) {
+        Config current = config;
+        if (current == null || !current.sample() || resource instanceof Tracked) {
+            return closeIt;
+        }
+        return new TrackedCloseIt0(closeIt, current, resource);
+    }
+
+    /**
+     * Track the {@code closeIt} if leak detection is enabled and it is
+     * sampled.
+     * @param <E> Checked exception thrown by the close method.
+     * @param closeIt The converted resource.
+     * @param resource The resource, which names the leak in the report.
+     * @return The {@code closeIt}, or a tracked {@code CloseIt1} that closes it.
+     */
+    static <E extends Exception> CloseIt1<E> trackCloseIt1(CloseIt1<E> closeIt, AutoCloseable resource) {
+        Config current = config;
+        if (current == null || !current.sample() || resource instanceof Tracked) {
+            return closeIt;
+        }
+        return new TrackedCloseIt1<>(closeIt, current, resource);
+    }
+
+    private static void reap() {
+        while (true) {
+            try {
+                Tracker tracker = (Tracker) QUEUE.remove();
+                if (TRACKERS.remove(tracker)) {
+                    tracker.report();
+                }
+            } catch (InterruptedException ex) {
+                // The reaper runs for the life of the JVM.
+            } catch (Throwable th) {
+                // A failing sink must not stop the reaper.
+            }
+        }
+    }
+
+    /**
+     * The report passed to the sink when a tracked resource leaks.  Its stack
+     * trace is where the resource was converted by a CloseIt static method.
+     */
+    public static final class LeakException extends Exception {
+
+        private final String resourceClassName;
+
+        /**
+         * Package private constructor guarantees this class is only created
+         * by the leak detector.
+         * @param resource The tracked resource.
+         */
+        LeakException(AutoCloseable resource) {
+            super(resource.getClass().getName()
+                    + " was not closed before it became unreachable; it was converted at:");
+            this.resourceClassName = resource.getClass().getName();
+        }
+
+        /**
+         * @return The class name of the resource that leaked.  The resource
+         * itself is not kept, because it is unreachable.
+         */
+        public String getResourceClassName() {
+            return resourceClassName;
+        }
+    }
+
+    private static final class Config {
+        final int samplingInterval;
+        final Consumer<? super Throwable> sink;
+
+        Config(int samplingInterval, Consumer<? super Throwable> sink) {
+            this.samplingInterval = samplingInterval;
+            this.sink = sink;
+        }
+
+        boolean sample() {
+            return samplingInterval == 1 || ThreadLocalRandom.current().nextInt(samplingInterval) == 0;
+        }
+    }
+
+    /**
+     * The phantom reference to a tracked {@code CloseIt}, which is held in
+     * {@link #TRACKERS} until the {@code CloseIt} is closed or reported.
+     */
+    private static final class Tracker extends PhantomReference<Object> {
+        final LeakException leak;
+        final Consumer<? super Throwable> sink;
+
+        Tracker(Object tracked, Config config, AutoCloseable resource) {
+            super(tracked, QUEUE);
+            this.leak = new LeakException(resource);
+            this.sink = config.sink;
+            TRACKERS.add(this);
+        }
+
+        void release() {
+            if (TRACKERS.remove(this)) {
+                clear();
+            }
+        }
+
+        void report() {
+            sink.accept(leak);
+        }
+    }
+
+    /**
+     * Marker for a tracked {@code CloseIt}, so that a tracked resource that
+     * is converted again is not tracked twice.
+     */
+    private interface Tracked {
+    }
+
+    private static final class TrackedCloseIt0 implements CloseIt0, Tracked {
+        private final CloseIt0 closeIt;
+        private final Tracker tracker;
+
+        TrackedCloseIt0(CloseIt0 closeIt, Config config, AutoCloseable resource) {
+            this.closeIt = closeIt;
+            this.tracker = new Tracker(this, config, resource);
+        }
+
+        @Override
+        public void closeIt() {
+            tracker.release();
+            closeIt.closeIt();
+        }
+    }
+
+    private static final class TrackedCloseIt1<E extends Exception> implements CloseIt1<E>, Tracked {
+        private final CloseIt1<E> closeIt;
+        private final Tracker tracker;
+
+        TrackedCloseIt1(CloseIt1<E> closeIt, Config config, AutoCloseable resource) {
+            this.closeIt = closeIt;
+            this.tracker = new Tracker(this, config, resource);
+        }
+
+        @Override
+        public void closeIt() throws E {
+            tracker.release();
+            closeIt.closeIt();
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
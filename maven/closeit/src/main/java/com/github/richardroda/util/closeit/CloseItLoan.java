@@ -0,0 +1,297 @@
+package com.github.richardroda.util.closeit;
+
+/**
+ * Higher order functions that use the loan pattern (a form of the execute
+ * around pattern specialized for resources): a resource is opened, loaned
+ * to a function, and closed, with the same exception processing as a
+ * try-with-resources construct.  The resource, the close method, and the
+ * function throw the same exception type {@code E}, like a
+ * {@link CloseIt1}, so the compiler checks that the caller handles it.
+ * <pre><code>
+ * int count = CloseItLoan.usingInt(this::getContext, Context::close,
+ *     ctx-&gt;countEntries(ctx));
+ * </code></pre>
+ * <p>
+ * These methods are meant for hot loops.  No handle is created to close the
+ * resource, so nothing is allocated by the loan itself, and {@code usingInt},
+ * {@code usingLong}, {@code usingDouble}, and {@code usingBoolean} return
+ * a primitive result without boxing it.  When the {@code opener},
+ * {@code closer}, and {@code function} are method references or lambdas that
+ * capture nothing, or fields that hold them, a loan allocates nothing at
+ * all in steady state.
+ * </p>
+ * <p>
+ * If the {@code function} fails, the resource is closed and any throwable
+ * thrown by its close method is added to the failure as a suppressed
+ * exception.  Otherwise, any throwable thrown by the close method is
+ * thrown.  If the {@code opener} returns {@code null}, the {@code function}
+ * is called with {@code null}, and nothing is closed.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItLoan {
+
+    private CloseItLoan() {
+    }
+
+    /**
+     * Open a resource.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open.
+     */
+    @FunctionalInterface
+    public interface Opener<R, E extends Exception> {
+        R open() throws E;
+    }
+
+    /**
+     * Close a resource.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to close.
+     */
+    @FunctionalInterface
+    public interface Closer<R, E extends Exception> {
+        void close(R resource) throws E;
+    }
+
+    /**
+     * Use a resource to compute a result.
+     * @param <R> Type of the resource.
+     * @param <T> Type of the result.
+     * @param <E> Exception thrown when the function fails.
+     */
+    @FunctionalInterface
+    public interface LoanFunction<R, T, E extends Exception> {
+        T apply(R resource) throws E;
+    }
+
+    /**
+     * Use a resource to compute an {@code int} result.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the function fails.
+     */
+    @FunctionalInterface
+    public interface LoanIntFunction<R, E extends Exception> {
+        int applyAsInt(R resource) throws E;
+    }
+
+    /**
+     * Use a resource to compute a {@code long} result.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the function fails.
+     */
+    @FunctionalInterface
+    public interface LoanLongFunction<R, E extends Exception> {
+        long applyAsLong(R resource) throws E;
+    }
+
+    /**
+     * Use a resource to compute a {@code double} result.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the function fails.
+     */
+    @FunctionalInterface
+    public interface LoanDoubleFunction<R, E extends Exception> {
+        double applyAsDouble(R resource) throws E;
+    }
+
+    /**
+     * Use a resource to compute a {@code boolean} result.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the function fails.
+     */
+    @FunctionalInterface
+    public interface LoanPredicate<R, E extends Exception> {
+        boolean test(R resource) throws E;
+    }
+
+    /**
+     * Open a resource, apply a function to it, and close it.
+     * @param <R> Type of the resource.
+     * @param <T> Type of the result.
+     * @param <E> Exception thrown when the resource fails to open or close,
+     * or the function fails.
+     * @param opener Opens the resource.
+     * @param closer Closes the resource, such as {@code Context::close}.
+     * @param function Function that uses the resource.
+     * @return The result of the {@code function}.
+     * @throws E When the resource fails to open or close, or the function
+     * fails.
+     */
+    public static <R, T, E extends Exception> T using(Opener<? extends R, ? extends E> opener,
+            Closer<? super R, ? extends E> closer, LoanFunction<? super R, ? extends T, ? extends E> function) throws E {
+        final R resource = opener.open();
+        final T result;
+        try {
+            result = function.apply(resource);
+        } catch (Throwable th) {
+            closeAfterFailure(resource, closer, th);
+            throw th;
+        }
+        if (resource != null) {
+            closer.close(resource);
+        }
+        return result;
+    }
+
+    /**
+     * Open a resource, apply a function that returns an {@code int} to it,
+     * and close it.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open or close,
+     * or the function fails.
+     * @param opener Opens the resource.
+     * @param closer Closes the resource, such as {@code Context::close}.
+     * @param function Function that uses the resource.
+     * @return The result of the {@code function}.
+     * @throws E When the resource fails to open or close, or the function
+     * fails.
+     */
+    public static <R, E extends Exception> int usingInt(Opener<? extends R, ? extends E> opener,
+            Closer<? super R, ? extends E> closer, LoanIntFunction<? super R, ? extends E> function) throws E {
+        final R resource = opener.open();
+        final int result;
+        try {
+            result = function.applyAsInt(resource);
+        } catch (Throwable th) {
+            closeAfterFailure(resource, closer, th);
+            throw th;
+        }
+        if (resource != null) {
+            closer.close(resource);
+        }
+        return result;
+    }
+
+    /**
+     * Open a resource, apply a function that returns a {@code long} to it,
+     * and close it.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open or close,
+     * or the function fails.
+     * @param opener Opens the resource.
+     * @param closer Closes the resource, such as {@code Context::close}.
+     * @param function Function that uses the resource.
+     * @return The result of the {@code function}.
+     * @throws E When the resource fails to open or close, or the function
+     * fails.
+     */
+    public static <R, E extends Exception> long usingLong(Opener<? extends R, ? extends E> opener,
+            Closer<? super R, ? extends E> closer, LoanLongFunction<? super R, ? extends E> function) throws E {
+        final R resource = opener.open();
+        final long result;
+        try {
+            result = function.applyAsLong(resource);
+        } catch (Throwable th) {
+            closeAfterFailure(resource, closer, th);
+            throw th;
+        }
+        if (resource != null) {
+            closer.close(resource);
+        }
+        return result;
+    }
+
+    /**
+     * Open a resource, apply a function that returns a {@code double} to it,
+     * and close it.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open or close,
+     * or the function fails.
+     * @param opener Opens the resource.
+     * @param closer Closes the resource, such as {@code Context::close}.
+     * @param function Function that uses the resource.
+     * @return The result of the {@code function}.
+     * @throws E When the resource fails to open or close, or the function
+     * fails.
+     */
+    public static <R, E extends Exception> double usingDouble(Opener<? extends R, ? extends E> opener,
+            Closer<? super R, ? extends E> closer, LoanDoubleFunction<? super R, ? extends E> function) throws E {
+        final R resource = opener.open();
+        final double result;
+        try {
+            result = function.applyAsDouble(resource);
+        } catch (Throwable th) {
+            closeAfterFailure(resource, closer, th);
+            throw th;
+        }
+        if (resource != null) {
+            closer.close(resource);
+        }
+        return result;
+    }
+
+    /**
+     * Open a resource, apply a predicate to it, and close it.
+     * @param <R> Type of the resource.
+     * @param <E> Exception thrown when the resource fails to open or close,
+     * or the predicate fails.
+     * @param opener Opens the resource.
+     * @param closer Closes the resource, such as {@code Context::close}.
+     * @param predicate Predicate that uses the resource.
+     * @return The result of the {@code predicate}.
+     * @throws E When the resource fails to open or close, or the predicate
+     * fails.
+     */
+    public static <R, E extends Exception> boolean usingBoolean(Opener<? extends R, ? extends E> opener,
+            Closer<? super R, ? extends E> closer, LoanPredicate<? super R, ? extends E> predicate) throws E {
+        final R resource = opener.open();
+        final boolean result;
+        try {
+            result = predicate.test(resource);
+        } catch (Throwable th) {
+            closeAfterFailure(resource, closer, th);
+            throw th;
+        }
+        if (resource != null) {
+            closer.close(resource);
+        }
+        return result;
+    }
+
+    /**
+     * Close a resource after the function that used it failed, and add any
+     * failure of the close to the failure of the function, like a
+     * try-with-resources construct.
+     */
+    private static <R> void closeAfterFailure(R resource, Closer<? super R, ?> closer, Throwable failure) {
+        if (resource != null) {
+            try {
+                closer.close(resource);
+            } catch (Throwable th) {
+                if (th != failure) {
+                    failure.addSuppressed(th);
+                }
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
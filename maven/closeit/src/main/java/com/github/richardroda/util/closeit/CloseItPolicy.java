@@ -0,0 +1,281 @@
+package com.github.richardroda.util.closeit;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An immutable description of how every failure of a close is processed,
+ * used by {@link CloseIt0#withPolicy(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseItPolicy) }
+ * and {@link CloseIt1#withPolicy(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseItPolicy) }.
+ * The same processing can be had by nesting the CloseIt static methods, such
+ * as {@code CloseIt1.rethrow(CloseIt1.rethrowWhen(CloseIt1.wrapAllException(...)))},
+ * but each level of the nesting is another object for every resource, and
+ * catches and rethrows the failure again.  A resource closed with a policy
+ * is one small object, whose close method has a single {@code try-catch}
+ * that applies the whole policy, and one policy is shared by every resource
+ * it is applied to.
+ * <p>
+ * A failure is first passed to the observer of the policy, if any.  Then
+ * the rules of the policy are tried in the order they were added, and the
+ * first rule whose type the failure is an instance of decides what happens
+ * to it: it is rethrown unchanged, mapped to the exception type of the
+ * policy, or consumed.  A failure that matches no rule is rethrown
+ * unchanged when it is unchecked, and mapped with the
+ * {@code exceptionMapper} of the policy when it is checked, which is
+ * {@code NotClosedException::new} for the {@link #create() } policy.  A
+ * mapper that returns {@code null} swallows (ignores) the failure.
+ * </p>
+ * <p>
+ * A policy may also retry the close with a {@link RetryPolicy}, and wait no
+ * longer than a timeout for the close to finish, like
+ * {@link CloseIt1#retrying(java.lang.AutoCloseable, com.github.richardroda.util.closeit.RetryPolicy, java.util.function.Function) }
+ * and {@link CloseIt1#withTimeout(java.lang.AutoCloseable, java.time.Duration, java.util.function.Function) }.
+ * When both are given, the timeout is for all of the attempts.  A close that
+ * is abandoned by the timeout fails with a {@link TimeoutException}, which
+ * the rules process like any other failure.  The {@code with} methods
+ * return a copy of the policy with one setting changed or one rule added.
+ * </p>
+ * <pre><code>
+ * static final CloseItPolicy&lt;IOException&gt; CONNECTION_POLICY = CloseItPolicy.create(IOException::new)
+ *     .withObserver(closeFailures::increment)
+ *     .withRethrow(IllegalStateException.class)
+ *     .withMap(IOException.class, ex-&gt;ex)
+ *     .withConsume(Exception.class, exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception))
+ *     .withTimeout(Duration.ofSeconds(5));
+ * ...
+ * try (CloseIt1&lt;IOException&gt; closeCon = CloseIt1.withPolicy(con, CONNECTION_POLICY)) {
+ * </code></pre>
+ *
+ * @param <E> Exception thrown by the close method when a failure is mapped.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItPolicy<E extends Exception> {
+
+    private static final CloseItPolicy<RuntimeException> DEFAULT = new CloseItPolicy<>(NotClosedException::new,
+            new Rule[0], null, null, null);
+
+    private final Function<? super Exception, ? extends E> exceptionMapper;
+    private final Rule[] rules;
+    private final Consumer<? super Throwable> observer;
+    private final RetryPolicy retryPolicy;
+    private final Duration timeout;
+
+    private CloseItPolicy(Function<? super Exception, ? extends E> exceptionMapper, Rule[] rules,
+            Consumer<? super Throwable> observer, RetryPolicy retryPolicy, Duration timeout) {
+        this.exceptionMapper = exceptionMapper;
+        this.rules = rules;
+        this.observer = observer;
+        this.retryPolicy = retryPolicy;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The policy with no rules, which rethrows unchecked failures
+     * and wraps checked failures in a {@link NotClosedException}, like
+     * {@link CloseIt0#wrapException(java.lang.AutoCloseable) }.
+     */
+    public static CloseItPolicy<RuntimeException> create() {
+        return DEFAULT;
+    }
+
+    /**
+     * Create a policy with no rules, which rethrows unchecked failures and
+     * maps checked failures with an {@code exceptionMapper}, like
+     * {@link CloseIt1#wrapException(java.lang.AutoCloseable, java.util.function.Function) }.
+     * @param <E> Exception thrown by the close method when a failure is
+     * mapped.
+     * @param exceptionMapper Function to map a checked failure that matches
+     * no rule.  A {@code null} return value means to swallow (ignore) the
+     * failure.
+     * @return A new policy.
+     */
+    public static <E extends Exception> CloseItPolicy<E> create(
+            Function<? super Exception, ? extends E> exceptionMapper) {
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+        return new CloseItPolicy<>(exceptionMapper, new Rule[0], null, null, null);
+    }
+
+    /**
+     * @param type The unchecked failures, a {@link RuntimeException} or an
+     * {@link Error}, to rethrow unchanged.  This rule is only needed to keep
+     * a later rule for a supertype from processing them.
+     * @return A copy of this policy with the rule added.
+     * @throws IllegalArgumentException When the {@code type} is checked.
+     */
+    public CloseItPolicy<E> withRethrow(Class<? extends Throwable> type) {
+        Objects.requireNonNull(type, "type required");
+        if (!RuntimeException.class.isAssignableFrom(type) && !Error.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException("type must be a RuntimeException or an Error");
+        }
+        return withRule(new Rule(type, null, null));
+    }
+
+    /**
+     * @param <T> Type of the failures.
+     * @param type The failures to map.
+     * @param mapper Function to map the failures to the exception type of
+     * this policy.  A {@code null} return value means to swallow (ignore)
+     * the failure, and {@code ex->ex} rethrows a failure that already has
+     * the exception type of this policy unchanged.
+     * @return A copy of this policy with the rule added.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Throwable> CloseItPolicy<E> withMap(Class<T> type, Function<? super T, ? extends E> mapper) {
+        Objects.requireNonNull(type, "type required");
+        Objects.requireNonNull(mapper, "mapper required");
+        return withRule(new Rule(type, (Function<Throwable, ? extends Exception>) mapper, null));
+    }
+
+    /**
+     * @param type The failures to consume (not rethrow).
+     * @param exConsumer Consumer to apply an operation to the failures.
+     * @return A copy of this policy with the rule added.
+     */
+    public CloseItPolicy<E> withConsume(Class<? extends Throwable> type, Consumer<? super Throwable> exConsumer) {
+        Objects.requireNonNull(type, "type required");
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        return withRule(new Rule(type, null, exConsumer));
+    }
+
+    /**
+     * @param observer Consumer that every failure is passed to before the
+     * rules process it, like
+     * {@link CloseIt1#rethrow(com.github.richardroda.util.closeit.CloseIt1, java.util.function.Consumer) }.
+     * @return A copy of this policy with the observer.
+     */
+    public CloseItPolicy<E> withObserver(Consumer<? super Throwable> observer) {
+        Objects.requireNonNull(observer, "observer required");
+        return new CloseItPolicy<>(exceptionMapper, rules, observer, retryPolicy, timeout);
+    }
+
+    /**
+     * @param retryPolicy Policy for retrying a close that fails.
+     * @return A copy of this policy that retries the close.
+     */
+    public CloseItPolicy<E> withRetry(RetryPolicy retryPolicy) {
+        Objects.requireNonNull(retryPolicy, "retryPolicy required");
+        return new CloseItPolicy<>(exceptionMapper, rules, observer, retryPolicy, timeout);
+    }
+
+    /**
+     * @param timeout The longest time to wait for the close, including any
+     * retries, to finish.  The close runs on a closer thread, and when the
+     * timeout passes it is abandoned to that thread.  Must be positive.
+     * @return A copy of this policy with the timeout.
+     */
+    public CloseItPolicy<E> withTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout required");
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        return new CloseItPolicy<>(exceptionMapper, rules, observer, retryPolicy, timeout);
+    }
+
+    private CloseItPolicy<E> withRule(Rule rule) {
+        Rule[] added = Arrays.copyOf(rules, rules.length + 1);
+        added[rules.length] = rule;
+        return new CloseItPolicy<>(exceptionMapper, added, observer, retryPolicy, timeout);
+    }
+
+    /**
+     * Close the {@code closeable}, and process any failure according to this
+     * policy.
+     * @param closeable The closeable to close.
+     * @throws E When a failure is mapped.
+     */
+    void close(AutoCloseable closeable) throws E {
+        try {
+            if (timeout != null) {
+                if (!CloseItHelper.closeWithin(retryPolicy == null ? closeable : () -> retryPolicy.close(closeable),
+                        timeout)) {
+                    throw new TimeoutException("close did not finish within " + timeout);
+                }
+            } else if (retryPolicy != null) {
+                retryPolicy.close(closeable);
+            } else {
+                closeable.close();
+            }
+        } catch (Throwable th) {
+            process(th);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process(Throwable th) throws E {
+        if (observer != null) {
+            observer.accept(th);
+        }
+        for (Rule rule : rules) {
+            if (rule.type.isInstance(th)) {
+                if (rule.mapper != null) {
+                    E ex = (E) rule.mapper.apply(th);
+                    if (ex != null) {
+                        throw ex;
+                    }
+                } else if (rule.exConsumer != null) {
+                    rule.exConsumer.accept(th);
+                } else {
+                    throw CloseItHelper.hideException(th);
+                }
+                return;
+            }
+        }
+        if (th instanceof RuntimeException || !(th instanceof Exception)) {
+            throw CloseItHelper.hideException(th);
+        }
+        E ex = exceptionMapper.apply((Exception) th);
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    /**
+     * A rule of the policy.  A rule with neither a mapper nor a consumer
+     * rethrows.
+     */
+    private static final class Rule {
+        final Class<? extends Throwable> type;
+        final Function<Throwable, ? extends Exception> mapper;
+        final Consumer<? super Throwable> exConsumer;
+
+        Rule(Class<? extends Throwable> type, Function<Throwable, ? extends Exception> mapper,
+                Consumer<? super Throwable> exConsumer) {
+            this.type = type;
+            this.mapper = mapper;
+            this.exConsumer = exConsumer;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
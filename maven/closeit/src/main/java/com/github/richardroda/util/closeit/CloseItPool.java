@@ -0,0 +1,296 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A lock free pool of expensive objects, such as parsers, ciphers, or native
+ * handles, whose leases are {@link CloseIt0} handles, so that a
+ * try-with-resources construct returns the object to the pool.
+ * <pre><code>
+ * static final CloseItPool&lt;NativeParser&gt; PARSERS = CloseItPool.create(NativeParser::new, 16,
+ *     parser-&gt;!parser.isBroken(), exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception));
+ * ...
+ * try (CloseItPool.Lease&lt;NativeParser&gt; lease = PARSERS.lease()) {
+ *     return lease.get().parse(input);
+ * }
+ * </code></pre>
+ * <p>
+ * The pool holds up to {@code maxIdle} idle objects in an array of slots.
+ * Each thread starts its search for an idle object, and for a free slot to
+ * return an object to, at a slot picked from its thread id, so threads that
+ * lease and return objects at the same time mostly work on different slots,
+ * and a thread usually gets back the object it returned last.  Taking an
+ * object from a slot and putting one back are single compare and set
+ * operations.  When there is no idle object, {@link #lease() } creates one
+ * with the {@code factory}, so the pool never blocks.
+ * </p>
+ * <p>
+ * The pool bounds only the number of idle objects, not the number of
+ * objects that exist: under contention every thread that finds no idle
+ * object creates one, and objects that find no free slot when they are
+ * returned are destroyed.  When the objects are scarce, such as connections
+ * with a server side limit, bound them outside the pool, for example by
+ * acquiring a {@link java.util.concurrent.Semaphore} permit before
+ * {@link #lease() } and releasing it after the lease is closed.
+ * </p>
+ * <p>
+ * When a lease is closed, the {@code validator} checks the object, and an
+ * object that is valid is returned to a free slot.  An object that is not
+ * valid, or that has no free slot to return to, or that is returned after
+ * the pool is closed, is destroyed: it is closed through
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }
+ * with the {@code exConsumer} of the pool.  {@link Lease#destroy() } destroys
+ * the object of a lease instead of returning it, which is the way to discard
+ * an object that failed while it was in use.  When the {@code validator}
+ * throws, the object is destroyed, and closing the lease throws the
+ * exception of the {@code validator}.  Closing the pool destroys the idle
+ * objects.
+ * </p>
+ *
+ * @param <T> Type of the pooled objects.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItPool<T extends AutoCloseable> implements CloseIt0 {
+
+    private final Supplier<? extends T> factory;
+    private final Predicate<? super T> validator;
+    private final Consumer<? super Exception> exConsumer;
+    private final AtomicReferenceArray<T> slots;
+    private volatile boolean closed;
+
+    private CloseItPool(Supplier<? extends T> factory, int maxIdle, Predicate<? super T> validator,
+            Consumer<? super Exception> exConsumer) {
+        this.factory = factory;
+        this.validator = validator;
+        this.exConsumer = exConsumer;
+        this.slots = new AtomicReferenceArray<>(maxIdle);
+    }
+
+    /**
+     * Create a pool that returns every object to the pool when its lease is
+     * closed, as long as there is a free slot for it.
+     * @param <T> Type of the pooled objects.
+     * @param factory Supplier of new objects when there is no idle object.
+     * @param maxIdle The most idle objects the pool holds.  Must be at least
+     * {@code 1}.
+     * @param exConsumer Consumer of the exceptions thrown when an object is
+     * destroyed.
+     * @return A new, empty pool.
+     */
+    public static <T extends AutoCloseable> CloseItPool<T> create(Supplier<? extends T> factory, int maxIdle,
+            Consumer<? super Exception> exConsumer) {
+        return create(factory, maxIdle, object -> true, exConsumer);
+    }
+
+    /**
+     * Create a pool that validates each object before it returns it to the
+     * pool.
+     * @param <T> Type of the pooled objects.
+     * @param factory Supplier of new objects when there is no idle object.
+     * @param maxIdle The most idle objects the pool holds.  Must be at least
+     * {@code 1}.
+     * @param validator Predicate that decides if an object is returned to
+     * the pool when its lease is closed.  An object that is not valid is
+     * destroyed.
+     * @param exConsumer Consumer of the exceptions thrown when an object is
+     * destroyed.
+     * @return A new, empty pool.
+     */
+    public static <T extends AutoCloseable> CloseItPool<T> create(Supplier<? extends T> factory, int maxIdle,
+            Predicate<? super T> validator, Consumer<? super Exception> exConsumer) {
+        Objects.requireNonNull(factory, "factory required");
+        Objects.requireNonNull(validator, "validator required");
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle must be at least 1");
+        }
+        return new CloseItPool<>(factory, maxIdle, validator, exConsumer);
+    }
+
+    /**
+     * Lease an idle object, or a new object from the {@code factory} when
+     * there is no idle object.
+     * @return A lease of the object, which returns the object to the pool
+     * when it is closed.
+     * @throws IllegalStateException When the pool is closed.
+     */
+    public Lease<T> lease() {
+        if (closed) {
+            throw new IllegalStateException("pool is closed");
+        }
+        final int length = slots.length();
+        final int home = homeSlot(length);
+        for (int i = 0; i < length; i++) {
+            int index = (home + i) % length;
+            T object = slots.get(index);
+            if (object != null && slots.compareAndSet(index, object, null)) {
+                return new Lease<>(this, object);
+            }
+        }
+        return new Lease<>(this, Objects.requireNonNull(factory.get(), "factory must not return null"));
+    }
+
+    /**
+     * @return The number of idle objects in the pool, which is only an
+     * estimate while objects are being leased or returned.
+     */
+    public int idleCount() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Destroy every idle object in the pool.  Objects that are leased are
+     * not affected.
+     */
+    public void evictIdle() {
+        for (int i = 0; i < slots.length(); i++) {
+            T object = slots.getAndSet(i, null);
+            if (object != null) {
+                destroy(object);
+            }
+        }
+    }
+
+    /**
+     * Close the pool, and destroy its idle objects.  Objects that are leased
+     * are destroyed when their leases are closed.
+     */
+    @Override
+    public void closeIt() {
+        closed = true;
+        evictIdle();
+    }
+
+    private void release(T object) {
+        if (!closed && isValid(object)) {
+            final int length = slots.length();
+            final int home = homeSlot(length);
+            for (int i = 0; i < length; i++) {
+                int index = (home + i) % length;
+                if (slots.get(index) == null && slots.compareAndSet(index, null, object)) {
+                    if (closed) {
+                        // The pool was closed while the object was returned.
+                        evictIdle();
+                    }
+                    return;
+                }
+            }
+        }
+        destroy(object);
+    }
+
+    private boolean isValid(T object) {
+        try {
+            return validator.test(object);
+        } catch (Throwable th) {
+            destroy(object);
+            throw th;
+        }
+    }
+
+    private void destroy(T object) {
+        CloseIt0.consumeAllException(object, exConsumer).closeIt();
+    }
+
+    private static int homeSlot(int length) {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash >>> 1) % length;
+    }
+
+    /**
+     * A lease of a pooled object.  Closing the lease returns the object to
+     * the pool, and the lease may not be used after that.  A lease is meant
+     * to be used by one thread, like the try-with-resources construct that
+     * closes it.
+     *
+     * @param <T> Type of the pooled object.
+     */
+    public static final class Lease<T extends AutoCloseable> implements CloseIt0 {
+        private final CloseItPool<T> pool;
+        private T object;
+
+        private Lease(CloseItPool<T> pool, T object) {
+            this.pool = pool;
+            this.object = object;
+        }
+
+        /**
+         * @return The leased object.
+         * @throws IllegalStateException When the lease is closed.
+         */
+        public T get() {
+            T leased = object;
+            if (leased == null) {
+                throw new IllegalStateException("lease is closed");
+            }
+            return leased;
+        }
+
+        /**
+         * Destroy the leased object instead of returning it to the pool, and
+         * close the lease.  Does nothing if the lease is already closed.
+         */
+        public void destroy() {
+            T leased = object;
+            if (leased != null) {
+                object = null;
+                pool.destroy(leased);
+            }
+        }
+
+        /**
+         * Return the leased object to the pool.  Does nothing if the lease is
+         * already closed.
+         * @throws RuntimeException When the {@code validator} of the pool
+         * throws, after the object is destroyed.
+         */
+        @Override
+        public void closeIt() {
+            T leased = object;
+            if (leased != null) {
+                object = null;
+                pool.release(leased);
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
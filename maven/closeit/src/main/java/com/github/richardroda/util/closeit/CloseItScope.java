@@ -0,0 +1,240 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A scope that closes any number of resources with a single
+ * try-with-resources construct.  Resources are added to the scope as they
+ * are opened, and closed in the reverse order they were added when the scope
+ * is closed, which is the same order that nested try-with-resources
+ * declarations would close them.  Unlike nesting a
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }
+ * or {@link CloseIt0#wrapException(java.lang.AutoCloseable) } decorator for
+ * each resource, the scope keeps its resources in one growable array and
+ * closes them in a single loop, so there is no lambda or nested
+ * {@code try-catch} per resource.
+ * <p>
+ * Every resource is closed even when an earlier close fails.  The first
+ * failure is mapped with the {@code exceptionMapper} of the scope, which is
+ * {@code NotClosedException::new} for a scope created with {@link #create() },
+ * and any further failures are added to the mapped exception as suppressed
+ * exceptions according to a {@link SuppressionPolicy}, which is the
+ * {@link SuppressionPolicy#defaultPolicy() } unless another policy is given
+ * when the scope is created.  A resource may be added with an {@code exConsumer} to consume
+ * its exceptions instead, like
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }.
+ * </p>
+ * <pre><code>
+ * try (CloseItScope&lt;RuntimeException&gt; scope = CloseItScope.create()) {
+ *     Connection con = scope.add(dataSource.getConnection());
+ *     Statement stmt = scope.add(con.createStatement());
+ *     ResultSet rs = scope.add(stmt.executeQuery("select * from foo"),
+ *         exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception));
+ *     processResultSet(rs);
+ * }
+ * </code></pre>
+ * <p>
+ * A scope is not thread safe.  It is meant to be used by the thread that
+ * opens the resources, like the try-with-resources construct it replaces.
+ * Once closed, the scope is empty and may be reused.
+ * </p>
+ *
+ * @param <E> Exception thrown by the close method when a resource fails to
+ * close.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItScope<E extends Exception> implements CloseIt1<E> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Function<? super Throwable, ? extends E> exceptionMapper;
+    private final SuppressionPolicy suppressionPolicy;
+
+    /**
+     * The resources with the consumer of each resource following it, so that
+     * one array holds everything the scope closes.  A {@code null} consumer
+     * means the exception is mapped.
+     */
+    private Object[] entries = new Object[INITIAL_CAPACITY * 2];
+    private int size;
+
+    private CloseItScope(Function<? super Throwable, ? extends E> exceptionMapper,
+            SuppressionPolicy suppressionPolicy) {
+        this.exceptionMapper = exceptionMapper;
+        this.suppressionPolicy = suppressionPolicy;
+    }
+
+    /**
+     * Create a scope which throws a {@link NotClosedException} when any
+     * resource fails to close.  The cause of the {@code NotClosedException}
+     * is the first failure, and the suppressed exceptions are any failures
+     * that occur after it.
+     * @return A new, empty scope.
+     */
+    public static CloseItScope<RuntimeException> create() {
+        return new CloseItScope<>(NotClosedException::new, SuppressionPolicy.defaultPolicy());
+    }
+
+    /**
+     * Create a scope which uses an {@code exceptionMapper} to map the first
+     * throwable that occurs when closing its resources to the exception
+     * type of the scope.  Any failures after the first are added to the
+     * mapped exception as suppressed exceptions.
+     * @param <E> Exception thrown by the close method.
+     * @param exceptionMapper Function to map a throwable to the exception
+     * type of the scope.  A {@code null} return value means to swallow
+     * (ignore) the throwable, in which case the next failure, if any, is
+     * mapped instead.
+     * @return A new, empty scope.
+     */
+    public static <E extends Exception> CloseItScope<E> create(
+            Function<? super Throwable, ? extends E> exceptionMapper) {
+        return create(exceptionMapper, SuppressionPolicy.defaultPolicy());
+    }
+
+    /**
+     * Create a scope which uses an {@code exceptionMapper} to map the first
+     * throwable that occurs when closing its resources to the exception
+     * type of the scope, and a {@code suppressionPolicy} to decide how the
+     * failures after the first are added to the mapped exception.
+     * @param <E> Exception thrown by the close method.
+     * @param exceptionMapper Function to map a throwable to the exception
+     * type of the scope.  A {@code null} return value means to swallow
+     * (ignore) the throwable, in which case the next failure, if any, is
+     * mapped instead.
+     * @param suppressionPolicy Policy for the failures after the first.
+     * @return A new, empty scope.
+     */
+    public static <E extends Exception> CloseItScope<E> create(
+            Function<? super Throwable, ? extends E> exceptionMapper, SuppressionPolicy suppressionPolicy) {
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+        Objects.requireNonNull(suppressionPolicy, "suppressionPolicy required");
+        return new CloseItScope<>(exceptionMapper, suppressionPolicy);
+    }
+
+    /**
+     * Add a resource to the scope.  Any throwable that occurs when the
+     * resource is closed is mapped, or suppressed by an earlier failure.
+     * @param <T> Type of the resource.
+     * @param resource Resource to close when the scope is closed.
+     * @return The {@code resource}, to allow it to be assigned when it is
+     * added.
+     */
+    public <T extends AutoCloseable> T add(T resource) {
+        push(Objects.requireNonNull(resource, "resource required"), null);
+        return resource;
+    }
+
+    /**
+     * Add a resource to the scope which consumes all exceptions (including
+     * runtime exceptions) that occur when it is closed, like
+     * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) }.
+     * Errors are not consumed, and are mapped like the resources added with
+     * {@link #add(java.lang.AutoCloseable) }.
+     * @param <T> Type of the resource.
+     * @param resource Resource to close when the scope is closed.
+     * @param exConsumer Consumer to apply an operation to the exception.
+     * @return The {@code resource}, to allow it to be assigned when it is
+     * added.
+     */
+    public <T extends AutoCloseable> T add(T resource, Consumer<? super Exception> exConsumer) {
+        Objects.requireNonNull(resource, "resource required");
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        push(resource, exConsumer);
+        return resource;
+    }
+
+    /**
+     * @return The number of resources that will be closed when this scope is
+     * closed.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void push(AutoCloseable resource, Consumer<? super Exception> exConsumer) {
+        int index = size * 2;
+        if (index == entries.length) {
+            entries = Arrays.copyOf(entries, index * 2);
+        }
+        entries[index] = resource;
+        entries[index + 1] = exConsumer;
+        size++;
+    }
+
+    /**
+     * Close every resource in the scope, in the reverse order they were
+     * added, and empty the scope.
+     * @throws E When a resource fails to close and the {@code exceptionMapper}
+     * maps the failure to an exception.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void closeIt() throws E {
+        final Object[] closing = entries;
+        E mapped = null;
+        SuppressionPolicy.Suppressor suppressor = null;
+        for (int index = size * 2 - 2; index >= 0; index -= 2) {
+            AutoCloseable resource = (AutoCloseable) closing[index];
+            Consumer<? super Exception> exConsumer = (Consumer<? super Exception>) closing[index + 1];
+            closing[index] = null;
+            closing[index + 1] = null;
+            size--;
+            try {
+                try {
+                    resource.close();
+                } catch (Exception ex) {
+                    if (exConsumer == null) {
+                        throw ex;
+                    }
+                    exConsumer.accept(ex);
+                }
+            } catch (Throwable th) {
+                if (mapped == null) {
+                    mapped = exceptionMapper.apply(th);
+                    if (mapped != null) {
+                        suppressor = suppressionPolicy.start(mapped);
+                    }
+                } else {
+                    suppressor.add(th);
+                }
+            }
+        }
+        if (mapped != null) {
+            suppressor.finish();
+            throw mapped;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
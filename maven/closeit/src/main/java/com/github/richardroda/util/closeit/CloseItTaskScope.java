@@ -0,0 +1,336 @@
+package com.github.richardroda.util.closeit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A scope for tasks that are forked from a try-with-resources construct,
+ * and for the resources those tasks open.  Leaving the try block cancels the
+ * tasks that are still running, waits for every task to finish, and then
+ * closes every registered resource in the reverse order it was registered,
+ * like a {@link CloseItScope}.  When a task fails, the other tasks are
+ * cancelled, so a fan out that fails on one branch does not leave the
+ * resources of the other branches open until they time out.
+ * <pre><code>
+ * try (CloseItTaskScope scope = CloseItTaskScope.create(shardExecutor)) {
+ *     List&lt;Future&lt;Result&gt;&gt; results = new ArrayList&lt;&gt;();
+ *     for (Shard shard : shards) {
+ *         results.add(scope.fork(() -&gt; {
+ *             Connection con = scope.register(shard.getConnection());
+ *             return query(con);
+ *         }));
+ *     }
+ *     scope.join();
+ *     return merge(results);
+ * }
+ * </code></pre>
+ * <p>
+ * On a JDK that has virtual threads, each scope runs its tasks on its own
+ * virtual thread per task executor, which is found at run time so that the
+ * library remains binary compatible with JDK 8.  Otherwise, tasks run on
+ * the {@code fallbackExecutor}, which the scope does not shut down.  The
+ * fallback executor must run every task it accepts, or closing the scope
+ * waits for the tasks it never ran.
+ * </p>
+ * <p>
+ * Closing the scope throws {@code InterruptedException} when the closing
+ * thread is interrupted while it waits for the tasks, after the tasks have
+ * finished and the resources are closed.  A failure to close a resource is
+ * mapped with the {@code exceptionMapper} of the scope, which is
+ * {@code NotClosedException::new} unless another mapper is given, and
+ * added as a suppressed exception if the {@code InterruptedException} is
+ * thrown.  The scope itself, apart from {@link #fork(java.util.concurrent.Callable) }
+ * and {@link #register(java.lang.AutoCloseable) }, is meant to be used by the
+ * thread that creates it.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseItTaskScope implements CloseIt1<InterruptedException> {
+
+    private static final MethodHandle NEW_VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final CloseItScope<RuntimeException> resources;
+    private final Set<Task<?>> running = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * The owner is one party, and each task that has not finished is
+     * another, so the phaser terminates when the owner and every task
+     * have deregistered.
+     */
+    private final Phaser tasks = new Phaser(1);
+
+    /**
+     * The phase the owner arrived at in {@link #join() }, so that a join that
+     * is interrupted and called again does not arrive twice.
+     */
+    private int arrivedPhase = -1;
+    private boolean resourcesClosed;
+    private boolean closed;
+
+    private CloseItTaskScope(ExecutorService executor, boolean ownsExecutor,
+            Function<? super Throwable, ? extends RuntimeException> exceptionMapper) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.resources = CloseItScope.create(exceptionMapper);
+    }
+
+    /**
+     * Create a scope which wraps a failure to close a resource in a
+     * {@link NotClosedException}.
+     * @param fallbackExecutor Executor that runs the tasks when virtual
+     * threads are not available.
+     * @return A new scope.
+     */
+    public static CloseItTaskScope create(ExecutorService fallbackExecutor) {
+        return create(fallbackExecutor, NotClosedException::new);
+    }
+
+    /**
+     * Create a scope which uses an {@code exceptionMapper} to map the first
+     * failure to close a resource.  Any failures after the first are added
+     * to the mapped exception as suppressed exceptions.
+     * @param fallbackExecutor Executor that runs the tasks when virtual
+     * threads are not available.
+     * @param exceptionMapper Function to map a throwable to a runtime
+     * exception.  A {@code null} return value means to swallow (ignore) the
+     * throwable.
+     * @return A new scope.
+     */
+    public static CloseItTaskScope create(ExecutorService fallbackExecutor,
+            Function<? super Throwable, ? extends RuntimeException> exceptionMapper) {
+        Objects.requireNonNull(fallbackExecutor, "fallbackExecutor required");
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+        ExecutorService virtual = newVirtualExecutor();
+        return virtual == null
+                ? new CloseItTaskScope(fallbackExecutor, false, exceptionMapper)
+                : new CloseItTaskScope(virtual, true, exceptionMapper);
+    }
+
+    /**
+     * @return {@code true} if the tasks of this scope run on virtual
+     * threads.
+     */
+    public boolean isVirtual() {
+        return ownsExecutor;
+    }
+
+    /**
+     * Fork a task in this scope.  If the task fails, every other task of
+     * the scope is cancelled.
+     * @param <T> Type of the result of the task.
+     * @param task Task to run.
+     * @return A future for the result of the task.
+     * @throws IllegalStateException When the scope is closed.
+     * @throws RejectedExecutionException When the executor rejects the
+     * task.
+     */
+    public <T> Future<T> fork(Callable<? extends T> task) {
+        Objects.requireNonNull(task, "task required");
+        if (tasks.register() < 0) {
+            throw new IllegalStateException("scope is closed");
+        }
+        Task<T> forked = new Task<>(task);
+        running.add(forked);
+        try {
+            executor.execute(forked);
+        } catch (RuntimeException | Error ex) {
+            running.remove(forked);
+            tasks.arriveAndDeregister();
+            throw ex;
+        }
+        return forked;
+    }
+
+    /**
+     * Register a resource to close when the scope is closed, after every
+     * task has finished.  This may be called by the tasks of the scope.
+     * @param <T> Type of the resource.
+     * @param resource Resource to close.
+     * @return The {@code resource}, to allow it to be assigned when it is
+     * registered.
+     * @throws IllegalStateException When the resources of the scope are
+     * already closed.
+     */
+    public <T extends AutoCloseable> T register(T resource) {
+        synchronized (resources) {
+            if (resourcesClosed) {
+                throw new IllegalStateException("scope is closed");
+            }
+            return resources.add(resource);
+        }
+    }
+
+    /**
+     * Wait for every task forked so far to finish, or for one of them to
+     * fail, which cancels the others.
+     * @throws InterruptedException When the thread is interrupted while
+     * waiting.
+     * @throws ExecutionException When a task failed, with the first failure
+     * as its cause.
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        if (closed) {
+            throw new IllegalStateException("scope is closed");
+        }
+        if (arrivedPhase != tasks.getPhase()) {
+            arrivedPhase = tasks.arrive();
+        }
+        tasks.awaitAdvanceInterruptibly(arrivedPhase);
+        Throwable th = failure.get();
+        if (th != null) {
+            throw new ExecutionException(th);
+        }
+    }
+
+    /**
+     * Cancel the tasks that are still running, wait for every task to
+     * finish, and close the registered resources.  Does nothing if the scope
+     * is already closed.
+     * @throws InterruptedException When the thread was interrupted while
+     * waiting for the tasks.  The resources are closed before it is thrown.
+     */
+    @Override
+    public void closeIt() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cancelAll();
+        boolean interrupted = false;
+        // When an interrupted join already arrived, this arrival stands in
+        // for one of the tasks; the owner still waits for termination.
+        int phase = tasks.arriveAndDeregister();
+        while (!tasks.isTerminated()) {
+            try {
+                tasks.awaitAdvanceInterruptibly(phase);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+            phase = tasks.getPhase();
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+        RuntimeException closeFailure = null;
+        try {
+            synchronized (resources) {
+                resourcesClosed = true;
+                resources.closeIt();
+            }
+        } catch (RuntimeException ex) {
+            closeFailure = ex;
+        }
+        if (interrupted) {
+            InterruptedException ex = new InterruptedException("interrupted while waiting for the tasks of the scope");
+            if (closeFailure != null) {
+                ex.addSuppressed(closeFailure);
+            }
+            throw ex;
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+
+    private void cancelAll() {
+        for (Task<?> task : running) {
+            task.cancel(true);
+        }
+    }
+
+    private static MethodHandle findVirtualExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualExecutor() {
+        if (NEW_VIRTUAL_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invokeExact();
+        } catch (Throwable th) {
+            // Virtual threads are a preview feature that is not enabled.
+            return null;
+        }
+    }
+
+    /**
+     * A forked task, which cancels the other tasks of the scope when it
+     * fails, and deregisters from the scope once its thread is done with
+     * it, even when it is cancelled before it runs.
+     */
+    private final class Task<T> extends FutureTask<T> {
+        Task(Callable<? extends T> task) {
+            super(task::call);
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                running.remove(this);
+                tasks.arriveAndDeregister();
+            }
+        }
+
+        @Override
+        protected void setException(Throwable th) {
+            super.setException(th);
+            if (failure.compareAndSet(null, th)) {
+                cancelAll();
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,290 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of close metrics, created for use with
+ * {@link CloseIt0#metered(java.lang.AutoCloseable, com.github.richardroda.util.closeit.CloseMetrics) }
+ * and the other {@code metered} decorators.  For each tag, which is the
+ * resource class name or a name supplied by the application, the registry
+ * counts the closes, the failures by exception class, and the resources that
+ * are currently open, and keeps a histogram of how long the closes take.
+ * <p>
+ * The counters are {@link LongAdder}s and the histogram has a fixed set of
+ * buckets, so recording a close takes no locks and allocates nothing,
+ * though each decorated resource has a decorator of its own.  A tag
+ * is looked up when a resource is decorated, not when it is closed.  The
+ * first failure of a given exception class for a tag adds a counter for it,
+ * so only the failure path of recording may allocate.  A {@link Snapshot} is a copy of the
+ * counters at the time it is taken, which is not atomic across counters
+ * while closes are in progress.
+ * </p>
+ * <pre><code>
+ * static final CloseMetrics CLOSE_METRICS = new CloseMetrics();
+ * ...
+ * try (CloseIt0 closeCon = CloseIt0.wrapException(CloseIt0.metered(con, CLOSE_METRICS))) {
+ *     ...
+ * }
+ * ...
+ * CLOSE_METRICS.snapshot().values().forEach(snapshot-&gt;logger.info(snapshot.toString()));
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class CloseMetrics {
+
+    /**
+     * The number of latency buckets.  Bucket {@code 0} counts closes that
+     * take no measurable time, and bucket {@code i} counts closes that take
+     * at least 2<sup>i-1</sup> and less than 2<sup>i</sup> nanoseconds.  The
+     * last bucket also counts every close that takes longer.
+     */
+    public static final int LATENCY_BUCKETS = 40;
+
+    private final ConcurrentHashMap<String, Meter> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param tag Tag to look up.
+     * @return The meter for the tag, which is created the first time it is
+     * requested.
+     */
+    Meter meter(String tag) {
+        Objects.requireNonNull(tag, "tag required");
+        Meter meter = meters.get(tag);
+        return meter != null ? meter : meters.computeIfAbsent(tag, Meter::new);
+    }
+
+    /**
+     * @param tag Tag of the metrics.
+     * @return A snapshot of the metrics for the {@code tag}, which has only
+     * zero counts if no resource has been decorated with the tag.
+     */
+    public Snapshot snapshot(String tag) {
+        Objects.requireNonNull(tag, "tag required");
+        Meter meter = meters.get(tag);
+        return meter != null ? meter.snapshot() : new Meter(tag).snapshot();
+    }
+
+    /**
+     * @return A snapshot of the metrics for every tag, sorted by tag.
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        for (Meter meter : meters.values()) {
+            snapshots.put(meter.tag, meter.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * @param nanos Time a close took, in nanoseconds.
+     * @return The latency bucket that counts the time.
+     */
+    static int bucket(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0L)), LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * The live counters for one tag.  The close count is the sum of the
+     * latency buckets and the failure count is the sum of the failure
+     * classes, so that a close updates as few counters as possible.
+     */
+    static final class Meter {
+        final String tag;
+        final LongAdder opened = new LongAdder();
+        final LongAdder closed = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS];
+        final ConcurrentHashMap<Class<? extends Throwable>, LongAdder> failuresByClass = new ConcurrentHashMap<>();
+
+        Meter(String tag) {
+            this.tag = tag;
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record a close.
+         * @param startNanos {@link System#nanoTime() } when the close started.
+         * @param failure The throwable thrown by the close, or {@code null}
+         * when it succeeded.
+         */
+        void record(long startNanos, Throwable failure) {
+            long nanos = System.nanoTime() - startNanos;
+            totalNanos.add(nanos);
+            latency[bucket(nanos)].increment();
+            if (failure != null) {
+                Class<? extends Throwable> failureClass = failure.getClass();
+                LongAdder count = failuresByClass.get(failureClass);
+                if (count == null) {
+                    count = failuresByClass.computeIfAbsent(failureClass, key -> new LongAdder());
+                }
+                count.increment();
+            }
+        }
+
+        Snapshot snapshot() {
+            long closeCount = 0L;
+            long[] latencyCounts = new long[latency.length];
+            for (int i = 0; i < latency.length; i++) {
+                latencyCounts[i] = latency[i].sum();
+                closeCount += latencyCounts[i];
+            }
+            long failureCount = 0L;
+            Map<Class<? extends Throwable>, Long> failureCounts = new HashMap<>();
+            for (Map.Entry<Class<? extends Throwable>, LongAdder> entry : failuresByClass.entrySet()) {
+                long count = entry.getValue().sum();
+                failureCounts.put(entry.getKey(), count);
+                failureCount += count;
+            }
+            return new Snapshot(tag, opened.sum() - closed.sum(), closeCount, failureCount,
+                    totalNanos.sum(), latencyCounts, Collections.unmodifiableMap(failureCounts));
+        }
+    }
+
+    /**
+     * An immutable copy of the close metrics for one tag.
+     */
+    public static final class Snapshot {
+        private final String tag;
+        private final long openCount;
+        private final long closeCount;
+        private final long failureCount;
+        private final long totalNanos;
+        private final long[] latencyCounts;
+        private final Map<Class<? extends Throwable>, Long> failureCounts;
+
+        Snapshot(String tag, long openCount, long closeCount, long failureCount, long totalNanos,
+                long[] latencyCounts, Map<Class<? extends Throwable>, Long> failureCounts) {
+            this.tag = tag;
+            this.openCount = openCount;
+            this.closeCount = closeCount;
+            this.failureCount = failureCount;
+            this.totalNanos = totalNanos;
+            this.latencyCounts = latencyCounts;
+            this.failureCounts = failureCounts;
+        }
+
+        /**
+         * @return The resource class name or application supplied name that
+         * the metrics are recorded under.
+         */
+        public String tag() {
+            return tag;
+        }
+
+        /**
+         * @return The number of decorated resources that have not been
+         * closed yet.
+         */
+        public long openCount() {
+            return openCount;
+        }
+
+        /**
+         * @return The number of closes, including those that failed.
+         */
+        public long closeCount() {
+            return closeCount;
+        }
+
+        /**
+         * @return The number of closes that threw an exception or throwable.
+         */
+        public long failureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return The number of failed closes for each class of throwable
+         * thrown.
+         */
+        public Map<Class<? extends Throwable>, Long> failureCounts() {
+            return failureCounts;
+        }
+
+        /**
+         * @return The total time spent closing, in nanoseconds.
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return The number of closes in each latency bucket.
+         * @see CloseMetrics#LATENCY_BUCKETS
+         */
+        public long[] latencyCounts() {
+            return latencyCounts.clone();
+        }
+
+        /**
+         * Estimate a percentile of the close latency from the histogram.
+         * @param percentile Percentile between {@code 0} and {@code 100}.
+         * @return The upper bound, in nanoseconds, of the latency bucket that
+         * contains the percentile, or {@code 0} when there are no closes.
+         */
+        public long percentileNanos(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            long total = 0L;
+            for (long count : latencyCounts) {
+                total += count;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0L;
+            for (int i = 0; i < latencyCounts.length; i++) {
+                seen += latencyCounts[i];
+                if (seen > 0L && seen >= rank) {
+                    return i == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1L;
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public String toString() {
+            return tag + ": open=" + openCount + ", closes=" + closeCount
+                    + ", failures=" + failureCount + " " + failureCounts
+                    + ", p50=" + percentileNanos(50.0) + "ns, p99=" + percentileNanos(99.0)
+                    + "ns, latencyCounts=" + Arrays.toString(latencyCounts);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,267 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Closes resources on background threads, so that a request thread can hand
+ * off an expensive close instead of paying for it.  Resources are added to
+ * a bounded lock free queue by {@link #defer(java.lang.AutoCloseable) }, or
+ * by the close method of a {@link CloseIt0} created with
+ * {@link CloseIt0#deferred(java.lang.AutoCloseable, com.github.richardroda.util.closeit.DeferredCloser) },
+ * and the closer threads take them off the queue in batches and close them.
+ * Any throwable thrown by a deferred close is passed to the
+ * {@code exConsumer} of the closer.  A resource may be decorated by the other
+ * static methods of the CloseIt interfaces before it is deferred to process
+ * its exceptions first.
+ * <p>
+ * The queue never grows beyond its capacity.  When it is full, the
+ * {@link Overflow} policy of the closer decides what happens to the
+ * resource: the calling thread closes it, the calling thread waits for room
+ * in the queue, or the resource is dropped without being closed and a
+ * {@link RejectedExecutionException} is passed to the {@code exConsumer}.
+ * </p>
+ * <p>
+ * The closer threads are daemon threads, so a closer that is not closed does
+ * not prevent the JVM from exiting.  Closing the closer stops it from
+ * accepting resources, waits for the closer threads to close every resource
+ * in the queue, and then ends the closer threads.  A resource that is
+ * deferred after the closer is closed is closed by the calling thread.
+ * </p>
+ * <pre><code>
+ * static final DeferredCloser CLOSER = DeferredCloser.create(4096, 2, DeferredCloser.Overflow.CLOSE_INLINE,
+ *     exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception));
+ * ...
+ * try (CloseIt0 closeClient = CloseIt0.deferred(client, CLOSER)) {
+ *     ...
+ * }
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class DeferredCloser implements CloseIt0 {
+
+    /**
+     * What to do with a resource that is deferred when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * The calling thread closes the resource.
+         */
+        CLOSE_INLINE,
+        /**
+         * The calling thread waits until there is room in the queue.
+         */
+        BLOCK,
+        /**
+         * The resource is not closed, and a {@link RejectedExecutionException}
+         * is passed to the {@code exConsumer} of the closer.
+         */
+        DROP
+    }
+
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+    private static final AtomicInteger CLOSER_NUMBER = new AtomicInteger();
+
+    private final BoundedQueue<AutoCloseable> queue;
+    private final Overflow overflow;
+    private final Consumer<? super Throwable> exConsumer;
+    private final Thread[] threads;
+    private final AtomicInteger idle = new AtomicInteger();
+    private volatile boolean closed;
+
+    private DeferredCloser(int capacity, int threadCount, Overflow overflow,
+            Consumer<? super Throwable> exConsumer) {
+        this.queue = new BoundedQueue<>(capacity);
+        this.overflow = overflow;
+        this.exConsumer = exConsumer;
+        this.threads = new Thread[threadCount];
+        int closerNumber = CLOSER_NUMBER.incrementAndGet();
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(this::drain, "closeit-deferred-closer-" + closerNumber + "-" + (i + 1));
+            threads[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Create a closer and start its closer threads.
+     * @param capacity The minimum number of resources the queue can hold,
+     * which is rounded up to a power of two that is at least two.
+     * @param threads The number of closer threads.
+     * @param overflow What to do with a resource that is deferred when the
+     * queue is full.
+     * @param exConsumer Consumer of the throwables thrown by deferred closes,
+     * and of the {@link RejectedExecutionException} for a dropped resource.
+     * It is called on the thread that closes the resource.
+     * @return A new closer.
+     */
+    public static DeferredCloser create(int capacity, int threads, Overflow overflow,
+            Consumer<? super Throwable> exConsumer) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        Objects.requireNonNull(overflow, "overflow required");
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        DeferredCloser closer = new DeferredCloser(capacity, threads, overflow, exConsumer);
+        for (Thread thread : closer.threads) {
+            thread.start();
+        }
+        return closer;
+    }
+
+    /**
+     * Hand a resource to the closer threads to close.  If the queue is full,
+     * the {@link Overflow} policy of the closer decides what happens to the
+     * resource.  If the closer is closed, the calling thread closes the
+     * resource.  Either way, a throwable thrown by the close is passed to the
+     * {@code exConsumer} rather than thrown.
+     * @param resource Resource to close.
+     */
+    public void defer(AutoCloseable resource) {
+        Objects.requireNonNull(resource, "resource required");
+        while (!closed) {
+            if (queue.offer(resource)) {
+                if (closed) {
+                    // The closer threads may have finished before the offer.
+                    closeQueued();
+                } else if (idle.get() > 0) {
+                    wakeClosers();
+                }
+                return;
+            }
+            switch (overflow) {
+                case BLOCK:
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    break;
+                case DROP:
+                    report(new RejectedExecutionException(resource.getClass().getName()
+                            + " was not closed because the deferred close queue is full"));
+                    return;
+                default:
+                    close(resource);
+                    return;
+            }
+        }
+        close(resource);
+    }
+
+    /**
+     * @return The number of resources waiting in the queue, which is only an
+     * estimate while resources are being deferred or closed.
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting resources, and wait for the closer threads to close
+     * every resource in the queue.  If the calling thread is interrupted, it
+     * still waits, and its interrupt status is set when this method returns.
+     */
+    @Override
+    public void closeIt() {
+        closed = true;
+        wakeClosers();
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive() && thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        closeQueued();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQueued() {
+        AutoCloseable resource;
+        while ((resource = queue.poll()) != null) {
+            close(resource);
+        }
+    }
+
+    private void wakeClosers() {
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            int count = 0;
+            AutoCloseable resource;
+            while (count < BATCH_SIZE && (resource = queue.poll()) != null) {
+                close(resource);
+                count++;
+            }
+            if (count == 0 && queue.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                idle.incrementAndGet();
+                try {
+                    if (queue.isEmpty() && !closed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                } finally {
+                    idle.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void close(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Throwable th) {
+            report(th);
+        }
+    }
+
+    private void report(Throwable th) {
+        try {
+            exConsumer.accept(th);
+        } catch (Throwable ignored) {
+            // A failing exConsumer must not stop the closer threads.
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -11,6 +11,15 @@ package com.github.richardroda.util.closeit;
  * originate from a close method of a decorated {@code AutoClosable}.  If another
  * kind of exception needs to be caught, consider using a {@code multi-catch}
  * with this exception and the other exceptions that need to be handled.
+ * <p>
+ * When a backend goes down, every close can fail at once, and filling in the
+ * stack trace of each {@code NotClosedException} becomes a noticeable part of
+ * the cost of the failure.  Setting the system property
+ * {@value #STACKLESS_PROPERTY} to {@code true} creates every
+ * {@code NotClosedException} without a stack trace.  The cause is kept
+ * intact, and its stack trace shows where the close failed.  The property is
+ * read once, when this class is initialized.
+ * </p>
  * 
  * @author Richard Roda
  * @see com.github.richardroda.util.closeit.CloseIt0#wrapException(java.lang.AutoCloseable) 
@@ -19,6 +28,19 @@ package com.github.richardroda.util.closeit;
  */
 public final class NotClosedException extends IllegalStateException {
 
+    /**
+     * The system property that turns off the stack trace of every
+     * {@code NotClosedException} when it is {@code true}.
+     * @since 1.8
+     */
+    public static final String STACKLESS_PROPERTY = "com.github.richardroda.util.closeit.NotClosedException.stackless";
+
+    private static final boolean STACKLESS = readStackless();
+
+    private static final StackTraceElement[] NO_STACK_TRACE = new StackTraceElement[0];
+
+    private final boolean writableStackTrace;
+
     /**
      * Package private constructor guarantees this class is only created
      * by the {@link CloseIt0} class.
@@ -26,7 +48,33 @@ public final class NotClosedException extends IllegalStateException {
      */
     NotClosedException(Throwable cause) {
         super(cause);
-    }    
+        this.writableStackTrace = !STACKLESS;
+        if (writableStackTrace) {
+            super.fillInStackTrace();
+        } else {
+            setStackTrace(NO_STACK_TRACE);
+        }
+    }
+
+    /**
+     * Fill in the stack trace, unless this exception was created without a
+     * stack trace.  The {@code Throwable} constructor calls this method
+     * before the fields of this class are set, so it does nothing then, and
+     * the constructor of this class fills in the stack trace instead.
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return writableStackTrace ? super.fillInStackTrace() : this;
+    }
+
+    private static boolean readStackless() {
+        try {
+            return Boolean.getBoolean(STACKLESS_PROPERTY);
+        } catch (SecurityException ex) {
+            return false;
+        }
+    }
 }
 /*
 BSD 2-Clause License
@@ -0,0 +1,249 @@
+package com.github.richardroda.util.closeit;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A consumer of close failures that passes at most a fixed number of
+ * failures per interval to another consumer, for each kind of failure.  The
+ * consumer given to {@link CloseIt0#consumeException(java.lang.AutoCloseable, java.util.function.Consumer) }
+ * and the other {@code consume} methods is usually a logger, which floods the
+ * disk and uses a lot of CPU when every close fails during an outage.
+ * Decorating the logger with a {@code RateLimitedConsumer} keeps the first
+ * failures of each kind and counts the rest.
+ * <p>
+ * Failures are the same kind when they have the same class and top stack
+ * frame.  Each kind has a token bucket that holds up to {@code permits}
+ * tokens and refills at {@code permits} tokens per {@code interval}, so a
+ * burst of {@code permits} failures is passed on and then one failure every
+ * {@code interval / permits}.  The failures that are not passed on are
+ * counted, and the counts are passed to the consumer as
+ * {@link SuppressionPolicy.OmittedFailures} exceptions, with messages like
+ * {@code "12 further failures of type java.io.IOException"}, by the first
+ * failure that is accepted after an {@code interval} since the counts were
+ * last passed on, or by {@link #flush() }.  This class has no thread of its
+ * own, so once the failures stop, the counts of the last {@code interval}
+ * are only passed on by the next failure, which may never come.  Call
+ * {@link #flush() } periodically, such as from a scheduled executor, so that
+ * the log shows how many failures were omitted at the end of an outage.
+ * </p>
+ * <p>
+ * The buckets use a compare and set on an {@code AtomicLong} (the generic
+ * cell rate algorithm), so threads that fail to close at the same time do
+ * not block each other.  At most {@value #MAX_KINDS} kinds of failure have
+ * their own bucket, after which the further kinds share one bucket.
+ * Finding the bucket of a failure reads its top stack frame with
+ * {@link Throwable#getStackTrace() }, which fills in and copies the whole
+ * stack trace of the failure, and that is the main cost of a failure that
+ * is counted instead of passed on.  It is still much less than the cost of
+ * logging the failure, but a failure without a stack trace, such as a
+ * {@link NotClosedException} with {@value NotClosedException#STACKLESS_PROPERTY}
+ * set, is cheaper to count, and its kind is its class alone.
+ * </p>
+ * <pre><code>
+ * static final RateLimitedConsumer EX_CONSUMER = RateLimitedConsumer.create(
+ *     exception-&gt;logger.log(Level.WARNING, exception.getMessage(), exception), 10, Duration.ofMinutes(1));
+ * static {
+ *     SCHEDULER.scheduleWithFixedDelay(EX_CONSUMER::flush, 1, 1, TimeUnit.MINUTES);
+ * }
+ * ...
+ * try (CloseIt0 closeCon = CloseIt0.consumeAllException(con, EX_CONSUMER)) {
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class RateLimitedConsumer implements Consumer<Throwable> {
+
+    /**
+     * The most kinds of failure that have their own token bucket.
+     */
+    public static final int MAX_KINDS = 1024;
+
+    private final Consumer<? super Throwable> delegate;
+    private final long emissionNanos;
+    private final long burstNanos;
+    private final long intervalNanos;
+    private final ConcurrentHashMap<Kind, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Bucket sharedBucket = new Bucket(Throwable.class);
+    private final AtomicLong nextSummaryNanos;
+
+    private RateLimitedConsumer(Consumer<? super Throwable> delegate, int permits, long intervalNanos) {
+        this.delegate = delegate;
+        this.intervalNanos = intervalNanos;
+        this.emissionNanos = Math.max(1L, intervalNanos / permits);
+        this.burstNanos = emissionNanos * (permits - 1);
+        this.nextSummaryNanos = new AtomicLong(System.nanoTime() + intervalNanos);
+    }
+
+    /**
+     * Create a consumer that passes at most {@code permits} failures of each
+     * kind per {@code interval} to the {@code delegate}.
+     * @param delegate Consumer of the failures that are passed on, and of
+     * the counts of the failures that are not.
+     * @param permits The number of failures of each kind passed on per
+     * {@code interval}, which is also the largest burst.  Must be at least
+     * {@code 1}.
+     * @param interval The interval, which is also the least time between
+     * the counts that are passed on by {@link #accept(java.lang.Throwable) }.
+     * Must be positive.
+     * @return A new rate limited consumer.
+     */
+    public static RateLimitedConsumer create(Consumer<? super Throwable> delegate, int permits, Duration interval) {
+        Objects.requireNonNull(delegate, "delegate required");
+        Objects.requireNonNull(interval, "interval required");
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be at least 1");
+        }
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        long intervalNanos;
+        try {
+            intervalNanos = interval.toNanos();
+        } catch (ArithmeticException ex) {
+            intervalNanos = Long.MAX_VALUE / 4;
+        }
+        return new RateLimitedConsumer(delegate, permits, Math.min(intervalNanos, Long.MAX_VALUE / 4));
+    }
+
+    /**
+     * Pass the failure to the delegate if its kind has a token, otherwise
+     * count it.  Either way, pass the counts to the delegate if the interval
+     * since they were last passed on has ended.
+     * @param failure The failure.
+     */
+    @Override
+    public void accept(Throwable failure) {
+        Objects.requireNonNull(failure, "failure required");
+        final long now = System.nanoTime();
+        if (bucket(failure).tryAcquire(now)) {
+            delegate.accept(failure);
+        }
+        long next = nextSummaryNanos.get();
+        if (now - next >= 0L && nextSummaryNanos.compareAndSet(next, now + intervalNanos)) {
+            flush();
+        }
+    }
+
+    /**
+     * Pass the counts of the failures that were not passed on to the
+     * delegate, and reset the counts.  Call this periodically, because the
+     * counts are otherwise only passed on when a failure is accepted.
+     */
+    public void flush() {
+        for (Bucket bucket : buckets.values()) {
+            bucket.flush();
+        }
+        sharedBucket.flush();
+    }
+
+    private Bucket bucket(Throwable failure) {
+        StackTraceElement[] stackTrace = failure.getStackTrace();
+        Kind kind = new Kind(failure.getClass(), stackTrace.length == 0 ? null : stackTrace[0]);
+        Bucket bucket = buckets.get(kind);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_KINDS) {
+                return sharedBucket;
+            }
+            bucket = buckets.computeIfAbsent(kind, key -> new Bucket(key.type));
+        }
+        return bucket;
+    }
+
+    /**
+     * The class and top stack frame of a failure.
+     */
+    private static final class Kind {
+        final Class<?> type;
+        final StackTraceElement topFrame;
+
+        Kind(Class<?> type, StackTraceElement topFrame) {
+            this.type = type;
+            this.topFrame = topFrame;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Kind)) {
+                return false;
+            }
+            Kind other = (Kind) obj;
+            return type == other.type && Objects.equals(topFrame, other.topFrame);
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + Objects.hashCode(topFrame);
+        }
+    }
+
+    /**
+     * The token bucket of one kind of failure, kept as the theoretical
+     * arrival time of the next failure, and the count of the failures that
+     * were not passed on.
+     */
+    private final class Bucket {
+        final Class<?> type;
+        final AtomicLong theoreticalArrivalNanos = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong omitted = new AtomicLong();
+
+        Bucket(Class<?> type) {
+            this.type = type;
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long tat = theoreticalArrivalNanos.get();
+                long start = tat == Long.MIN_VALUE || tat - now < 0L ? now : tat;
+                if (start - now > burstNanos) {
+                    omitted.incrementAndGet();
+                    return false;
+                }
+                if (theoreticalArrivalNanos.compareAndSet(tat, start + emissionNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        void flush() {
+            if (omitted.get() > 0L) {
+                long count = omitted.getAndSet(0L);
+                if (count > 0L) {
+                    delegate.accept(new SuppressionPolicy.OmittedFailures(
+                            (int) Math.min(count, Integer.MAX_VALUE), type));
+                }
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,277 @@
+package com.github.richardroda.util.closeit;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * An immutable policy for retrying a close that fails, used by
+ * {@link CloseIt0#retrying(java.lang.AutoCloseable, com.github.richardroda.util.closeit.RetryPolicy) }
+ * and {@link CloseIt1#retrying(java.lang.AutoCloseable, com.github.richardroda.util.closeit.RetryPolicy, java.util.function.Function) }.
+ * A failed close is retried when the {@code retryWhen} predicate accepts the
+ * throwable, after a backoff that starts at {@code initialBackoff} and is
+ * multiplied by {@code multiplier} after each attempt, up to
+ * {@code maxBackoff}.  Each backoff is reduced by a random fraction of up to
+ * {@code jitter}, so that many threads that fail at once do not retry at
+ * once.  The close is attempted at most {@code maxAttempts} times, and no
+ * retry is started that would end after the {@code budget}, measured from
+ * the start of the first attempt.
+ * <p>
+ * The {@link #create() } policy makes up to 3 attempts for any
+ * {@link Exception}, with a backoff of 50 milliseconds doubling up to 2
+ * seconds, a jitter of 0.5, and a budget of 10 seconds.  The {@code with}
+ * methods return a copy of the policy with one setting changed.
+ * </p>
+ * <pre><code>
+ * static final RetryPolicy LOGOUT_RETRY = RetryPolicy.create()
+ *     .withMaxAttempts(5)
+ *     .withBudget(Duration.ofSeconds(2))
+ *     .withRetryWhen(th-&gt;th instanceof SocketTimeoutException);
+ * </code></pre>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy DEFAULT = new RetryPolicy(3, Duration.ofMillis(50L), Duration.ofSeconds(2L),
+            2.0, 0.5, Duration.ofSeconds(10L), th -> th instanceof Exception);
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final Duration budget;
+    private final Predicate<? super Throwable> retryWhen;
+
+    private RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, double multiplier,
+            double jitter, Duration budget, Predicate<? super Throwable> retryWhen) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.budget = budget;
+        this.retryWhen = retryWhen;
+    }
+
+    /**
+     * @return The default policy.
+     */
+    public static RetryPolicy create() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param maxAttempts The most times the close is attempted, including
+     * the first attempt.  Must be at least {@code 1}.
+     * @return A copy of this policy with the {@code maxAttempts}.
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @param initialBackoff The backoff before the first retry.  Must not be
+     * negative.
+     * @param maxBackoff The longest backoff.  Must not be less than the
+     * {@code initialBackoff}.
+     * @return A copy of this policy with the backoffs.
+     */
+    public RetryPolicy withBackoff(Duration initialBackoff, Duration maxBackoff) {
+        Objects.requireNonNull(initialBackoff, "initialBackoff required");
+        Objects.requireNonNull(maxBackoff, "maxBackoff required");
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= initialBackoff <= maxBackoff");
+        }
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @param multiplier The factor the backoff is multiplied by after each
+     * retry.  Must be at least {@code 1.0}.
+     * @return A copy of this policy with the {@code multiplier}.
+     */
+    public RetryPolicy withMultiplier(double multiplier) {
+        if (!(multiplier >= 1.0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("multiplier must be at least 1.0");
+        }
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @param jitter The largest fraction each backoff is randomly reduced
+     * by, from {@code 0.0} for no jitter to {@code 1.0}.
+     * @return A copy of this policy with the {@code jitter}.
+     */
+    public RetryPolicy withJitter(double jitter) {
+        if (!(jitter >= 0.0 && jitter <= 1.0)) {
+            throw new IllegalArgumentException("jitter must be between 0.0 and 1.0");
+        }
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @param budget The longest time to spend on all of the attempts,
+     * including the backoffs.  Must not be negative.
+     * @return A copy of this policy with the {@code budget}.
+     */
+    public RetryPolicy withBudget(Duration budget) {
+        Objects.requireNonNull(budget, "budget required");
+        if (budget.isNegative()) {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @param retryWhen Predicate that decides if a failed close is retried,
+     * like the predicate of
+     * {@link CloseIt0#rethrowWhen(com.github.richardroda.util.closeit.CloseIt0, java.util.function.Predicate) }.
+     * @return A copy of this policy with the {@code retryWhen} predicate.
+     */
+    public RetryPolicy withRetryWhen(Predicate<? super Throwable> retryWhen) {
+        Objects.requireNonNull(retryWhen, "retryWhen required");
+        return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, budget, retryWhen);
+    }
+
+    /**
+     * @return The most times the close is attempted.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return The backoff before the first retry.
+     */
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @return The longest backoff.
+     */
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @return The factor the backoff is multiplied by after each retry.
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @return The largest fraction each backoff is randomly reduced by.
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return The longest time to spend on all of the attempts.
+     */
+    public Duration getBudget() {
+        return budget;
+    }
+
+    /**
+     * Close the {@code closeable}, and retry according to this policy when
+     * it fails.  The throwables of the earlier attempts are added to the
+     * throwable of the last attempt as suppressed exceptions.  If the
+     * calling thread is interrupted during a backoff, it stops retrying and
+     * its interrupt status is set.
+     * @param closeable The closeable to close.
+     * @throws Exception The throwable of the last attempt, when the close
+     * does not succeed.
+     */
+    void close(AutoCloseable closeable) throws Exception {
+        final long startNanos = System.nanoTime();
+        final long budgetNanos = saturatedNanos(budget);
+        double backoffNanos = saturatedNanos(initialBackoff);
+        Throwable[] failures = null;
+        for (int attempt = 1; ; attempt++) {
+            Throwable failure;
+            try {
+                closeable.close();
+                return;
+            } catch (Throwable th) {
+                failure = th;
+            }
+            if (failures == null) {
+                failures = new Throwable[maxAttempts];
+            }
+            failures[attempt - 1] = failure;
+            long sleepNanos = (long) (Math.min(backoffNanos, saturatedNanos(maxBackoff))
+                    * (1.0 - jitter * ThreadLocalRandom.current().nextDouble()));
+            if (attempt >= maxAttempts || !retryWhen.test(failure)
+                    || sleepNanos > budgetNanos - (System.nanoTime() - startNanos)
+                    || !backoff(sleepNanos)) {
+                throw CloseItHelper.hideException(SuppressionPolicy.defaultPolicy()
+                        .suppress(failure, Arrays.asList(failures).subList(0, attempt - 1)));
+            }
+            backoffNanos *= multiplier;
+        }
+    }
+
+    private static boolean backoff(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", initialBackoff=" + initialBackoff
+                + ", maxBackoff=" + maxBackoff + ", multiplier=" + multiplier + ", jitter=" + jitter
+                + ", budget=" + budget + '}';
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
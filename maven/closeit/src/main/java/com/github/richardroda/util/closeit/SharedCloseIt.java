@@ -0,0 +1,235 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
+
+/**
+ * A reference counted {@link AutoCloseable} that is shared by any number of
+ * holders, and closed exactly once, when the last holder releases it.
+ * <p>
+ * The thread that creates the shared resource holds the first reference,
+ * which it releases by closing the {@code SharedCloseIt}.  Every other
+ * holder gets its own reference with {@link #retain() }, which returns a
+ * {@link Handle} that releases the reference when it is closed, so that a
+ * try-with-resources construct keeps the resource open while it is used.
+ * The count is kept with compare and set operations, without locks, so many
+ * threads may retain and release a resource that is read concurrently, such
+ * as a memory mapped index file or a compiled model.  Each handle, and the
+ * {@code SharedCloseIt} itself, releases its reference at most once, so
+ * closing a handle twice does not close the resource early.
+ * </p>
+ * <pre><code>
+ * SharedCloseIt&lt;MappedIndex&gt; index = SharedCloseIt.create(MappedIndex.open(path));
+ * ...
+ * try (SharedCloseIt.Handle&lt;MappedIndex&gt; handle = index.retain()) {
+ *     return handle.get().lookup(key);
+ * }
+ * ...
+ * index.close(); // The index is closed when the last lookup releases it.
+ * </code></pre>
+ * <p>
+ * The resource is closed by the thread that releases the last reference,
+ * with a {@link CloseIt0} that a {@code policy} makes from it when the
+ * shared resource is created, such as
+ * {@link CloseIt0#wrapAllException(java.lang.AutoCloseable) } or
+ * {@link CloseIt0#consumeAllException(java.lang.AutoCloseable, java.util.function.Consumer) },
+ * so that any exception the close throws is processed the same way it would
+ * be processed if the resource were not shared.
+ * </p>
+ *
+ * @param <T> Type of the shared resource.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class SharedCloseIt<T extends AutoCloseable> implements CloseIt0 {
+
+    // A class literal is always raw, so the updaters of a generic class are
+    // declared with the raw type.  They only touch the int fields.
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SharedCloseIt> COUNT
+            = AtomicIntegerFieldUpdater.newUpdater(SharedCloseIt.class, "count");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SharedCloseIt> OWNER_RELEASED
+            = AtomicIntegerFieldUpdater.newUpdater(SharedCloseIt.class, "ownerReleased");
+
+    private final T resource;
+    private final CloseIt0 closer;
+    private volatile int count = 1;
+    private volatile int ownerReleased;
+
+    private SharedCloseIt(T resource, CloseIt0 closer) {
+        this.resource = resource;
+        this.closer = closer;
+    }
+
+    /**
+     * Share a resource which is closed with
+     * {@link CloseIt0#wrapAllException(java.lang.AutoCloseable) } when the
+     * last reference is released.
+     * @param <T> Type of the shared resource.
+     * @param resource Resource to share.
+     * @return A shared resource with one reference, which is released by
+     * closing it.
+     */
+    public static <T extends AutoCloseable> SharedCloseIt<T> create(T resource) {
+        return create(resource, CloseIt0::wrapAllException);
+    }
+
+    /**
+     * Share a resource which is closed with the {@code CloseIt0} that a
+     * {@code policy} makes from it when the last reference is released.
+     * @param <T> Type of the shared resource.
+     * @param resource Resource to share.
+     * @param policy Function that decorates the resource with the processing
+     * for its exceptions, such as {@code CloseIt0::wrapAllException}.  It is
+     * applied once, when the shared resource is created.
+     * @return A shared resource with one reference, which is released by
+     * closing it.
+     */
+    public static <T extends AutoCloseable> SharedCloseIt<T> create(T resource,
+            Function<? super AutoCloseable, ? extends CloseIt0> policy) {
+        Objects.requireNonNull(resource, "resource required");
+        Objects.requireNonNull(policy, "policy required");
+        CloseIt0 closer = Objects.requireNonNull(policy.apply(resource), "policy must not return null");
+        return new SharedCloseIt<>(resource, closer);
+    }
+
+    /**
+     * Add a reference to the shared resource.
+     * @return A handle that releases the reference when it is closed.
+     * @throws IllegalStateException When the last reference was already
+     * released, so that the resource is closed.
+     */
+    public Handle<T> retain() {
+        Handle<T> handle = tryRetain();
+        if (handle == null) {
+            throw new IllegalStateException("shared resource is closed");
+        }
+        return handle;
+    }
+
+    /**
+     * Add a reference to the shared resource, unless the last reference was
+     * already released.
+     * @return A handle that releases the reference when it is closed, or
+     * {@code null} if the resource is closed.
+     */
+    public Handle<T> tryRetain() {
+        for (;;) {
+            int current = count;
+            if (current == 0) {
+                return null;
+            }
+            if (current == Integer.MAX_VALUE) {
+                throw new IllegalStateException("too many references");
+            }
+            if (COUNT.compareAndSet(this, current, current + 1)) {
+                return new Handle<>(this);
+            }
+        }
+    }
+
+    /**
+     * @return The number of references that are not released, which is
+     * {@code 0} once the resource is closed.
+     */
+    public int refCount() {
+        return count;
+    }
+
+    /**
+     * @return {@code true} if the last reference was released, so that the
+     * resource is closed.
+     */
+    public boolean isClosed() {
+        return count == 0;
+    }
+
+    /**
+     * Release the reference of the thread that created the shared resource,
+     * and close the resource if that is the last reference.  Does nothing if
+     * that reference was already released.
+     */
+    @Override
+    public void closeIt() {
+        if (OWNER_RELEASED.compareAndSet(this, 0, 1)) {
+            release();
+        }
+    }
+
+    private void release() {
+        if (COUNT.decrementAndGet(this) == 0) {
+            closer.closeIt();
+        }
+    }
+
+    /**
+     * A reference to a shared resource.  Closing the handle releases the
+     * reference, and closes the resource when it is the last reference.
+     *
+     * @param <T> Type of the shared resource.
+     */
+    public static final class Handle<T extends AutoCloseable> implements CloseIt0 {
+        @SuppressWarnings("rawtypes") // Raw like the class literal, see COUNT.
+        private static final AtomicIntegerFieldUpdater<Handle> RELEASED
+                = AtomicIntegerFieldUpdater.newUpdater(Handle.class, "released");
+
+        private final SharedCloseIt<T> shared;
+        private volatile int released;
+
+        private Handle(SharedCloseIt<T> shared) {
+            this.shared = shared;
+        }
+
+        /**
+         * @return The shared resource.
+         * @throws IllegalStateException When the handle is closed.
+         */
+        public T get() {
+            if (released != 0) {
+                throw new IllegalStateException("handle is closed");
+            }
+            return shared.resource;
+        }
+
+        /**
+         * Release the reference.  Does nothing if the handle is already
+         * closed.
+         */
+        @Override
+        public void closeIt() {
+            if (RELEASED.compareAndSet(this, 0, 1)) {
+                shared.release();
+            }
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
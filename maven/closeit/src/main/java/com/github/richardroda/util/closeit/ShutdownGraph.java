@@ -0,0 +1,471 @@
+package com.github.richardroda.util.closeit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Closes the components of an application in parallel, in an order that
+ * respects the dependencies between them.  Each component is added as a
+ * node with the nodes it closes after, which must already be in the graph,
+ * so the graph can not have a cycle.  Closing the graph closes every node
+ * that does not close after another node at once, each on its own closer
+ * thread, and closes a node as soon as every node it closes after is
+ * done, so a shutdown takes as long as its longest chain of dependencies
+ * instead of the sum of every close.
+ * <pre><code>
+ * ShutdownGraph&lt;RuntimeException&gt; shutdown = ShutdownGraph.create(Duration.ofSeconds(25), Duration.ofSeconds(5));
+ * ShutdownGraph.Node db = shutdown.add("database", dataSource::close);
+ * ShutdownGraph.Node cache = shutdown.add("cache", cache::close);
+ * ShutdownGraph.Node orders = shutdown.add("orders", orderService, db, cache);
+ * shutdown.add("http", httpServer::stop, orders);
+ * shutdown.registerShutdownHook(exception-&gt;logger.log(Level.SEVERE, exception.getMessage(), exception));
+ * </code></pre>
+ * <p>
+ * A node that does not close within the {@code nodeTimeout} is abandoned
+ * to its closer thread, like
+ * {@link CloseIt0#withTimeout(java.lang.AutoCloseable, java.time.Duration) },
+ * and the nodes that close after it are closed anyway.  Once the
+ * {@code deadline} of the whole shutdown passes, the nodes that are still
+ * closing are abandoned and the nodes that have not started are skipped.
+ * A timeout or a skip is reported as a {@link TimeoutException}.
+ * </p>
+ * <p>
+ * The first failure, in the order the nodes were added, is mapped with the
+ * {@code exceptionMapper} of the graph, which is
+ * {@code NotClosedException::new} for a graph created with
+ * {@link #create(java.time.Duration, java.time.Duration) }, and the failures
+ * after it are added to the mapped exception as suppressed exceptions
+ * according to the {@link SuppressionPolicy#defaultPolicy() }.  The latency
+ * and outcome of every node are available from {@link #results() } once the
+ * graph is closed.  A graph is closed once; closing it again does nothing.
+ * </p>
+ *
+ * @param <E> Exception thrown by the close method when a node fails to
+ * close.
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class ShutdownGraph<E extends Exception> implements CloseIt1<E> {
+
+    /**
+     * The outcome of closing a node.
+     */
+    public enum Outcome {
+        /** The node closed within its timeout. */
+        CLOSED,
+        /** The node threw a throwable within its timeout. */
+        FAILED,
+        /** The node did not close within its timeout or the deadline. */
+        TIMED_OUT,
+        /** The node was not started before the deadline passed. */
+        SKIPPED
+    }
+
+    private final Duration deadline;
+    private final Duration nodeTimeout;
+    private final Function<? super Throwable, ? extends E> exceptionMapper;
+    private final List<Node> nodes = new ArrayList<>();
+    private List<Result> results;
+    private boolean closed;
+
+    private ShutdownGraph(Duration deadline, Duration nodeTimeout,
+            Function<? super Throwable, ? extends E> exceptionMapper) {
+        this.deadline = deadline;
+        this.nodeTimeout = nodeTimeout;
+        this.exceptionMapper = exceptionMapper;
+    }
+
+    /**
+     * Create a graph which throws a {@link NotClosedException} when any node
+     * fails to close.
+     * @param deadline The longest time the whole shutdown may take.
+     * @param nodeTimeout The longest time to wait for each node to close.
+     * @return A new, empty graph.
+     */
+    public static ShutdownGraph<RuntimeException> create(Duration deadline, Duration nodeTimeout) {
+        return create(deadline, nodeTimeout, NotClosedException::new);
+    }
+
+    /**
+     * Create a graph which uses an {@code exceptionMapper} to map the first
+     * failure to the exception type of the graph.
+     * @param <E> Exception thrown by the close method.
+     * @param deadline The longest time the whole shutdown may take.
+     * @param nodeTimeout The longest time to wait for each node to close.
+     * @param exceptionMapper Function to map a throwable to the exception
+     * type of the graph.  A {@code null} return value means to swallow
+     * (ignore) the throwable, in which case the next failure, if any, is
+     * mapped instead.
+     * @return A new, empty graph.
+     */
+    public static <E extends Exception> ShutdownGraph<E> create(Duration deadline, Duration nodeTimeout,
+            Function<? super Throwable, ? extends E> exceptionMapper) {
+        Objects.requireNonNull(deadline, "deadline required");
+        Objects.requireNonNull(nodeTimeout, "nodeTimeout required");
+        Objects.requireNonNull(exceptionMapper, "exceptionMapper required");
+        if (deadline.isNegative() || nodeTimeout.isNegative()) {
+            throw new IllegalArgumentException("deadline and nodeTimeout must not be negative");
+        }
+        return new ShutdownGraph<>(deadline, nodeTimeout, exceptionMapper);
+    }
+
+    /**
+     * Add a component to the graph.
+     * @param name Name of the component, which is used in the results and
+     * in the message of a {@link TimeoutException}.
+     * @param component The component, such as a {@link CloseIt0} or
+     * {@link CloseIt1} lambda.
+     * @param closesAfter The nodes that must be done closing before this
+     * component is closed.  They must have been added to this graph.
+     * @return The node of the component.
+     * @throws IllegalStateException When the graph is closed.
+     */
+    public synchronized Node add(String name, AutoCloseable component, Node... closesAfter) {
+        Objects.requireNonNull(name, "name required");
+        Objects.requireNonNull(component, "component required");
+        Objects.requireNonNull(closesAfter, "closesAfter required");
+        if (closed) {
+            throw new IllegalStateException("graph is closed");
+        }
+        Node node = new Node(this, nodes.size(), name, component);
+        for (Node before : closesAfter) {
+            Objects.requireNonNull(before, "closesAfter must not contain null");
+            if (before.graph != this) {
+                throw new IllegalArgumentException(before.name + " is not in this graph");
+            }
+            if (!before.closedBefore.contains(node)) {
+                before.closedBefore.add(node);
+                node.dependencies++;
+            }
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Register a JVM shutdown hook that closes the graph.  The hook does
+     * nothing if the graph is closed before the JVM shuts down.
+     * @param exConsumer Consumer of the exception thrown when the graph
+     * fails to close.
+     * @return The hook, which may be removed with
+     * {@link Runtime#removeShutdownHook(java.lang.Thread) }.
+     */
+    public Thread registerShutdownHook(Consumer<? super Exception> exConsumer) {
+        Objects.requireNonNull(exConsumer, "exConsumer required");
+        Thread hook = new Thread(CloseIt0.consumeAllException(this, exConsumer)::closeIt, "closeit-shutdown-graph");
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    /**
+     * @return The result of every node, in the order the nodes were added,
+     * or an empty list if the graph is not closed.
+     */
+    public synchronized List<Result> results() {
+        return results == null ? Collections.<Result>emptyList() : results;
+    }
+
+    /**
+     * Close every node of the graph, and wait until every node is done, or
+     * the deadline passes.  Does nothing if the graph is already closed.
+     * @throws E When a node fails to close, times out, or is skipped, and
+     * the {@code exceptionMapper} maps the failure to an exception.
+     */
+    @Override
+    public void closeIt() throws E {
+        final List<Node> closing;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closing = new ArrayList<>(nodes);
+        }
+        Result[] closedResults = new Coordinator(closing).run();
+        Throwable[] failures = new Throwable[closedResults.length];
+        for (int i = 0; i < closedResults.length; i++) {
+            failures[i] = closedResults[i].failure;
+        }
+        synchronized (this) {
+            results = Collections.unmodifiableList(Arrays.asList(closedResults));
+        }
+        E mapped = CloseItHelper.mergeFailures(failures, exceptionMapper);
+        if (mapped != null) {
+            throw mapped;
+        }
+    }
+
+    /**
+     * Closes the nodes from the thread that closes the graph.  The closer
+     * threads only close their node and report it on the completion queue,
+     * so all of the scheduling state is confined to the closing thread.
+     */
+    private final class Coordinator {
+        private final List<Node> closing;
+        private final Result[] results;
+        private final int[] waitingFor;
+        private final long[] startNanos;
+        private final List<Node> running = new ArrayList<>();
+        private final BlockingQueue<Closing> completions = new LinkedBlockingQueue<>();
+        private final Executor executor = CloseItHelper.closerExecutor();
+        private final long beganNanos;
+        private final long deadlineNanos;
+        private final long timeoutNanos;
+        private int done;
+        private boolean interrupted;
+
+        Coordinator(List<Node> closing) {
+            this.closing = closing;
+            this.results = new Result[closing.size()];
+            this.waitingFor = new int[closing.size()];
+            this.startNanos = new long[closing.size()];
+            this.timeoutNanos = toNanos(nodeTimeout);
+            this.deadlineNanos = toNanos(deadline);
+            this.beganNanos = System.nanoTime();
+        }
+
+        Result[] run() {
+            interrupted = Thread.interrupted();
+            for (Node node : closing) {
+                waitingFor[node.index] = node.dependencies;
+            }
+            for (Node node : closing) {
+                if (waitingFor[node.index] == 0) {
+                    start(node);
+                }
+            }
+            while (done < results.length) {
+                // Wait times are kept as durations, not as nanoTime instants,
+                // so that a saturated timeout cannot overflow into the past.
+                long now = System.nanoTime();
+                long waitNanos = deadlineNanos - (now - beganNanos);
+                for (Node node : running) {
+                    waitNanos = Math.min(waitNanos, timeoutNanos - (now - startNanos[node.index]));
+                }
+                Closing completion = null;
+                if (waitNanos > 0 && !interrupted) {
+                    try {
+                        completion = completions.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                if (completion != null) {
+                    Node node = completion.node;
+                    if (results[node.index] == null) {
+                        finish(node, completion.failure == null ? Outcome.CLOSED : Outcome.FAILED,
+                                completion.nanos, completion.failure);
+                    }
+                    continue;
+                }
+                now = System.nanoTime();
+                boolean pastDeadline = pastDeadline(now);
+                for (Node node : new ArrayList<>(running)) {
+                    long elapsed = now - startNanos[node.index];
+                    if (pastDeadline || elapsed >= timeoutNanos) {
+                        finish(node, Outcome.TIMED_OUT, elapsed, new TimeoutException(node.name
+                                + " did not close within " + (pastDeadline ? "the deadline" : "the node timeout")));
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return results;
+        }
+
+        private void start(Node node) {
+            long now = System.nanoTime();
+            if (pastDeadline(now)) {
+                finish(node, Outcome.SKIPPED, 0L, new TimeoutException(node.name
+                        + " was not closed before the deadline"));
+                return;
+            }
+            startNanos[node.index] = now;
+            running.add(node);
+            final Closing closing = new Closing(node);
+            try {
+                executor.execute(closing);
+            } catch (RuntimeException ex) {
+                closing.run();
+            }
+        }
+
+        /**
+         * An interrupt of the closing thread ends the shutdown like the
+         * deadline does.  The interrupt status is cleared while the closing
+         * thread waits, and restored when the shutdown ends.
+         */
+        private boolean pastDeadline(long now) {
+            return interrupted || now - beganNanos >= deadlineNanos;
+        }
+
+        private void finish(Node node, Outcome outcome, long nanos, Throwable failure) {
+            running.remove(node);
+            results[node.index] = new Result(node.name, outcome, nanos, failure);
+            done++;
+            for (Node after : node.closedBefore) {
+                if (--waitingFor[after.index] == 0) {
+                    start(after);
+                }
+            }
+        }
+
+        /**
+         * Closes one node on a closer thread, and reports it.
+         */
+        private final class Closing implements Runnable {
+            final Node node;
+            long nanos;
+            Throwable failure;
+
+            Closing(Node node) {
+                this.node = node;
+            }
+
+            @Override
+            public void run() {
+                final long start = System.nanoTime();
+                try {
+                    node.component.close();
+                } catch (Throwable th) {
+                    failure = th;
+                }
+                nanos = System.nanoTime() - start;
+                completions.add(this);
+            }
+        }
+    }
+
+    private static long toNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A component in a shutdown graph.
+     */
+    public static final class Node {
+        private final ShutdownGraph<?> graph;
+        private final int index;
+        private final String name;
+        private final AutoCloseable component;
+        private final List<Node> closedBefore = new ArrayList<>();
+        private int dependencies;
+
+        private Node(ShutdownGraph<?> graph, int index, String name, AutoCloseable component) {
+            this.graph = graph;
+            this.index = index;
+            this.name = name;
+            this.component = component;
+        }
+
+        /**
+         * @return The name of the component.
+         */
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The outcome of closing one node.
+     */
+    public static final class Result {
+        private final String name;
+        private final Outcome outcome;
+        private final long nanos;
+        private final Throwable failure;
+
+        private Result(String name, Outcome outcome, long nanos, Throwable failure) {
+            this.name = name;
+            this.outcome = outcome;
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        /**
+         * @return The name of the component.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The outcome of the close.
+         */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return The nanoseconds the close took, or waited before it was
+         * abandoned, which is {@code 0} for a node that was skipped.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return The throwable thrown by the close, or the
+         * {@link TimeoutException} of a node that timed out or was skipped,
+         * or {@code null} when the node closed.
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return name + ' ' + outcome + ' ' + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms"
+                    + (failure == null ? "" : " " + failure);
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
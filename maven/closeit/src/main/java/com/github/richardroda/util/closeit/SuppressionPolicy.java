@@ -0,0 +1,274 @@
+package com.github.richardroda.util.closeit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decides how the failures after the first are added to the exception thrown
+ * by a close of many resources, such as {@link CloseItScope} and
+ * {@link CloseIt0#closeAllParallel(java.util.Collection, java.util.concurrent.Executor) }.
+ * The {@link #unbounded() } policy adds every failure as a suppressed
+ * exception, like a try-with-resources construct does.  When many resources
+ * fail at once, that keeps every failure and its cause chain in memory and
+ * in the logs, so the {@link #bounded(int) } policy adds at most
+ * {@code maxSuppressed} distinct failures, where failures with the same
+ * class, message, and top stack frame are the same failure.  The failures it
+ * does not add are counted by class, and each count is added as a suppressed
+ * {@link OmittedFailures} exception with a message like
+ * {@code "12 further failures of type java.io.IOException"}.
+ * <p>
+ * The {@link #defaultPolicy() } is used when no policy is given.  It is the
+ * bounded policy when the system property {@value #MAX_SUPPRESSED_PROPERTY}
+ * is set to the maximum number of suppressed exceptions, and the unbounded
+ * policy otherwise.  The property is read once, when this class is
+ * initialized.
+ * </p>
+ *
+ * @author Richard Roda
+ * @since 1.8
+ */
+public final class SuppressionPolicy {
+
+    /**
+     * The system property that sets the maximum number of suppressed
+     * exceptions of the default policy.
+     */
+    public static final String MAX_SUPPRESSED_PROPERTY
+            = "com.github.richardroda.util.closeit.SuppressionPolicy.maxSuppressed";
+
+    private static final SuppressionPolicy UNBOUNDED = new SuppressionPolicy(-1);
+
+    private static final SuppressionPolicy DEFAULT = readDefault();
+
+    private final int maxSuppressed;
+
+    private SuppressionPolicy(int maxSuppressed) {
+        this.maxSuppressed = maxSuppressed;
+    }
+
+    /**
+     * @return A policy that adds every failure as a suppressed exception.
+     */
+    public static SuppressionPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * @param maxSuppressed The maximum number of distinct failures to add as
+     * suppressed exceptions.  Must not be negative.
+     * @return A policy that adds at most {@code maxSuppressed} distinct
+     * failures as suppressed exceptions, and counts the rest.
+     */
+    public static SuppressionPolicy bounded(int maxSuppressed) {
+        if (maxSuppressed < 0) {
+            throw new IllegalArgumentException("maxSuppressed must not be negative");
+        }
+        return new SuppressionPolicy(maxSuppressed);
+    }
+
+    /**
+     * @return The policy set by the {@value #MAX_SUPPRESSED_PROPERTY} system
+     * property, or the unbounded policy when it is not set.
+     */
+    public static SuppressionPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Add the {@code failures} to the {@code primary} exception according to
+     * this policy.  This is useful for an application that closes many
+     * resources itself.
+     * @param <X> Type of the primary exception.
+     * @param primary The exception that is thrown.
+     * @param failures The failures to add to it.  {@code null} elements and
+     * the {@code primary} exception itself are skipped.
+     * @return The {@code primary} exception.
+     */
+    public <X extends Throwable> X suppress(X primary, Iterable<? extends Throwable> failures) {
+        Objects.requireNonNull(primary, "primary required");
+        Objects.requireNonNull(failures, "failures required");
+        Suppressor suppressor = start(primary);
+        for (Throwable failure : failures) {
+            suppressor.add(failure);
+        }
+        suppressor.finish();
+        return primary;
+    }
+
+    /**
+     * Start adding failures to the {@code primary} exception.
+     * @param primary The exception that is thrown.
+     * @return A suppressor which adds failures to the {@code primary}
+     * exception until it is finished.
+     */
+    Suppressor start(Throwable primary) {
+        return new Suppressor(primary, maxSuppressed);
+    }
+
+    @Override
+    public String toString() {
+        return maxSuppressed < 0 ? "SuppressionPolicy.unbounded()"
+                : "SuppressionPolicy.bounded(" + maxSuppressed + ")";
+    }
+
+    private static SuppressionPolicy readDefault() {
+        String maxSuppressed;
+        try {
+            maxSuppressed = System.getProperty(MAX_SUPPRESSED_PROPERTY);
+        } catch (SecurityException ex) {
+            maxSuppressed = null;
+        }
+        if (maxSuppressed == null) {
+            return UNBOUNDED;
+        }
+        try {
+            return bounded(Integer.parseInt(maxSuppressed.trim()));
+        } catch (IllegalArgumentException ex) {
+            return UNBOUNDED;
+        }
+    }
+
+    /**
+     * Adds failures to a primary exception for one close.  It is not thread
+     * safe.
+     */
+    static final class Suppressor {
+        private final Throwable primary;
+        private final int maxSuppressed;
+        private List<Throwable> added;
+        private Map<Class<?>, int[]> omitted;
+
+        Suppressor(Throwable primary, int maxSuppressed) {
+            this.primary = primary;
+            this.maxSuppressed = maxSuppressed;
+        }
+
+        /**
+         * @param failure A failure to add to the primary exception, which is
+         * skipped when it is {@code null} or the primary exception.
+         */
+        void add(Throwable failure) {
+            if (failure == null || failure == primary) {
+                return;
+            }
+            if (maxSuppressed < 0) {
+                primary.addSuppressed(failure);
+                return;
+            }
+            if (added == null) {
+                added = new ArrayList<>();
+            }
+            if (added.size() < maxSuppressed && !containsSame(failure)) {
+                added.add(failure);
+                primary.addSuppressed(failure);
+                return;
+            }
+            if (omitted == null) {
+                omitted = new LinkedHashMap<>();
+            }
+            Class<?> type = failure.getClass();
+            if (!omitted.containsKey(type) && omitted.size() >= Math.max(maxSuppressed, 1)) {
+                // Past the limit, the failures of further types are counted together.
+                type = Throwable.class;
+            }
+            omitted.computeIfAbsent(type, key -> new int[1])[0]++;
+        }
+
+        /**
+         * Add the counts of the omitted failures to the primary exception.
+         */
+        void finish() {
+            if (omitted != null) {
+                for (Map.Entry<Class<?>, int[]> entry : omitted.entrySet()) {
+                    primary.addSuppressed(new OmittedFailures(entry.getValue()[0], entry.getKey()));
+                }
+                omitted = null;
+            }
+        }
+
+        private boolean containsSame(Throwable failure) {
+            for (Throwable other : added) {
+                if (other.getClass() == failure.getClass()
+                        && Objects.equals(other.getMessage(), failure.getMessage())
+                        && Objects.equals(topFrame(other), topFrame(failure))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static StackTraceElement topFrame(Throwable th) {
+            StackTraceElement[] stackTrace = th.getStackTrace();
+            return stackTrace.length == 0 ? null : stackTrace[0];
+        }
+    }
+
+    /**
+     * A suppressed exception that counts the failures of one type that a
+     * bounded {@link SuppressionPolicy} did not add, or that a
+     * {@link RateLimitedConsumer} did not pass on.  It has no stack trace and
+     * no cause.
+     */
+    public static final class OmittedFailures extends Exception {
+        private final int count;
+        private final Class<?> type;
+
+        /**
+         * Package private constructor guarantees this class is only created
+         * by this library.
+         * @param count The number of failures that were not added.
+         * @param type The class of the failures.
+         */
+        OmittedFailures(int count, Class<?> type) {
+            super(count + " further failure" + (count == 1 ? "" : "s") + " of type " + type.getName(),
+                    null, false, false);
+            this.count = count;
+            this.type = type;
+        }
+
+        /**
+         * @return The number of failures that were not added.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return The class of the failures, which is {@link Throwable} for
+         * the failures of every type past the limit of the policy or consumer.
+         */
+        public Class<?> getType() {
+            return type;
+        }
+    }
+}
+/*
+BSD 2-Clause License
+
+Copyright (c) 2018, Richard Roda
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+* Redistributions of source code must retain the above copyright notice, this
+  list of conditions and the following disclaimer.
+
+* Redistributions in binary form must reproduce the above copyright notice,
+  this list of conditions and the following disclaimer in the documentation
+  and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
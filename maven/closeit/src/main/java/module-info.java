@@ -8,4 +8,9 @@
  */
 module com.github.richardroda.util.closeit {
     exports com.github.richardroda.util.closeit;
+    /**
+     * CloseItBuffers releases direct buffers with sun.misc.Unsafe when it is
+     * available, and reports that release is unsupported when it is not.
+     */
+    requires static jdk.unsupported;
 }
\ No newline at end of file
@@ -0,0 +1,216 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.AsyncExceptionDispatcher;
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.SuppressionPolicy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestAsyncExceptionDispatcher {
+
+    final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    @AfterMethod public void clearFailures() {
+        failures.clear();
+    }
+
+    /**
+     * Create a delegate that blocks the dispatcher thread on the first
+     * failure until the returned latch is released.
+     */
+    Consumer<Throwable> blockingDelegate(CountDownLatch started, CountDownLatch release) {
+        return th -> {
+            if (started.getCount() > 0) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            failures.add(th);
+        };
+    }
+
+    @Test
+    public void deliversOnDispatcherThread() throws Exception {
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(th -> {
+            threadName.set(Thread.currentThread().getName());
+            failures.add(th);
+            delivered.countDown();
+        }, 16, AsyncExceptionDispatcher.Overflow.DROP_OLDEST)) {
+            try (CloseIt0 it = CloseIt0.consumeAllException(() -> {throw new IOException("io");}, dispatcher)) {
+            }
+            Assert.assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertTrue(failures.get(0) instanceof IOException);
+        Assert.assertTrue(threadName.get().startsWith("closeit-exception-dispatcher-"));
+    }
+
+    @Test
+    public void rethrowAcceptsDispatcher() {
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(failures::add, 16,
+                AsyncExceptionDispatcher.Overflow.DROP_NEWEST);
+        RuntimeException thrown = new IllegalStateException("closed");
+        try {
+            try (CloseIt0 it = CloseIt0.rethrow(() -> {throw thrown;}, dispatcher)) {
+            }
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            Assert.assertSame(ex, thrown);
+        }
+        dispatcher.close();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertSame(failures.get(0), thrown);
+    }
+
+    @Test
+    public void closeDeliversEveryQueuedFailure() {
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(failures::add, 4096,
+                AsyncExceptionDispatcher.Overflow.DROP_NEWEST);
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.accept(new IOException(Integer.toString(i)));
+        }
+        dispatcher.close();
+        Assert.assertEquals(failures.size(), 1000);
+        Assert.assertEquals(failures.get(999).getMessage(), "999");
+        Assert.assertEquals(dispatcher.dropped(), 0L);
+        Assert.assertEquals(dispatcher.pending(), 0);
+    }
+
+    @Test
+    public void dropOldestKeepsNewest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(blockingDelegate(started, release), 2,
+                AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+        dispatcher.accept(new IOException("blocker"));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            dispatcher.accept(new IOException(Integer.toString(i)));
+        }
+        Assert.assertEquals(dispatcher.dropped(), 3L);
+        release.countDown();
+        dispatcher.close();
+        Assert.assertEquals(failures.size(), 4);
+        Assert.assertEquals(failures.get(1).getMessage(), "3");
+        Assert.assertEquals(failures.get(2).getMessage(), "4");
+        SuppressionPolicy.OmittedFailures omitted = (SuppressionPolicy.OmittedFailures) failures.get(3);
+        Assert.assertEquals(omitted.getCount(), 3);
+    }
+
+    @Test
+    public void dropNewestKeepsOldest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(blockingDelegate(started, release), 2,
+                AsyncExceptionDispatcher.Overflow.DROP_NEWEST);
+        dispatcher.accept(new IOException("blocker"));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            dispatcher.accept(new IOException(Integer.toString(i)));
+        }
+        Assert.assertEquals(dispatcher.dropped(), 3L);
+        release.countDown();
+        dispatcher.close();
+        Assert.assertEquals(failures.get(1).getMessage(), "0");
+        Assert.assertEquals(failures.get(2).getMessage(), "1");
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) failures.get(3)).getCount(), 3);
+    }
+
+    @Test
+    public void callInlineLosesNothing() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(blockingDelegate(started, release), 2,
+                AsyncExceptionDispatcher.Overflow.CALL_INLINE);
+        dispatcher.accept(new IOException("blocker"));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            dispatcher.accept(new IOException(Integer.toString(i)));
+        }
+        // The three that did not fit were delivered on this thread.
+        Assert.assertEquals(failures.size(), 3);
+        release.countDown();
+        dispatcher.close();
+        Assert.assertEquals(failures.size(), 6);
+        Assert.assertEquals(dispatcher.dropped(), 0L);
+    }
+
+    @Test
+    public void acceptAfterCloseDeliversInline() {
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(failures::add, 16,
+                AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+        dispatcher.close();
+        dispatcher.accept(new IOException("late"));
+        Assert.assertEquals(failures.size(), 1);
+    }
+
+    @Test
+    public void acceptAfterCloseWaitsForBatch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(blockingDelegate(started, release), 16,
+                AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+        dispatcher.accept(new IOException("blocker"));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread closer = new Thread(dispatcher::close);
+        closer.start();
+        // The dispatcher is closed, but its thread is still in the delegate.
+        while (closer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        Thread late = new Thread(() -> dispatcher.accept(new IOException("late")));
+        late.start();
+        late.join(200);
+        Assert.assertTrue(failures.isEmpty());
+        release.countDown();
+        late.join();
+        closer.join();
+        Assert.assertEquals(failures.size(), 2);
+        Assert.assertEquals(failures.get(0).getMessage(), "blocker");
+        Assert.assertEquals(failures.get(1).getMessage(), "late");
+    }
+
+    @Test
+    public void failingDelegateIsIgnored() {
+        AsyncExceptionDispatcher dispatcher = AsyncExceptionDispatcher.create(th -> {
+            failures.add(th);
+            throw new IllegalStateException("delegate");
+        }, 16, AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+        dispatcher.accept(new IOException("1"));
+        dispatcher.accept(new IOException("2"));
+        dispatcher.close();
+        Assert.assertEquals(failures.size(), 2);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void nullDelegate() {
+        AsyncExceptionDispatcher.create(null, 16, AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badCapacity() {
+        AsyncExceptionDispatcher.create(failures::add, 0, AsyncExceptionDispatcher.Overflow.DROP_OLDEST);
+    }
+}
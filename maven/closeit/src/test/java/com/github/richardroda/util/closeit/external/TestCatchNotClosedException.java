@@ -8,6 +8,7 @@ package com.github.richardroda.util.closeit.external;
 import com.github.richardroda.util.closeit.CloseIt0;
 import com.github.richardroda.util.closeit.NotClosedException;
 import java.util.logging.Logger;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 /**
@@ -44,5 +45,20 @@ public class TestCatchNotClosedException extends BaseTest {
             }
         }
 
+        @Test
+        public void testStackTraceFilledInByDefault() {
+            try (CloseIt0 it = CloseIt0.wrapException(this::closeThrowChecked)) {
+                
+            } catch (NotClosedException ex) {
+                Assert.assertNotNull(ex.getCause());
+                StackTraceElement[] stackTrace = ex.getStackTrace();
+                Assert.assertTrue(stackTrace.length > 0);
+                Assert.assertNotEquals(stackTrace[0].getMethodName(), "<init>");
+                Assert.assertNotEquals(stackTrace[0].getMethodName(), "fillInStackTrace");
+                return;
+            }
+            Assert.fail("NotClosedException expected");
+        }
+
 
 }
@@ -0,0 +1,169 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseIt2;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseAllParallel {
+
+    static final int RESOURCES = 8;
+
+    ExecutorService executor;
+    ConcurrentLinkedQueue<Integer> closed;
+    List<Throwable> consumed;
+
+    @BeforeClass public void startExecutor() {
+        executor = Executors.newFixedThreadPool(RESOURCES);
+    }
+
+    @AfterClass public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @BeforeMethod public void reset() {
+        closed = new ConcurrentLinkedQueue<>();
+        consumed = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    AutoCloseable resource(int id, Exception ex) {
+        return () -> {
+            closed.add(id);
+            if (ex != null) {
+                throw ex;
+            }
+        };
+    }
+
+    @Test
+    public void closesConcurrently() {
+        CyclicBarrier allClosing = new CyclicBarrier(RESOURCES);
+        List<AutoCloseable> resources = new ArrayList<>();
+        for (int i = 0; i < RESOURCES; i++) {
+            final int id = i;
+            resources.add(() -> {
+                // Every close must be running at the same time to pass the barrier.
+                allClosing.await(10, TimeUnit.SECONDS);
+                closed.add(id);
+            });
+        }
+        CloseIt0.closeAllParallel(resources, executor);
+        Assert.assertEquals(closed.size(), RESOURCES);
+    }
+
+    @Test
+    public void failuresAreMergedInOrder() {
+        CloneNotSupportedException first = new CloneNotSupportedException();
+        ArithmeticException second = new ArithmeticException();
+        try {
+            CloseIt0.closeAllParallel(Arrays.asList(resource(0, null), resource(1, first),
+                    resource(2, null), resource(3, second)), executor);
+        } catch (NotClosedException ex) {
+            Assert.assertSame(ex.getCause(), first);
+            Assert.assertEquals(ex.getSuppressed(), new Throwable[]{second});
+            Assert.assertEquals(closed.size(), 4);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void policyConsumesExceptions() {
+        CloseIt0.closeAllParallel(Arrays.asList(resource(0, new CloneNotSupportedException()),
+                resource(1, new ArithmeticException())), executor,
+                resource -> CloseIt0.consumeAllException(resource, consumed::add));
+        Assert.assertEquals(closed.size(), 2);
+        Assert.assertEquals(consumed.size(), 2);
+    }
+
+    @Test
+    public void policyWrapsExceptions() {
+        ArithmeticException unchecked = new ArithmeticException();
+        CloneNotSupportedException checked = new CloneNotSupportedException();
+        try {
+            CloseIt0.closeAllParallel(Arrays.asList(resource(0, unchecked), resource(1, checked)),
+                    executor, CloseIt0::wrapException);
+        } catch (ArithmeticException ex) {
+            Assert.assertSame(ex, unchecked);
+            Assert.assertEquals(ex.getSuppressed().length, 1);
+            Assert.assertTrue(ex.getSuppressed()[0] instanceof NotClosedException);
+            Assert.assertSame(ex.getSuppressed()[0].getCause(), checked);
+            return;
+        }
+        Assert.fail("ArithmeticException expected");
+    }
+
+    @Test
+    public void mapsToCheckedException() {
+        CloneNotSupportedException first = new CloneNotSupportedException();
+        try {
+            CloseIt1.closeAllParallel(Arrays.asList(resource(0, first), resource(1, null)),
+                    executor, MyCheckedAppException::new);
+        } catch (MyCheckedAppException ex) {
+            Assert.assertSame(ex.getCause(), first);
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test(expectedExceptions = InstantiationException.class)
+    public void rethrowsTypedException() throws CloneNotSupportedException, InstantiationException {
+        List<CloseIt2<CloneNotSupportedException, InstantiationException>> closeIts = Arrays.asList(
+                () -> closed.add(0),
+                () -> {
+                    throw new InstantiationException();
+                });
+        CloseIt2.closeAllParallel(closeIts, executor);
+    }
+
+    @Test
+    public void rejectedResourcesAreClosedByCaller() {
+        CloseIt0.closeAllParallel(Arrays.asList(resource(0, null), resource(1, null), resource(2, null)),
+                task -> {
+                    throw new RejectedExecutionException();
+                });
+        Assert.assertEquals(closed.size(), 3);
+    }
+
+    @Test
+    public void interruptStatusIsKept() {
+        Thread.currentThread().interrupt();
+        try {
+            CloseIt0.closeAllParallel(Arrays.asList(resource(0, null), resource(1, null)), executor);
+            Assert.assertEquals(closed.size(), 2);
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void emptyCollection() {
+        CloseIt0.closeAllParallel(Collections.emptyList(), executor);
+        Assert.assertTrue(closed.isEmpty());
+    }
+}
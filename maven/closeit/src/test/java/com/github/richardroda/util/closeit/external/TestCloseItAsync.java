@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItAsync {
+
+    ExecutorService executor;
+    Thread closerThread;
+
+    @BeforeClass public void startExecutor() {
+        executor = Executors.newSingleThreadExecutor(task -> closerThread = new Thread(task));
+    }
+
+    @AfterClass public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void closeItAsyncClosesOnExecutor() throws Exception {
+        AtomicReference<Thread> closedBy = new AtomicReference<>();
+        CloseIt0 it = () -> closedBy.set(Thread.currentThread());
+        it.closeItAsync(executor).get(10, TimeUnit.SECONDS);
+        Assert.assertSame(closedBy.get(), closerThread);
+    }
+
+    @Test
+    public void closeItAsyncCompletesExceptionally() throws Exception {
+        CloneNotSupportedException failure = new CloneNotSupportedException();
+        CloseIt1<CloneNotSupportedException> it = () -> {
+            throw failure;
+        };
+        try {
+            it.closeItAsync(executor).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            Assert.assertSame(ex.getCause(), failure);
+            return;
+        }
+        Assert.fail("ExecutionException expected");
+    }
+
+    @Test
+    public void closeItAsyncAppliesDecorator() throws Exception {
+        CloneNotSupportedException failure = new CloneNotSupportedException();
+        CompletableFuture<Void> closed = CloseIt0.wrapAllException(() -> {
+            throw failure;
+        }).closeItAsync(executor);
+        try {
+            closed.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof NotClosedException);
+            Assert.assertSame(ex.getCause().getCause(), failure);
+            return;
+        }
+        Assert.fail("ExecutionException expected");
+    }
+
+    @Test
+    public void asyncDoesNotWaitForClose() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch consumed = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AutoCloseable slow = () -> {
+            release.await();
+            throw new CloneNotSupportedException();
+        };
+        try (CloseIt0 it = CloseIt0.async(CloseIt0.wrapException(slow), executor, th -> {
+            failure.set(th);
+            consumed.countDown();
+        })) {
+        }
+        // The close is still blocked, so the try-with-resources returned without waiting.
+        Assert.assertNull(failure.get());
+        release.countDown();
+        Assert.assertTrue(consumed.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(failure.get() instanceof NotClosedException);
+        Assert.assertTrue(failure.get().getCause() instanceof CloneNotSupportedException);
+    }
+
+    @Test
+    public void rejectedCloseRunsOnCaller() throws Exception {
+        AtomicReference<Thread> closedBy = new AtomicReference<>();
+        CloseIt0 it = () -> closedBy.set(Thread.currentThread());
+        CompletableFuture<Void> closed = it.closeItAsync(task -> {
+            throw new RejectedExecutionException();
+        });
+        Assert.assertTrue(closed.isDone());
+        Assert.assertSame(closedBy.get(), Thread.currentThread());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseItBuffers;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItBuffers {
+
+    static final Path MAPS = Paths.get("/proc/self/maps");
+
+    static boolean isMapped(Path file) throws IOException {
+        String name = file.toRealPath().toString();
+        return Files.readAllLines(MAPS, StandardCharsets.UTF_8).stream().anyMatch(line -> line.endsWith(name));
+    }
+
+    @Test
+    public void releaseIsSupported() {
+        Assert.assertTrue(CloseItBuffers.isReleaseSupported());
+    }
+
+    @Test
+    public void mappedFileIsUnmapped() throws IOException {
+        Path file = Files.createTempFile("closeit", ".bin");
+        try {
+            Files.write(file, new byte[8192]);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                try (CloseIt0 unmap = CloseItBuffers.release(mapped)) {
+                    Assert.assertEquals(mapped.get(0), 0);
+                    if (Files.isReadable(MAPS)) {
+                        Assert.assertTrue(isMapped(file));
+                    }
+                }
+            }
+            if (Files.isReadable(MAPS)) {
+                Assert.assertFalse(isMapped(file));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void directBufferIsReleasedOnce() throws Exception {
+        AutoCloseable unmapper = CloseItBuffers.unmapper(ByteBuffer.allocateDirect(1024));
+        unmapper.close();
+        unmapper.close();
+    }
+
+    @Test
+    public void heapBufferIsRejected() {
+        try {
+            CloseItBuffers.release(ByteBuffer.allocate(16));
+        } catch (IllegalArgumentException ex) {
+            return;
+        }
+        Assert.fail("IllegalArgumentException expected");
+    }
+
+    @Test
+    public void sliceFailureIsWrapped() {
+        ByteBuffer slice = ByteBuffer.allocateDirect(1024).slice();
+        try (CloseIt0 release = CloseItBuffers.release(slice)) {
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void sliceFailureIsMapped() {
+        ByteBuffer slice = ByteBuffer.allocateDirect(1024).duplicate();
+        try (CloseIt1<MyCheckedAppException> release = CloseItBuffers.release(slice, MyCheckedAppException::new)) {
+        } catch (MyCheckedAppException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalArgumentException);
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+}
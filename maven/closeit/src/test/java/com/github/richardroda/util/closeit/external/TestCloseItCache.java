@@ -0,0 +1,279 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItCache;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.SharedCloseIt;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItCache {
+
+    final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+    final List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearLists() {
+        closed.clear();
+        exceptions.clear();
+    }
+
+    class Resource implements AutoCloseable {
+        final String key;
+
+        Resource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed.add(key);
+            if (key.startsWith("fail")) {
+                throw new IOException("close " + key);
+            }
+        }
+    }
+
+    CloseItCache<String, Resource> cache(int maxSize) {
+        return CloseItCache.create(maxSize, resource -> CloseIt0.consumeAllException(resource, exceptions::add));
+    }
+
+    @Test
+    public void leaseReusesOpenResource() {
+        AtomicInteger opens = new AtomicInteger();
+        CloseItCache<String, Resource> cache = cache(4);
+        Resource first;
+        try (SharedCloseIt.Handle<Resource> lease = cache.lease("a", key -> new Resource(key + opens.incrementAndGet()))) {
+            first = lease.get();
+        }
+        try (SharedCloseIt.Handle<Resource> lease = cache.lease("a", key -> new Resource(key + opens.incrementAndGet()))) {
+            Assert.assertSame(lease.get(), first);
+        }
+        Assert.assertEquals(opens.get(), 1);
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void leasedEntryIsClosedAfterLastLease() {
+        CloseItCache<String, Resource> cache = cache(4);
+        SharedCloseIt.Handle<Resource> lease = cache.lease("a", Resource::new);
+        cache.invalidate("a");
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertTrue(closed.isEmpty());
+        lease.close();
+        Assert.assertEquals(closed, Collections.singletonList("a"));
+    }
+
+    @Test
+    public void secondChanceEvictsUnreferencedEntry() {
+        CloseItCache<String, Resource> cache = cache(2);
+        cache.lease("a", Resource::new).close();
+        cache.lease("b", Resource::new).close();
+        cache.lease("a", Resource::new).close();
+        cache.lease("c", Resource::new).close();
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(closed, Collections.singletonList("b"));
+        cache.lease("d", Resource::new).close();
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(closed, Arrays.asList("b", "c"));
+    }
+
+    @Test
+    public void invalidatedEntriesAreNotRetained() throws InterruptedException {
+        CloseItCache<String, Resource> cache = cache(4);
+        // A live entry at the head of the clock queue, ahead of the
+        // invalidated ones.
+        SharedCloseIt.Handle<Resource> pinned = cache.lease("pinned", Resource::new);
+        List<WeakReference<Resource>> resources = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            try (SharedCloseIt.Handle<Resource> lease = cache.lease("k", Resource::new)) {
+                resources.add(new WeakReference<>(lease.get()));
+            }
+            cache.invalidate("k");
+        }
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(closed.size(), 1000);
+        int retained = resources.size();
+        for (int i = 0; i < 10 && retained > 10; i++) {
+            System.gc();
+            Thread.sleep(10);
+            retained = (int) resources.stream().filter(resource -> resource.get() != null).count();
+        }
+        Assert.assertTrue(retained <= 10, retained + " closed resources retained");
+        pinned.close();
+    }
+
+    @Test
+    public void expiredEntryIsReopened() throws InterruptedException {
+        AtomicInteger opens = new AtomicInteger();
+        CloseItCache<String, Resource> cache = CloseItCache.create(4, Duration.ofMinutes(1), Duration.ofMillis(20),
+                resource -> CloseIt0.consumeAllException(resource, exceptions::add));
+        cache.lease("a", key -> new Resource(key + opens.incrementAndGet())).close();
+        Thread.sleep(50);
+        try (SharedCloseIt.Handle<Resource> lease = cache.lease("a", key -> new Resource(key + opens.incrementAndGet()))) {
+            Assert.assertEquals(lease.get().key, "a2");
+        }
+        Assert.assertEquals(closed, Collections.singletonList("a1"));
+    }
+
+    @Test
+    public void cleanUpEvictsExpiredEntries() throws InterruptedException {
+        CloseItCache<String, Resource> cache = CloseItCache.create(4, Duration.ofMillis(20), Duration.ofMinutes(1),
+                resource -> CloseIt0.consumeAllException(resource, exceptions::add));
+        cache.lease("a", Resource::new).close();
+        cache.lease("b", Resource::new).close();
+        Thread.sleep(50);
+        cache.cleanUp();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(closed.size(), 2);
+    }
+
+    @Test
+    public void closeFailureGoesToPolicy() {
+        CloseItCache<String, Resource> cache = cache(4);
+        cache.lease("fail", Resource::new).close();
+        cache.close();
+        Assert.assertEquals(exceptions.size(), 1);
+        Assert.assertEquals(exceptions.get(0).getMessage(), "close fail");
+    }
+
+    @Test
+    public void failedOpenIsNotCached() {
+        CloseItCache<String, Resource> cache = cache(4);
+        try {
+            cache.lease("a", key -> {
+                throw new IOException("open " + key);
+            });
+            Assert.fail("IOException expected");
+        } catch (IOException ex) {
+            Assert.assertEquals(ex.getMessage(), "open a");
+        }
+        Assert.assertEquals(cache.size(), 0);
+        cache.lease("a", Resource::new).close();
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void concurrentMissesShareOneOpen() throws Exception {
+        AtomicInteger opens = new AtomicInteger();
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CloseItCache<String, Resource> cache = cache(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Resource>> leased = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                leased.add(executor.submit(() -> {
+                    try (SharedCloseIt.Handle<Resource> lease = cache.lease("a", key -> {
+                        opens.incrementAndGet();
+                        opening.countDown();
+                        release.await(30, TimeUnit.SECONDS);
+                        return new Resource(key);
+                    })) {
+                        return lease.get();
+                    }
+                }));
+            }
+            opening.await(30, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            release.countDown();
+            Resource first = leased.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<Resource> future : leased) {
+                Assert.assertSame(future.get(30, TimeUnit.SECONDS), first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(opens.get(), 1);
+    }
+
+    @Test
+    public void leaseAfterCloseFails() {
+        CloseItCache<String, Resource> cache = cache(4);
+        cache.close();
+        try {
+            cache.lease("a", Resource::new);
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    CloseItCache<String, Resource> wrappingCache(int maxSize) {
+        return CloseItCache.create(maxSize, CloseIt0::wrapAllException);
+    }
+
+    @Test
+    public void invalidateThrowsCloseFailure() {
+        CloseItCache<String, Resource> cache = wrappingCache(4);
+        cache.lease("fail", Resource::new).close();
+        try {
+            cache.invalidate("fail");
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(closed, Arrays.asList("fail"));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void closeMergesCloseFailures() {
+        CloseItCache<String, Resource> cache = wrappingCache(4);
+        cache.lease("fail1", Resource::new).close();
+        cache.lease("ok", Resource::new).close();
+        cache.lease("fail2", Resource::new).close();
+        try {
+            cache.close();
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(ex.getSuppressed().length, 1);
+        }
+        Assert.assertEquals(closed.size(), 3);
+    }
+
+    @Test
+    public void leaseReportsFailureOfEvictedEntry() {
+        CloseItCache<String, Resource> cache = wrappingCache(1);
+        cache.lease("fail", Resource::new).close();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        List<Throwable> uncaught = new ArrayList<>();
+        thread.setUncaughtExceptionHandler((t, th) -> uncaught.add(th));
+        try (SharedCloseIt.Handle<Resource> lease = cache.lease("b", Resource::new)) {
+            Assert.assertEquals(lease.get().key, "b");
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertEquals(uncaught.size(), 1);
+        Assert.assertTrue(uncaught.get(0) instanceof NotClosedException);
+        Assert.assertTrue(uncaught.get(0).getCause() instanceof IOException);
+        Assert.assertEquals(closed, Arrays.asList("fail"));
+        Assert.assertEquals(cache.size(), 1);
+        cache.close();
+        Assert.assertEquals(closed, Arrays.asList("fail", "b"));
+    }
+}
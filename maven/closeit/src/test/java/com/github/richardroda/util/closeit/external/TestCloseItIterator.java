@@ -0,0 +1,135 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseItIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItIterator {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final AtomicInteger open = new AtomicInteger();
+    final AtomicInteger maxOpen = new AtomicInteger();
+    final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+    final List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearCounts() {
+        open.set(0);
+        maxOpen.set(0);
+        closed.clear();
+        exceptions.clear();
+    }
+
+    @AfterClass public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    class Resource implements AutoCloseable {
+        final String name;
+
+        Resource(String name) throws IOException {
+            if (name.startsWith("bad")) {
+                throw new IOException("open " + name);
+            }
+            this.name = name;
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+        }
+
+        @Override
+        public void close() {
+            open.decrementAndGet();
+            closed.add(name);
+        }
+    }
+
+    static List<String> names(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "r" + i).collect(Collectors.toList());
+    }
+
+    CloseItIterator<Resource> iterator(List<String> names, int prefetch) {
+        return CloseItIterator.create(names.iterator(), Resource::new,
+                resource -> CloseIt0.consumeAllException(resource, exceptions::add), prefetch, executor);
+    }
+
+    @Test
+    public void opensOneAtATimeWithoutPrefetch() {
+        List<String> seen = new ArrayList<>();
+        CloseItIterator<Resource> it = CloseItIterator.create(names(5).iterator(), Resource::new, CloseIt0::wrapAllException);
+        while (it.hasNext()) {
+            seen.add(it.next().name);
+            Assert.assertEquals(open.get(), 1);
+        }
+        Assert.assertEquals(seen, names(5));
+        Assert.assertEquals(closed, names(5));
+        Assert.assertEquals(open.get(), 0);
+        Assert.assertEquals(maxOpen.get(), 1);
+    }
+
+    @Test
+    public void prefetchBoundsOpenResources() {
+        try (Stream<Resource> resources = iterator(names(50), 3).stream()) {
+            Assert.assertEquals(resources.map(resource -> resource.name).collect(Collectors.toList()), names(50));
+        }
+        Assert.assertEquals(open.get(), 0);
+        Assert.assertTrue(maxOpen.get() <= 4, "at most prefetch + 1 open: " + maxOpen.get());
+        Assert.assertEquals(closed.size(), 50);
+    }
+
+    @Test
+    public void closingStreamEarlyClosesPrefetched() {
+        try (Stream<Resource> resources = iterator(names(50), 3).stream()) {
+            Assert.assertEquals(resources.limit(2).count(), 2L);
+        }
+        Assert.assertEquals(open.get(), 0);
+        Assert.assertTrue(closed.size() >= 2 && closed.size() <= 6);
+    }
+
+    @Test
+    public void openFailureIsThrownAndIterationContinues() {
+        try (CloseItIterator<Resource> it = iterator(Arrays.asList("r0", "bad1", "r2"), 1)) {
+            Assert.assertEquals(it.next().name, "r0");
+            try {
+                it.next();
+                Assert.fail("IOException expected");
+            } catch (Exception ex) {
+                Assert.assertTrue(ex instanceof IOException);
+                Assert.assertEquals(ex.getMessage(), "open bad1");
+            }
+            Assert.assertEquals(it.next().name, "r2");
+            Assert.assertFalse(it.hasNext());
+        }
+        Assert.assertEquals(closed, Arrays.asList("r0", "r2"));
+    }
+
+    @Test
+    public void closeFailureGoesToPolicy() {
+        CloseItIterator<AutoCloseable> it = CloseItIterator.create(names(2).iterator(), name -> () -> {
+            throw new IOException("close " + name);
+        }, resource -> CloseIt0.consumeAllException(resource, exceptions::add));
+        it.forEachRemaining(resource -> {});
+        Assert.assertEquals(exceptions.size(), 2);
+        Assert.assertEquals(exceptions.get(1).getMessage(), "close r1");
+    }
+}
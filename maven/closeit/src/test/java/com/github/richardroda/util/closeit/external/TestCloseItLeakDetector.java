@@ -0,0 +1,94 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseItLeakDetector;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItLeakDetector {
+
+    final List<Throwable> leaks = new CopyOnWriteArrayList<>();
+
+    @AfterMethod public void disable() {
+        CloseItLeakDetector.disable();
+        leaks.clear();
+    }
+
+    static void leak(AutoCloseable resource) {
+        CloseIt0.wrapException(resource);
+    }
+
+    static void awaitGc(List<?> leaks, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (leaks.size() < expected && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // Give any further reports a chance to arrive.
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void disabledByDefault() {
+        Assert.assertFalse(CloseItLeakDetector.isEnabled());
+        CloseIt0 it = CloseIt0.ignoreAllException(() -> {});
+        Assert.assertEquals(it.getClass().getSimpleName().contains("Tracked"), false);
+    }
+
+    @Test
+    public void reportsLeak() throws Exception {
+        CloseItLeakDetector.enable(1, leaks::add);
+        leak(new ByteArrayInputStream(new byte[0]));
+        awaitGc(leaks, 1);
+        Assert.assertEquals(leaks.size(), 1);
+        Throwable leak = leaks.get(0);
+        Assert.assertTrue(leak instanceof CloseItLeakDetector.LeakException);
+        Assert.assertTrue(leak.getMessage().startsWith(ByteArrayInputStream.class.getName()), leak.getMessage());
+        boolean allocatedHere = false;
+        for (StackTraceElement element : leak.getStackTrace()) {
+            allocatedHere |= element.getMethodName().equals("leak");
+        }
+        Assert.assertTrue(allocatedHere, "allocation stack trace");
+    }
+
+    @Test
+    public void closedResourceIsNotReported() throws Exception {
+        CloseItLeakDetector.enable(1, leaks::add);
+        try (CloseIt1<MyCheckedAppException> it = CloseIt1.wrapException(() -> {}, MyCheckedAppException::new)) {
+        }
+        leak(() -> {});
+        awaitGc(leaks, 1);
+        Assert.assertEquals(leaks.size(), 1);
+    }
+
+    @Test
+    public void decoratedTrackedResourceIsTrackedOnce() throws Exception {
+        CloseItLeakDetector.enable(1, leaks::add);
+        leak(CloseIt0.wrapAllException(() -> {}));
+        awaitGc(leaks, 1);
+        Assert.assertEquals(leaks.size(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void samplingIntervalMustBePositive() {
+        CloseItLeakDetector.enable(0, leaks::add);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseItLoan;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItLoan {
+
+    final List<String> events = new ArrayList<>();
+
+    @AfterMethod public void clearEvents() {
+        events.clear();
+    }
+
+    class Loaned {
+        final int value;
+        final boolean failClose;
+
+        Loaned(int value, boolean failClose) {
+            this.value = value;
+            this.failClose = failClose;
+            events.add("open");
+        }
+
+        void close() throws MyCheckedAppException {
+            events.add("close");
+            if (failClose) {
+                throw new MyCheckedAppException("close");
+            }
+        }
+    }
+
+    @Test
+    public void resultIsReturnedAndResourceClosed() throws MyCheckedAppException {
+        Assert.assertEquals(CloseItLoan.using(() -> new Loaned(3, false), Loaned::close, r -> "v" + r.value), "v3");
+        Assert.assertEquals(CloseItLoan.usingInt(() -> new Loaned(3, false), Loaned::close, r -> r.value + 1), 4);
+        Assert.assertEquals(CloseItLoan.usingLong(() -> new Loaned(3, false), Loaned::close, r -> r.value * 10L), 30L);
+        Assert.assertEquals(CloseItLoan.usingDouble(() -> new Loaned(3, false), Loaned::close, r -> r.value / 2.0), 1.5);
+        Assert.assertTrue(CloseItLoan.usingBoolean(() -> new Loaned(3, false), Loaned::close, r -> r.value == 3));
+        for (int i = 0; i < events.size(); i += 2) {
+            Assert.assertEquals(events.get(i), "open");
+            Assert.assertEquals(events.get(i + 1), "close");
+        }
+        Assert.assertEquals(events.size(), 10);
+    }
+
+    @Test
+    public void closeFailureIsThrown() {
+        try {
+            CloseItLoan.usingInt(() -> new Loaned(3, true), Loaned::close, r -> r.value);
+        } catch (MyCheckedAppException ex) {
+            Assert.assertEquals(ex.getMessage(), "close");
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void closeFailureIsSuppressedByFunctionFailure() {
+        try {
+            CloseItLoan.usingLong(() -> new Loaned(3, true), Loaned::close, r -> {
+                throw new MyCheckedAppException("function");
+            });
+        } catch (MyCheckedAppException ex) {
+            Assert.assertEquals(ex.getMessage(), "function");
+            Assert.assertEquals(ex.getSuppressed().length, 1);
+            Assert.assertEquals(ex.getSuppressed()[0].getMessage(), "close");
+            Assert.assertEquals(events.get(events.size() - 1), "close");
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void runtimeFailureClosesResource() throws MyCheckedAppException {
+        try {
+            CloseItLoan.usingBoolean(() -> new Loaned(3, false), Loaned::close, r -> {
+                throw new IllegalStateException("function");
+            });
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(ex.getSuppressed().length, 0);
+            Assert.assertEquals(events.get(events.size() - 1), "close");
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void nullResourceIsNotClosed() throws MyCheckedAppException {
+        String result = CloseItLoan.using(() -> (Loaned) null, Loaned::close, r -> r == null ? "null" : "resource");
+        Assert.assertEquals(result, "null");
+        Assert.assertTrue(events.isEmpty());
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseItPolicy;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.RetryPolicy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItPolicy {
+
+    final List<Throwable> observed = new CopyOnWriteArrayList<>();
+    final List<Throwable> consumed = new CopyOnWriteArrayList<>();
+
+    @AfterMethod public void clearFailures() {
+        observed.clear();
+        consumed.clear();
+    }
+
+    static AutoCloseable failing(Throwable th) {
+        return () -> {
+            if (th instanceof Exception) {
+                throw (Exception) th;
+            }
+            throw (Error) th;
+        };
+    }
+
+    @Test
+    public void defaultPolicyWrapsChecked() {
+        IOException thrown = new IOException("io");
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(thrown), CloseItPolicy.create())) {
+        } catch (NotClosedException ex) {
+            Assert.assertSame(ex.getCause(), thrown);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void defaultPolicyRethrowsUnchecked() {
+        IllegalStateException thrown = new IllegalStateException("state");
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(thrown), CloseItPolicy.create())) {
+        } catch (IllegalStateException ex) {
+            Assert.assertSame(ex, thrown);
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void closesWithoutFailure() {
+        AtomicInteger closed = new AtomicInteger();
+        try (CloseIt0 it = CloseIt0.withPolicy(closed::incrementAndGet, CloseItPolicy.create())) {
+        }
+        Assert.assertEquals(closed.get(), 1);
+    }
+
+    @Test
+    public void firstMatchingRuleWins() throws IOException {
+        CloseItPolicy<IOException> policy = CloseItPolicy.create(IOException::new)
+                .withObserver(observed::add)
+                .withRethrow(IllegalStateException.class)
+                .withMap(FileNotFoundException.class, ex -> ex)
+                .withConsume(Exception.class, consumed::add);
+
+        IllegalStateException state = new IllegalStateException("state");
+        try {
+            try (CloseIt1<IOException> it = CloseIt1.withPolicy(failing(state), policy)) {
+            }
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            Assert.assertSame(ex, state);
+        }
+
+        FileNotFoundException notFound = new FileNotFoundException("file");
+        try (CloseIt1<IOException> it = CloseIt1.withPolicy(failing(notFound), policy)) {
+        } catch (IOException ex) {
+            Assert.assertSame(ex, notFound);
+        }
+
+        SQLException sql = new SQLException("sql");
+        try (CloseIt1<IOException> it = CloseIt1.withPolicy(failing(sql), policy)) {
+        }
+        IllegalArgumentException argument = new IllegalArgumentException("argument");
+        try (CloseIt1<IOException> it = CloseIt1.withPolicy(failing(argument), policy)) {
+        }
+
+        Assert.assertEquals(observed.size(), 4);
+        Assert.assertEquals(consumed.size(), 2);
+        Assert.assertSame(consumed.get(0), sql);
+        Assert.assertSame(consumed.get(1), argument);
+    }
+
+    @Test
+    public void unmatchedCheckedIsMapped() {
+        CloseItPolicy<IOException> policy = CloseItPolicy.create(IOException::new)
+                .withConsume(IllegalStateException.class, consumed::add);
+        SQLException sql = new SQLException("sql");
+        try {
+            try (CloseIt1<IOException> it = CloseIt1.withPolicy(failing(sql), policy)) {
+            }
+            Assert.fail("IOException expected");
+        } catch (IOException ex) {
+            Assert.assertSame(ex.getCause(), sql);
+        }
+        Assert.assertTrue(consumed.isEmpty());
+    }
+
+    @Test
+    public void nullMapperResultSwallows() {
+        CloseItPolicy<RuntimeException> policy = CloseItPolicy.create()
+                .withMap(IOException.class, ex -> null);
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(new IOException("io")), policy)) {
+        }
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(new IOException("io")), CloseItPolicy.create(ex -> null))) {
+        }
+    }
+
+    @Test
+    public void errorsAreRethrownUnlessMatched() {
+        LinkageError error = new LinkageError("error");
+        try {
+            try (CloseIt0 it = CloseIt0.withPolicy(failing(error), CloseItPolicy.create()
+                    .withConsume(Exception.class, consumed::add))) {
+            }
+            Assert.fail("LinkageError expected");
+        } catch (LinkageError ex) {
+            Assert.assertSame(ex, error);
+        }
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(error), CloseItPolicy.create()
+                .withConsume(Throwable.class, consumed::add))) {
+        }
+        Assert.assertEquals(consumed.size(), 1);
+    }
+
+    @Test
+    public void policyIsImmutable() {
+        CloseItPolicy<RuntimeException> base = CloseItPolicy.create();
+        CloseItPolicy<RuntimeException> consuming = base.withConsume(IOException.class, consumed::add);
+        Assert.assertNotSame(consuming, base);
+        try (CloseIt0 it = CloseIt0.withPolicy(failing(new IOException("io")), consuming)) {
+        }
+        try {
+            try (CloseIt0 it = CloseIt0.withPolicy(failing(new IOException("io")), base)) {
+            }
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(consumed.size(), 1);
+        }
+    }
+
+    @Test
+    public void retriesBeforeRules() {
+        AtomicInteger attempts = new AtomicInteger();
+        CloseItPolicy<RuntimeException> policy = CloseItPolicy.create()
+                .withRetry(TestRetrying.FAST)
+                .withConsume(IOException.class, consumed::add);
+        try (CloseIt0 it = CloseIt0.withPolicy(TestRetrying.failing(attempts, 2), policy)) {
+        }
+        Assert.assertEquals(attempts.get(), 3);
+        Assert.assertTrue(consumed.isEmpty());
+
+        attempts.set(0);
+        try (CloseIt0 it = CloseIt0.withPolicy(TestRetrying.failing(attempts, 5),
+                policy.withRetry(TestRetrying.FAST.withMaxAttempts(2)))) {
+        }
+        Assert.assertEquals(attempts.get(), 2);
+        Assert.assertEquals(consumed.size(), 1);
+        Assert.assertEquals(consumed.get(0).getSuppressed().length, 1);
+    }
+
+    @Test
+    public void timeoutIsProcessedByRules() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CloseItPolicy<RuntimeException> policy = CloseItPolicy.create()
+                .withTimeout(Duration.ofMillis(50))
+                .withConsume(TimeoutException.class, consumed::add);
+        try (CloseIt0 it = CloseIt0.withPolicy(() -> release.await(10, TimeUnit.SECONDS), policy)) {
+        } finally {
+            release.countDown();
+        }
+        Assert.assertEquals(consumed.size(), 1);
+        Assert.assertTrue(consumed.get(0) instanceof TimeoutException);
+    }
+
+    @Test
+    public void timeoutWithRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        CloseItPolicy<RuntimeException> policy = CloseItPolicy.create()
+                .withTimeout(Duration.ofSeconds(10))
+                .withRetry(TestRetrying.FAST);
+        try (CloseIt0 it = CloseIt0.withPolicy(TestRetrying.failing(attempts, 2), policy)) {
+        }
+        Assert.assertEquals(attempts.get(), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rethrowCheckedRejected() {
+        CloseItPolicy.create().withRethrow(IOException.class);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void zeroTimeoutRejected() {
+        CloseItPolicy.create().withTimeout(Duration.ZERO);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void nullPolicy() {
+        CloseIt0.withPolicy(() -> {}, null);
+    }
+}
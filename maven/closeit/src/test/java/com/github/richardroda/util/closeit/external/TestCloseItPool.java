@@ -0,0 +1,197 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseItPool;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItPool {
+
+    final List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearExceptions() {
+        exceptions.clear();
+    }
+
+    static class Pooled implements AutoCloseable {
+        final int id;
+        boolean broken;
+        boolean closed;
+        boolean failClose;
+
+        Pooled(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (failClose) {
+                throw new IOException("close " + id);
+            }
+        }
+    }
+
+    static CloseItPool<Pooled> pool(AtomicInteger created, int maxIdle, List<Exception> exceptions) {
+        return CloseItPool.create(() -> new Pooled(created.incrementAndGet()), maxIdle,
+                pooled -> !pooled.broken, exceptions::add);
+    }
+
+    @Test
+    public void leaseIsReturnedAndReused() {
+        AtomicInteger created = new AtomicInteger();
+        CloseItPool<Pooled> pool = pool(created, 2, exceptions);
+        Pooled first;
+        try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+            first = lease.get();
+        }
+        Assert.assertEquals(pool.idleCount(), 1);
+        try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+            Assert.assertSame(lease.get(), first);
+        }
+        Assert.assertEquals(created.get(), 1);
+        Assert.assertFalse(first.closed);
+    }
+
+    @Test
+    public void closedLeaseCannotBeUsed() {
+        CloseItPool<Pooled> pool = pool(new AtomicInteger(), 2, exceptions);
+        CloseItPool.Lease<Pooled> lease = pool.lease();
+        lease.close();
+        lease.close();
+        Assert.assertEquals(pool.idleCount(), 1);
+        try {
+            lease.get();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void invalidObjectIsDestroyed() {
+        CloseItPool<Pooled> pool = pool(new AtomicInteger(), 2, exceptions);
+        Pooled pooled;
+        try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+            pooled = lease.get();
+            pooled.broken = true;
+        }
+        Assert.assertTrue(pooled.closed);
+        Assert.assertEquals(pool.idleCount(), 0);
+    }
+
+    @Test
+    public void objectIsDestroyedWhenValidatorThrows() {
+        CloseItPool<Pooled> pool = CloseItPool.create(() -> new Pooled(1), 2, pooled -> {
+            throw new IllegalArgumentException("validator");
+        }, exceptions::add);
+        Pooled pooled = null;
+        try {
+            try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+                pooled = lease.get();
+            }
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals(ex.getMessage(), "validator");
+        }
+        Assert.assertTrue(pooled.closed);
+        Assert.assertEquals(pool.idleCount(), 0);
+        Assert.assertTrue(exceptions.isEmpty());
+    }
+
+    @Test
+    public void objectBeyondMaxIdleIsDestroyed() {
+        AtomicInteger created = new AtomicInteger();
+        CloseItPool<Pooled> pool = pool(created, 2, exceptions);
+        List<CloseItPool.Lease<Pooled>> leases = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            leases.add(pool.lease());
+        }
+        Assert.assertEquals(created.get(), 3);
+        leases.forEach(CloseItPool.Lease::close);
+        Assert.assertEquals(pool.idleCount(), 2);
+    }
+
+    @Test
+    public void destroyConsumesCloseFailure() {
+        CloseItPool<Pooled> pool = pool(new AtomicInteger(), 2, exceptions);
+        try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+            lease.get().failClose = true;
+            lease.destroy();
+        }
+        Assert.assertEquals(pool.idleCount(), 0);
+        Assert.assertEquals(exceptions.size(), 1);
+        Assert.assertEquals(exceptions.get(0).getMessage(), "close 1");
+    }
+
+    @Test
+    public void closingPoolDestroysIdleAndLaterReturns() {
+        CloseItPool<Pooled> pool = pool(new AtomicInteger(), 2, exceptions);
+        CloseItPool.Lease<Pooled> idle = pool.lease();
+        CloseItPool.Lease<Pooled> leased = pool.lease();
+        Pooled idleObject = idle.get();
+        Pooled leasedObject = leased.get();
+        idle.close();
+        pool.close();
+        Assert.assertTrue(idleObject.closed);
+        Assert.assertFalse(leasedObject.closed);
+        leased.close();
+        Assert.assertTrue(leasedObject.closed);
+        try {
+            pool.lease();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void concurrentLeasesNeverShareAnObject() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        CloseItPool<Pooled> pool = pool(created, 4, exceptions);
+        Set<Pooled> inUse = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        try (CloseItPool.Lease<Pooled> lease = pool.lease()) {
+                            Assert.assertTrue(inUse.add(lease.get()), "object leased twice");
+                            inUse.remove(lease.get());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(pool.idleCount() <= 4);
+        pool.close();
+        Assert.assertEquals(pool.idleCount(), 0);
+        Assert.assertTrue(exceptions.isEmpty());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseItScope;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItScope {
+
+    List<Integer> closed;
+    List<Throwable> consumed;
+
+    @BeforeMethod public void reset() {
+        closed = new ArrayList<>();
+        consumed = new ArrayList<>();
+    }
+
+    AutoCloseable resource(int id) {
+        return () -> closed.add(id);
+    }
+
+    AutoCloseable failing(int id, Exception ex) {
+        return () -> {
+            closed.add(id);
+            throw ex;
+        };
+    }
+
+    @Test
+    public void closesInReverseOrder() {
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            for (int i = 0; i < 20; i++) {
+                scope.add(resource(i));
+            }
+            Assert.assertEquals(scope.size(), 20);
+        }
+        Assert.assertEquals(closed.size(), 20);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(closed.get(i).intValue(), 19 - i);
+        }
+    }
+
+    @Test
+    public void addReturnsResource() {
+        AutoCloseable resource = resource(1);
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            Assert.assertSame(scope.add(resource), resource);
+            Assert.assertSame(scope.add(resource, consumed::add), resource);
+        }
+        Assert.assertEquals(closed, Arrays.asList(1, 1));
+    }
+
+    @Test
+    public void failuresAreSuppressedOnOneNotClosedException() {
+        CloneNotSupportedException first = new CloneNotSupportedException();
+        ArithmeticException second = new ArithmeticException();
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(failing(1, second));
+            scope.add(resource(2));
+            scope.add(failing(3, first));
+        } catch (NotClosedException ex) {
+            Assert.assertSame(ex.getCause(), first);
+            Assert.assertEquals(ex.getSuppressed().length, 1);
+            Assert.assertSame(ex.getSuppressed()[0], second);
+            Assert.assertEquals(closed, Arrays.asList(3, 2, 1));
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void consumedExceptionsAreNotThrown() {
+        CloneNotSupportedException checked = new CloneNotSupportedException();
+        ArithmeticException unchecked = new ArithmeticException();
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(failing(1, checked), consumed::add);
+            scope.add(failing(2, unchecked), consumed::add);
+        }
+        Assert.assertEquals(consumed, Arrays.asList(unchecked, checked));
+        Assert.assertEquals(closed, Arrays.asList(2, 1));
+    }
+
+    @Test
+    public void errorsAreNotConsumed() {
+        AssertionError error = new AssertionError();
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(resource(1));
+            scope.add(() -> {
+                throw error;
+            }, consumed::add);
+        } catch (NotClosedException ex) {
+            Assert.assertSame(ex.getCause(), error);
+            Assert.assertTrue(consumed.isEmpty());
+            Assert.assertEquals(closed, Arrays.asList(1));
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void mapsToCheckedException() {
+        CloneNotSupportedException first = new CloneNotSupportedException();
+        ArithmeticException second = new ArithmeticException();
+        try (CloseItScope<MyCheckedAppException> scope = CloseItScope.create(MyCheckedAppException::new)) {
+            scope.add(failing(1, second));
+            scope.add(failing(2, first));
+        } catch (MyCheckedAppException ex) {
+            Assert.assertSame(ex.getCause(), first);
+            Assert.assertEquals(ex.getSuppressed(), new Throwable[]{second});
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void nullMappingSwallowsFailure() {
+        CloneNotSupportedException first = new CloneNotSupportedException();
+        ArithmeticException second = new ArithmeticException();
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create(
+                th -> th instanceof CloneNotSupportedException ? null : new IllegalStateException(th))) {
+            scope.add(failing(1, second));
+            scope.add(failing(2, first));
+        } catch (IllegalStateException ex) {
+            Assert.assertSame(ex.getCause(), second);
+            Assert.assertEquals(ex.getSuppressed().length, 0);
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void scopeIsEmptyAfterClose() {
+        CloseItScope<RuntimeException> scope = CloseItScope.create();
+        scope.add(resource(1));
+        scope.closeIt();
+        Assert.assertEquals(scope.size(), 0);
+        scope.closeIt();
+        Assert.assertEquals(closed, Arrays.asList(1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void bodyExceptionSuppressesCloseFailure() {
+        try (CloseItScope<RuntimeException> scope = CloseItScope.create()) {
+            scope.add(failing(1, new CloneNotSupportedException()));
+            throw new IllegalArgumentException();
+        }
+    }
+}
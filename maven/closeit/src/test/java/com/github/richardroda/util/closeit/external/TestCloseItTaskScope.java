@@ -0,0 +1,186 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseItTaskScope;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItTaskScope {
+
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearClosed() {
+        closed.clear();
+    }
+
+    @AfterClass public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    AutoCloseable resource(String name) {
+        return () -> closed.add(name);
+    }
+
+    @Test
+    public void resourcesClosedAfterTasksFinish() throws Exception {
+        List<Future<Integer>> results = new ArrayList<>();
+        try (CloseItTaskScope scope = CloseItTaskScope.create(executor)) {
+            for (int i = 0; i < 4; i++) {
+                final int shard = i;
+                results.add(scope.fork(() -> {
+                    scope.register(resource("shard" + shard));
+                    return shard;
+                }));
+            }
+            scope.join();
+            Assert.assertTrue(closed.isEmpty());
+        }
+        int sum = 0;
+        for (Future<Integer> result : results) {
+            sum += result.get();
+        }
+        Assert.assertEquals(sum, 6);
+        Assert.assertEquals(closed.size(), 4);
+    }
+
+    @Test
+    public void failureCancelsOtherTasks() throws InterruptedException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        try (CloseItTaskScope scope = CloseItTaskScope.create(executor)) {
+            scope.fork(() -> {
+                scope.register(resource("slow"));
+                started.countDown();
+                try {
+                    Thread.sleep(30_000);
+                } catch (InterruptedException ex) {
+                    cancelled.set(true);
+                }
+                return null;
+            });
+            started.await();
+            scope.fork(() -> {
+                throw new IOException("shard failed");
+            });
+            scope.join();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertEquals(ex.getCause().getMessage(), "shard failed");
+            Assert.assertTrue(cancelled.get());
+            Assert.assertEquals(closed, Collections.singletonList("slow"));
+            return;
+        }
+        Assert.fail("ExecutionException expected");
+    }
+
+    @Test
+    public void closeCancelsAndWaitsForTasks() throws InterruptedException {
+        AtomicBoolean finished = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        try (CloseItTaskScope scope = CloseItTaskScope.create(executor)) {
+            scope.register(resource("owner"));
+            scope.fork(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(30_000);
+                } finally {
+                    Thread.sleep(50);
+                    finished.set(true);
+                }
+                return null;
+            });
+            started.await();
+        }
+        Assert.assertTrue(finished.get());
+        Assert.assertEquals(closed, Collections.singletonList("owner"));
+    }
+
+    @Test
+    public void resourceFailureIsMapped() throws InterruptedException {
+        try (CloseItTaskScope scope = CloseItTaskScope.create(executor)) {
+            scope.register(() -> {
+                throw new IOException("close");
+            });
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(ex.getCause().getMessage(), "close");
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void interruptedCloseStillClosesResources() {
+        CloseItTaskScope scope = CloseItTaskScope.create(executor);
+        scope.register(resource("owner"));
+        scope.fork(() -> {
+            Thread.sleep(100);
+            return null;
+        });
+        Thread.currentThread().interrupt();
+        try {
+            scope.close();
+        } catch (InterruptedException ex) {
+            Assert.assertEquals(closed, Collections.singletonList("owner"));
+            return;
+        } finally {
+            Thread.interrupted();
+        }
+        Assert.fail("InterruptedException expected");
+    }
+
+    @Test
+    public void forkAfterCloseFails() throws InterruptedException {
+        CloseItTaskScope scope = CloseItTaskScope.create(executor);
+        scope.close();
+        try {
+            scope.fork(() -> null);
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void interruptedJoinCanBeRepeated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (CloseItTaskScope scope = CloseItTaskScope.create(executor)) {
+            Future<String> result = scope.fork(() -> {
+                release.await(30, TimeUnit.SECONDS);
+                return "done";
+            });
+            Thread.currentThread().interrupt();
+            try {
+                scope.join();
+                Assert.fail("InterruptedException expected");
+            } catch (InterruptedException ex) {
+                // expected
+            }
+            release.countDown();
+            scope.join();
+            Assert.assertEquals(result.get(), "done");
+        }
+    }
+}
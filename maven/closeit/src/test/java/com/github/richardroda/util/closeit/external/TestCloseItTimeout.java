@@ -0,0 +1,125 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseItTimeout {
+
+    static final Duration SHORT = Duration.ofMillis(50);
+    static final Duration LONG = Duration.ofSeconds(10);
+
+    @Test
+    public void closeWithinTimeout() {
+        AtomicReference<Thread> closedBy = new AtomicReference<>();
+        try (CloseIt0 it = CloseIt0.withTimeout(() -> closedBy.set(Thread.currentThread()), LONG)) {
+        }
+        Assert.assertNotNull(closedBy.get());
+        Assert.assertTrue(closedBy.get().getName().startsWith("closeit-closer-"));
+        Assert.assertTrue(closedBy.get().isDaemon());
+    }
+
+    @Test
+    public void checkedExceptionWithinTimeout() {
+        CloneNotSupportedException failure = new CloneNotSupportedException();
+        try (CloseIt0 it = CloseIt0.withTimeout(() -> {
+            throw failure;
+        }, LONG, closeable -> Assert.fail("not timed out"))) {
+        } catch (NotClosedException ex) {
+            Assert.assertSame(ex.getCause(), failure);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void runtimeExceptionWithinTimeout() {
+        try (CloseIt0 it = CloseIt0.withTimeout(() -> {
+            throw new IllegalArgumentException();
+        }, LONG)) {
+        }
+    }
+
+    @Test
+    public void composesWithDecorator() {
+        AtomicReference<Exception> consumed = new AtomicReference<>();
+        try (CloseIt0 it = CloseIt0.withTimeout(CloseIt0.consumeAllException(() -> {
+            throw new IllegalArgumentException();
+        }, consumed::set), LONG)) {
+        }
+        Assert.assertTrue(consumed.get() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void timeoutAbandonsClose() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AutoCloseable hung = () -> {
+            release.await();
+            finished.countDown();
+        };
+        AtomicReference<AutoCloseable> timedOut = new AtomicReference<>();
+        try (CloseIt0 it = CloseIt0.withTimeout(hung, SHORT, timedOut::set)) {
+        }
+        Assert.assertSame(timedOut.get(), hung);
+        Assert.assertEquals(finished.getCount(), 1L);
+        release.countDown();
+        Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeoutThrowsNotClosedException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (CloseIt0 it = CloseIt0.withTimeout(release::await, SHORT)) {
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+            return;
+        } finally {
+            release.countDown();
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void timeoutIsMapped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (CloseIt1<MyCheckedAppException> it = CloseIt1.withTimeout(release::await, SHORT,
+                MyCheckedAppException::new)) {
+        } catch (MyCheckedAppException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+            return;
+        } finally {
+            release.countDown();
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void interruptIsTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<AutoCloseable> timedOut = new AtomicReference<>();
+        Thread.currentThread().interrupt();
+        try (CloseIt0 it = CloseIt0.withTimeout(release::await, LONG, timedOut::set)) {
+        } finally {
+            release.countDown();
+        }
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertNotNull(timedOut.get());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.CloseMetrics;
+import com.github.richardroda.util.closeit.NotClosedException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestCloseMetrics {
+
+    @Test
+    public void countsClosesByResourceClass() {
+        CloseMetrics metrics = new CloseMetrics();
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
+        CloseIt0 it = CloseIt0.metered(in, metrics);
+        CloseMetrics.Snapshot open = metrics.snapshot(ByteArrayInputStream.class.getName());
+        Assert.assertEquals(open.openCount(), 1L);
+        Assert.assertEquals(open.closeCount(), 0L);
+        it.close();
+        it.close();
+        CloseMetrics.Snapshot closed = metrics.snapshot(ByteArrayInputStream.class.getName());
+        Assert.assertEquals(closed.openCount(), 0L);
+        Assert.assertEquals(closed.closeCount(), 2L);
+        Assert.assertEquals(closed.failureCount(), 0L);
+        Assert.assertEquals(Arrays.stream(closed.latencyCounts()).sum(), 2L);
+        Assert.assertEquals(metrics.snapshot().keySet(), Arrays.asList(ByteArrayInputStream.class.getName()));
+    }
+
+    @Test
+    public void countsFailuresByClass() {
+        CloseMetrics metrics = new CloseMetrics();
+        for (int i = 0; i < 3; i++) {
+            final int attempt = i;
+            try (CloseIt0 it = CloseIt0.wrapException(CloseIt0.metered(() -> {
+                if (attempt == 0) {
+                    throw new IOException();
+                } else if (attempt == 1) {
+                    throw new IllegalStateException();
+                }
+            }, metrics, "lambda"))) {
+            } catch (NotClosedException ex) {
+                Assert.assertTrue(ex.getCause() instanceof IOException);
+            } catch (IllegalStateException ex) {
+                Assert.assertEquals(attempt, 1);
+            }
+        }
+        CloseMetrics.Snapshot snapshot = metrics.snapshot("lambda");
+        Assert.assertEquals(snapshot.closeCount(), 3L);
+        Assert.assertEquals(snapshot.failureCount(), 2L);
+        Assert.assertEquals(snapshot.failureCounts().get(IOException.class), Long.valueOf(1L));
+        Assert.assertEquals(snapshot.failureCounts().get(IllegalStateException.class), Long.valueOf(1L));
+    }
+
+    @Test
+    public void meteredLambdaRethrowsCheckedException() {
+        CloseMetrics metrics = new CloseMetrics();
+        try (CloseIt1<MyCheckedAppException> it = CloseIt1.metered(() -> {
+            throw new MyCheckedAppException();
+        }, metrics, "checked")) {
+        } catch (MyCheckedAppException ex) {
+            Assert.assertEquals(metrics.snapshot("checked").failureCounts().get(MyCheckedAppException.class),
+                    Long.valueOf(1L));
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void latencyPercentile() throws Exception {
+        CloseMetrics metrics = new CloseMetrics();
+        CloseIt0.metered(() -> Thread.sleep(2), metrics, "slow").close();
+        long p99 = metrics.snapshot("slow").percentileNanos(99.0);
+        Assert.assertTrue(p99 >= 2_000_000L, "p99 " + p99);
+        Assert.assertEquals(metrics.snapshot("unknown").percentileNanos(50.0), 0L);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.DeferredCloser;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestDeferredCloser {
+
+    final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    @AfterMethod public void clearFailures() {
+        failures.clear();
+    }
+
+    /**
+     * Defer a resource that blocks the closer thread until the returned
+     * latch is released, and wait until the closer thread is blocked.
+     */
+    static CountDownLatch blockCloser(DeferredCloser closer) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        closer.defer(() -> {
+            started.countDown();
+            release.await();
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void closesEveryResourceFromManyThreads() throws Exception {
+        AtomicInteger closedCount = new AtomicInteger();
+        AtomicReference<String> closerName = new AtomicReference<>();
+        DeferredCloser closer = DeferredCloser.create(16, 2, DeferredCloser.Overflow.BLOCK, failures::add);
+        Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    try (CloseIt0 it = CloseIt0.deferred(() -> {
+                        closerName.set(Thread.currentThread().getName());
+                        closedCount.incrementAndGet();
+                    }, closer)) {
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        closer.close();
+        Assert.assertEquals(closedCount.get(), 4000);
+        Assert.assertEquals(closer.pending(), 0);
+        Assert.assertTrue(closerName.get().startsWith("closeit-deferred-closer-"), closerName.get());
+        Assert.assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void failuresGoToConsumer() {
+        IllegalStateException failure = new IllegalStateException();
+        try (DeferredCloser closer = DeferredCloser.create(4, 1, DeferredCloser.Overflow.BLOCK, failures::add)) {
+            closer.defer(() -> {
+                throw failure;
+            });
+        }
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertSame(failures.get(0), failure);
+    }
+
+    @Test
+    public void overflowClosesInline() throws Exception {
+        AtomicReference<Thread> closedBy = new AtomicReference<>();
+        try (DeferredCloser closer = DeferredCloser.create(2, 1, DeferredCloser.Overflow.CLOSE_INLINE, failures::add)) {
+            CountDownLatch release = blockCloser(closer);
+            closer.defer(() -> {});
+            closer.defer(() -> {});
+            closer.defer(() -> closedBy.set(Thread.currentThread()));
+            Assert.assertSame(closedBy.get(), Thread.currentThread());
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void overflowDropsAndReports() throws Exception {
+        AtomicInteger closedCount = new AtomicInteger();
+        try (DeferredCloser closer = DeferredCloser.create(2, 1, DeferredCloser.Overflow.DROP, failures::add)) {
+            CountDownLatch release = blockCloser(closer);
+            closer.defer(closedCount::incrementAndGet);
+            closer.defer(closedCount::incrementAndGet);
+            closer.defer(closedCount::incrementAndGet);
+            Assert.assertEquals(failures.size(), 1);
+            Assert.assertTrue(failures.get(0) instanceof RejectedExecutionException);
+            release.countDown();
+        }
+        Assert.assertEquals(closedCount.get(), 2);
+    }
+
+    @Test
+    public void overflowBlocks() throws Exception {
+        AtomicInteger closedCount = new AtomicInteger();
+        try (DeferredCloser closer = DeferredCloser.create(2, 1, DeferredCloser.Overflow.BLOCK, failures::add)) {
+            CountDownLatch release = blockCloser(closer);
+            closer.defer(closedCount::incrementAndGet);
+            closer.defer(closedCount::incrementAndGet);
+            Thread producer = new Thread(() -> closer.defer(closedCount::incrementAndGet));
+            producer.start();
+            producer.join(100);
+            Assert.assertTrue(producer.isAlive());
+            release.countDown();
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+            Assert.assertFalse(producer.isAlive());
+        }
+        Assert.assertEquals(closedCount.get(), 3);
+    }
+
+    @Test
+    public void deferAfterCloseClosesInline() {
+        AtomicReference<Thread> closedBy = new AtomicReference<>();
+        DeferredCloser closer = DeferredCloser.create(4, 1, DeferredCloser.Overflow.BLOCK, failures::add);
+        closer.close();
+        closer.defer(() -> closedBy.set(Thread.currentThread()));
+        Assert.assertSame(closedBy.get(), Thread.currentThread());
+    }
+}
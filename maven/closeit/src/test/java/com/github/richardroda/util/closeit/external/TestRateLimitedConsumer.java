@@ -0,0 +1,100 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.RateLimitedConsumer;
+import com.github.richardroda.util.closeit.SuppressionPolicy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestRateLimitedConsumer {
+
+    final List<Throwable> consumed = new CopyOnWriteArrayList<>();
+
+    @AfterMethod public void clearConsumed() {
+        consumed.clear();
+    }
+
+    static IOException ioFailure() {
+        return new IOException();
+    }
+
+    static IllegalStateException otherFailure() {
+        return new IllegalStateException();
+    }
+
+    @Test
+    public void limitsEachKindAndCountsTheRest() {
+        RateLimitedConsumer exConsumer = RateLimitedConsumer.create(consumed::add, 2, Duration.ofHours(1));
+        for (int i = 0; i < 10; i++) {
+            try (CloseIt0 it = CloseIt0.consumeAllException(() -> {
+                throw ioFailure();
+            }, exConsumer)) {
+            }
+        }
+        exConsumer.accept(otherFailure());
+        Assert.assertEquals(consumed.size(), 3);
+        Assert.assertTrue(consumed.get(0) instanceof IOException);
+        Assert.assertTrue(consumed.get(1) instanceof IOException);
+        Assert.assertTrue(consumed.get(2) instanceof IllegalStateException);
+        exConsumer.flush();
+        Assert.assertEquals(consumed.size(), 4);
+        SuppressionPolicy.OmittedFailures omitted = (SuppressionPolicy.OmittedFailures) consumed.get(3);
+        Assert.assertEquals(omitted.getCount(), 8);
+        Assert.assertEquals(omitted.getType(), IOException.class);
+        exConsumer.flush();
+        Assert.assertEquals(consumed.size(), 4);
+    }
+
+    @Test
+    public void tokensRefill() throws Exception {
+        RateLimitedConsumer exConsumer = RateLimitedConsumer.create(consumed::add, 1, Duration.ofMillis(20));
+        exConsumer.accept(ioFailure());
+        exConsumer.accept(ioFailure());
+        Assert.assertEquals(consumed.size(), 1);
+        Thread.sleep(50);
+        // The interval has passed, so this failure is passed on, followed by the count.
+        exConsumer.accept(ioFailure());
+        Assert.assertEquals(consumed.size(), 3);
+        Assert.assertTrue(consumed.get(1) instanceof IOException);
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) consumed.get(2)).getCount(), 1);
+    }
+
+    @Test
+    public void concurrentFailuresAreAllAccountedFor() throws Exception {
+        RateLimitedConsumer exConsumer = RateLimitedConsumer.create(consumed::add, 5, Duration.ofHours(1));
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    exConsumer.accept(ioFailure());
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        exConsumer.flush();
+        Assert.assertEquals(consumed.size(), 6);
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) consumed.get(5)).getCount(), 3995);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void permitsMustBePositive() {
+        RateLimitedConsumer.create(consumed::add, 0, Duration.ofSeconds(1));
+    }
+}
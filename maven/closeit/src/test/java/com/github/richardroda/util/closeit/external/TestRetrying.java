@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.CloseIt1;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.RetryPolicy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestRetrying {
+
+    static final RetryPolicy FAST = RetryPolicy.create()
+            .withBackoff(Duration.ofMillis(1), Duration.ofMillis(5));
+
+    /**
+     * @return A resource whose close fails the given number of times before
+     * it succeeds.
+     */
+    static AutoCloseable failing(AtomicInteger attempts, int failures) {
+        return () -> {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new IOException("attempt " + attempts.get());
+            }
+        };
+    }
+
+    @Test
+    public void retriesUntilClosed() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (CloseIt0 it = CloseIt0.retrying(failing(attempts, 2), FAST)) {
+        }
+        Assert.assertEquals(attempts.get(), 3);
+    }
+
+    @Test
+    public void lastFailureIsWrapped() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (CloseIt0 it = CloseIt0.retrying(failing(attempts, 10), FAST)) {
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(attempts.get(), 3);
+            Assert.assertEquals(ex.getCause().getMessage(), "attempt 3");
+            Throwable[] suppressed = ex.getCause().getSuppressed();
+            Assert.assertEquals(suppressed.length, 2);
+            Assert.assertEquals(suppressed[0].getMessage(), "attempt 1");
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void predicateStopsRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (CloseIt0 it = CloseIt0.retrying(failing(attempts, 10),
+                FAST.withRetryWhen(th -> th instanceof IllegalStateException))) {
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(attempts.get(), 1);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void budgetStopsRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy policy = RetryPolicy.create().withMaxAttempts(100)
+                .withBackoff(Duration.ofMillis(20), Duration.ofMillis(20))
+                .withJitter(0.0)
+                .withBudget(Duration.ofMillis(50));
+        try (CloseIt0 it = CloseIt0.retrying(failing(attempts, 100), policy)) {
+        } catch (NotClosedException ex) {
+            // Two backoffs fit in the budget, unless the sleeps run long.
+            Assert.assertTrue(attempts.get() == 2 || attempts.get() == 3, "attempts " + attempts.get());
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void uncheckedFailureIsRethrown() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (CloseIt0 it = CloseIt0.retrying(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException();
+        }, FAST.withMaxAttempts(2))) {
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(attempts.get(), 2);
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void lastFailureIsMapped() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (CloseIt1<MyCheckedAppException> it = CloseIt1.retrying(failing(attempts, 10), FAST,
+                MyCheckedAppException::new)) {
+        } catch (MyCheckedAppException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void interruptStopsRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        Thread.currentThread().interrupt();
+        try (CloseIt0 it = CloseIt0.retrying(failing(attempts, 10), FAST)) {
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(Thread.interrupted());
+            Assert.assertEquals(attempts.get(), 1);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidJitter() {
+        RetryPolicy.create().withJitter(1.5);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.SharedCloseIt;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestSharedCloseIt {
+
+    @Test
+    public void closedWhenLastHolderReleases() {
+        AtomicInteger closes = new AtomicInteger();
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(closes::incrementAndGet);
+        SharedCloseIt.Handle<AutoCloseable> first = shared.retain();
+        try (SharedCloseIt.Handle<AutoCloseable> second = shared.retain()) {
+            Assert.assertEquals(shared.refCount(), 3);
+            shared.close();
+            first.close();
+            Assert.assertEquals(closes.get(), 0);
+        }
+        Assert.assertEquals(closes.get(), 1);
+        Assert.assertTrue(shared.isClosed());
+        Assert.assertNull(shared.tryRetain());
+    }
+
+    @Test
+    public void doubleReleaseIsIgnored() {
+        AtomicInteger closes = new AtomicInteger();
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(closes::incrementAndGet);
+        SharedCloseIt.Handle<AutoCloseable> handle = shared.retain();
+        handle.close();
+        handle.close();
+        shared.close();
+        shared.close();
+        Assert.assertEquals(closes.get(), 1);
+        Assert.assertEquals(shared.refCount(), 0);
+    }
+
+    @Test
+    public void closedHandleCannotBeUsed() {
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(() -> {});
+        SharedCloseIt.Handle<AutoCloseable> handle = shared.retain();
+        handle.close();
+        try {
+            handle.get();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void retainAfterCloseFails() {
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(() -> {});
+        shared.close();
+        try {
+            shared.retain();
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void failureIsWrappedByDefault() {
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(() -> {
+            throw new IOException("close");
+        });
+        try (SharedCloseIt.Handle<AutoCloseable> handle = shared.retain()) {
+            shared.close();
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(ex.getCause().getMessage(), "close");
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void failureIsProcessedByPolicy() {
+        List<Exception> exceptions = new ArrayList<>();
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(() -> {
+            throw new IllegalStateException("close");
+        }, resource -> CloseIt0.consumeAllException(resource, exceptions::add));
+        shared.close();
+        Assert.assertEquals(exceptions.size(), 1);
+        Assert.assertEquals(exceptions.get(0).getMessage(), "close");
+    }
+
+    @Test
+    public void concurrentHoldersCloseOnce() throws Exception {
+        AtomicInteger closes = new AtomicInteger();
+        SharedCloseIt<AutoCloseable> shared = SharedCloseIt.create(closes::incrementAndGet);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        try (SharedCloseIt.Handle<AutoCloseable> handle = shared.retain()) {
+                            Assert.assertNotNull(handle.get());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(closes.get(), 0);
+        shared.close();
+        Assert.assertEquals(closes.get(), 1);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.ShutdownGraph;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestShutdownGraph {
+
+    final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterMethod public void clearClosed() {
+        closed.clear();
+    }
+
+    AutoCloseable component(String name, long sleepMillis) {
+        return () -> {
+            Thread.sleep(sleepMillis);
+            closed.add(name);
+        };
+    }
+
+    @Test
+    public void dependenciesCloseFirst() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        ShutdownGraph.Node http = graph.add("http", component("http", 20));
+        ShutdownGraph.Node orders = graph.add("orders", component("orders", 10), http);
+        ShutdownGraph.Node billing = graph.add("billing", component("billing", 30), http);
+        graph.add("database", component("database", 0), orders, billing);
+        graph.close();
+        Assert.assertEquals(closed.get(0), "http");
+        Assert.assertEquals(closed.get(3), "database");
+        List<ShutdownGraph.Result> results = graph.results();
+        Assert.assertEquals(results.size(), 4);
+        for (ShutdownGraph.Result result : results) {
+            Assert.assertEquals(result.getOutcome(), ShutdownGraph.Outcome.CLOSED);
+            Assert.assertNull(result.getFailure());
+        }
+        Assert.assertTrue(results.get(2).getNanos() >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void independentNodesCloseInParallel() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        CountDownLatch all = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            graph.add("node" + i, () -> {
+                all.countDown();
+                if (!all.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("not parallel");
+                }
+            });
+        }
+        graph.close();
+        for (ShutdownGraph.Result result : graph.results()) {
+            Assert.assertEquals(result.getOutcome(), ShutdownGraph.Outcome.CLOSED);
+        }
+    }
+
+    @Test
+    public void failuresAreMappedAndSuppressed() {
+        ShutdownGraph<MyCheckedAppException> graph = ShutdownGraph.create(Duration.ofSeconds(10),
+                Duration.ofSeconds(5), MyCheckedAppException::new);
+        ShutdownGraph.Node first = graph.add("first", () -> {
+            throw new IOException("first");
+        });
+        graph.add("second", () -> {
+            throw new IOException("second");
+        }, first);
+        try {
+            graph.close();
+        } catch (MyCheckedAppException ex) {
+            Assert.assertEquals(ex.getCause().getMessage(), "first");
+            Assert.assertEquals(ex.getSuppressed()[0].getMessage(), "second");
+            Assert.assertEquals(graph.results().get(1).getOutcome(), ShutdownGraph.Outcome.FAILED);
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+
+    @Test
+    public void nodeTimeoutDoesNotHoldUpDependents() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofMillis(50));
+        ShutdownGraph.Node hung = graph.add("hung", component("hung", 5_000));
+        graph.add("after", component("after", 0), hung);
+        long start = System.nanoTime();
+        try {
+            graph.close();
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            Assert.assertEquals(graph.results().get(0).getOutcome(), ShutdownGraph.Outcome.TIMED_OUT);
+            Assert.assertEquals(graph.results().get(1).getOutcome(), ShutdownGraph.Outcome.CLOSED);
+            Assert.assertEquals(closed, Collections.singletonList("after"));
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void deadlineSkipsNodesNotStarted() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofMillis(100), Duration.ofSeconds(5));
+        ShutdownGraph.Node slow = graph.add("slow", component("slow", 5_000));
+        graph.add("after", component("after", 0), slow);
+        try {
+            graph.close();
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(graph.results().get(0).getOutcome(), ShutdownGraph.Outcome.TIMED_OUT);
+            Assert.assertEquals(graph.results().get(1).getOutcome(), ShutdownGraph.Outcome.SKIPPED);
+            Assert.assertTrue(closed.isEmpty());
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+
+    @Test
+    public void interruptSkipsNodesNotStarted() throws InterruptedException {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        ShutdownGraph.Node slow = graph.add("slow", () -> {
+            started.countDown();
+            Thread.sleep(5_000);
+        });
+        graph.add("after", component("after", 0), slow);
+        Thread closing = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            try {
+                started.await();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            closing.interrupt();
+        });
+        interrupter.start();
+        try {
+            graph.close();
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            Assert.assertTrue(Thread.interrupted());
+            Assert.assertEquals(graph.results().get(0).getOutcome(), ShutdownGraph.Outcome.TIMED_OUT);
+            Assert.assertEquals(graph.results().get(1).getOutcome(), ShutdownGraph.Outcome.SKIPPED);
+            Assert.assertTrue(closed.isEmpty());
+        } finally {
+            Thread.interrupted();
+            interrupter.join();
+        }
+    }
+
+    @Test
+    public void hugeNodeTimeoutKeepsDeadline() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofMillis(200),
+                Duration.ofSeconds(Long.MAX_VALUE));
+        graph.add("slow", component("slow", 5_000));
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long start = System.nanoTime();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        try {
+            graph.close();
+            Assert.fail("NotClosedException expected");
+        } catch (NotClosedException ex) {
+            long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            Assert.assertTrue(cpuNanos < TimeUnit.MILLISECONDS.toNanos(100), "closing thread spun for " + cpuNanos + "ns");
+            Assert.assertEquals(graph.results().get(0).getOutcome(), ShutdownGraph.Outcome.TIMED_OUT);
+        }
+    }
+
+    @Test
+    public void closedOnce() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        graph.add("node", component("node", 0));
+        graph.close();
+        graph.close();
+        Assert.assertEquals(closed.size(), 1);
+        try {
+            graph.add("late", component("late", 0));
+        } catch (IllegalStateException ex) {
+            return;
+        }
+        Assert.fail("IllegalStateException expected");
+    }
+
+    @Test
+    public void nodeFromAnotherGraphIsRejected() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        ShutdownGraph<RuntimeException> other = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        ShutdownGraph.Node node = other.add("node", component("node", 0));
+        try {
+            graph.add("after", component("after", 0), node);
+        } catch (IllegalArgumentException ex) {
+            return;
+        }
+        Assert.fail("IllegalArgumentException expected");
+    }
+
+    @Test
+    public void shutdownHookCanBeRemoved() {
+        ShutdownGraph<RuntimeException> graph = ShutdownGraph.create(Duration.ofSeconds(10), Duration.ofSeconds(5));
+        Thread hook = graph.registerShutdownHook(ex -> closed.add(ex.getMessage()));
+        Assert.assertTrue(Runtime.getRuntime().removeShutdownHook(hook));
+    }
+}
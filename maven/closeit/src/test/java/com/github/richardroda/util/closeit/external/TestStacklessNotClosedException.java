@@ -0,0 +1,43 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseIt0;
+import com.github.richardroda.util.closeit.NotClosedException;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Runs in the {@code stackless} surefire execution, which sets
+ * {@link NotClosedException#STACKLESS_PROPERTY}.
+ *
+ * @author Richard
+ */
+public class TestStacklessNotClosedException extends BaseTest {
+
+    @BeforeClass public void requireStackless() {
+        if (!Boolean.getBoolean(NotClosedException.STACKLESS_PROPERTY)) {
+            throw new SkipException(NotClosedException.STACKLESS_PROPERTY + " is not set");
+        }
+    }
+
+    @Test
+    public void testNoStackTrace() {
+        try (CloseIt0 it = CloseIt0.wrapException(this::closeThrowChecked)) {
+
+        } catch (NotClosedException ex) {
+            Assert.assertEquals(ex.getStackTrace().length, 0);
+            ex.fillInStackTrace();
+            Assert.assertEquals(ex.getStackTrace().length, 0);
+            Assert.assertNotNull(ex.getCause());
+            Assert.assertTrue(ex.getCause().getStackTrace().length > 0);
+            return;
+        }
+        Assert.fail("NotClosedException expected");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.richardroda.util.closeit.external;
+
+import com.github.richardroda.util.closeit.CloseItScope;
+import com.github.richardroda.util.closeit.NotClosedException;
+import com.github.richardroda.util.closeit.SuppressionPolicy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author Richard
+ */
+public class TestSuppressionPolicy {
+
+    static IOException ioFailure(String message) {
+        return new IOException(message);
+    }
+
+    @Test
+    public void unboundedAddsEveryFailure() {
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            failures.add(ioFailure("same"));
+        }
+        IllegalStateException primary = SuppressionPolicy.unbounded().suppress(new IllegalStateException(), failures);
+        Assert.assertEquals(primary.getSuppressed().length, 100);
+    }
+
+    @Test
+    public void boundedDeduplicatesAndCounts() {
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            failures.add(ioFailure("same"));
+        }
+        failures.add(ioFailure("different"));
+        failures.add(new IllegalArgumentException());
+        IllegalStateException primary = SuppressionPolicy.bounded(2).suppress(new IllegalStateException(), failures);
+        Throwable[] suppressed = primary.getSuppressed();
+        Assert.assertEquals(suppressed.length, 4, Arrays.toString(suppressed));
+        Assert.assertEquals(suppressed[0].getMessage(), "same");
+        Assert.assertEquals(suppressed[1].getMessage(), "different");
+        SuppressionPolicy.OmittedFailures ioOmitted = (SuppressionPolicy.OmittedFailures) suppressed[2];
+        Assert.assertEquals(ioOmitted.getCount(), 99);
+        Assert.assertEquals(ioOmitted.getType(), IOException.class);
+        Assert.assertEquals(ioOmitted.getMessage(), "99 further failures of type java.io.IOException");
+        Assert.assertEquals(ioOmitted.getStackTrace().length, 0);
+        SuppressionPolicy.OmittedFailures otherOmitted = (SuppressionPolicy.OmittedFailures) suppressed[3];
+        Assert.assertEquals(otherOmitted.getCount(), 1);
+        Assert.assertEquals(otherOmitted.getType(), IllegalArgumentException.class);
+    }
+
+    @Test
+    public void boundedLumpsTypesPastTheLimit() {
+        List<Throwable> failures = Arrays.asList(new IOException(), new IllegalArgumentException(),
+                new UnsupportedOperationException(), new ArithmeticException());
+        IllegalStateException primary = SuppressionPolicy.bounded(0).suppress(new IllegalStateException(), failures);
+        Throwable[] suppressed = primary.getSuppressed();
+        Assert.assertEquals(suppressed.length, 2, Arrays.toString(suppressed));
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) suppressed[0]).getType(), IOException.class);
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) suppressed[1]).getType(), Throwable.class);
+        Assert.assertEquals(((SuppressionPolicy.OmittedFailures) suppressed[1]).getCount(), 3);
+    }
+
+    @Test
+    public void mappedScopeIsBounded() {
+        try (CloseItScope<MyCheckedAppException> scope = CloseItScope.create(MyCheckedAppException::new,
+                SuppressionPolicy.bounded(1))) {
+            for (int i = 0; i < 10; i++) {
+                scope.add(() -> {
+                    throw ioFailure("storm");
+                });
+            }
+        } catch (MyCheckedAppException ex) {
+            Throwable[] suppressed = ex.getSuppressed();
+            Assert.assertEquals(suppressed.length, 2, Arrays.toString(suppressed));
+            Assert.assertEquals(suppressed[0].getMessage(), "storm");
+            Assert.assertEquals(suppressed[1].getMessage(), "8 further failures of type java.io.IOException");
+            return;
+        }
+        Assert.fail("MyCheckedAppException expected");
+    }
+}